@@ -40,6 +40,24 @@ public class CliParams {
     @Parameter(names = {"--generate", "-g"}, description = "generate data e.g. 100x5", required = false)
     public String generate;
 
+    @Parameter(names = "--generate-to", description = "write generated data into a file (.csv, .arff or .bin) instead of clustering", required = false)
+    public String generateTo;
+
+    @Parameter(names = "--seed", description = "seed of data generator and model-based parameter search (random when not given)", required = false)
+    public Long seed;
+
+    @Parameter(names = "--clusters", description = "number of generated clusters (random 2-9 when not given)", required = false)
+    public int clusters = 0;
+
+    @Parameter(names = "--noise", description = "fraction of generated rows which are uniform noise", required = false)
+    public double noise = 0.0;
+
+    @Parameter(names = "--imbalance", description = "ratio of the largest and the smallest generated cluster", required = false)
+    public double imbalance = 1.0;
+
+    @Parameter(names = "--spread", description = "ratio of the widest and the narrowest generated cluster", required = false)
+    public double spread = 4.0;
+
     @Parameter(names = {"--type", "-t"}, description = "type of data (csv, txt, arff)", required = false)
     public String type;
 
@@ -58,6 +76,54 @@ public class CliParams {
     @Parameter(names = "--header", description = "if there is a header with attribute name", required = false)
     public boolean header = true;
 
+    @Parameter(names = "--load-threads", description = "number of threads used for parsing large CSV/TXT/ARFF files (1 disables parallel parsing)", required = false)
+    public int loadThreads = Runtime.getRuntime().availableProcessors();
+
+    @Parameter(names = "--cache", description = "store parsed dataset as a binary snapshot and reuse it in following runs", required = false)
+    public boolean cache = false;
+
+    @Parameter(names = "--cache-dir", description = "directory for cached datasets (by default {base dir}/cache)", required = false)
+    public String cacheDir = null;
+
+    @Parameter(names = "--hash", description = "hash function used for fingerprinting input files: sha1, xxh64 (faster, non-cryptographic)", required = false)
+    public String hash = "sha1";
+
+    @Parameter(names = "--hash-cache", arity = 1, description = "reuse hash of an input file as long as its size and modification time are unchanged", required = false)
+    public boolean hashCache = true;
+
+    @Parameter(names = "--score-cache", description = "remember scores of evaluated clusterings in the cache directory, a clustering of the same data is scored by each metric only once", required = false)
+    public boolean scoreCache = false;
+
+    @Parameter(names = "--score-cache-size", description = "max. number of cached scores (least recently used are dropped)", required = false)
+    public int scoreCacheSize = 1000000;
+
+    @Parameter(names = "--proximity-cache", description = "keep distance matrices of the DBSCAN neighbor index (--dbscan-index) in the cache directory and reuse them (not supported by hierarchical algorithms)", required = false)
+    public boolean proximityCache = false;
+
+    @Parameter(names = "--proximity-cache-size", description = "max. total size of cached distance matrices in MB (least recently used are deleted)", required = false)
+    public long proximityCacheSize = 4096;
+
+    @Parameter(names = "--out-of-core", description = "run k-means over memory-mapped data (dataset doesn't have to fit into memory)", required = false)
+    public boolean outOfCore = false;
+
+    @Parameter(names = "--sample", description = "number of rows used for evaluation of out-of-core clustering", required = false)
+    public int sample = 10000;
+
+    @Parameter(names = "--precision", description = "precision of stored values: double or float (halves memory, supported by k-means)", required = false)
+    public String precision = "double";
+
+    @Parameter(names = "--off-heap", description = "keep values outside of Java heap (supported by k-means)", required = false)
+    public boolean offHeap = false;
+
+    @Parameter(names = "--layout", description = "layout of off-heap values: row or column", required = false)
+    public String layout = "row";
+
+    @Parameter(names = "--kmeans", description = "k-means engine: lloyd, or hamerly (k-means++ seeding, triangle inequality pruning, --repeat restarts run in parallel and the best one by inertia is reported)", required = false)
+    public String kmeans = "lloyd";
+
+    @Parameter(names = "--threads", description = "number of threads used by multi-threaded algorithms", required = false)
+    public int threads = Runtime.getRuntime().availableProcessors();
+
     @Parameter(names = {"--algorithm", "-a"}, description = "name of the algorithm", required = false)
     public String algorithm;
 
@@ -91,6 +157,15 @@ public class CliParams {
     @Parameter(names = {"--repeat", "-r"}, description = "number of repeated runs of the algorithm")
     public int repeat = 1;
 
+    @Parameter(names = "--parallel", description = "number of repeated runs executed concurrently")
+    public int parallel = 1;
+
+    @Parameter(names = "--jobs", description = "run jobs from a JSON lines file, each line is an object with options of a single run, e.g. {\"data\": \"iris.arff\", \"algorithm\": \"k-means\", \"params\": {\"k\": 3}}")
+    public String jobs;
+
+    @Parameter(names = "--job-workers", description = "number of --jobs executed concurrently (jobs of the same experiment run sequentially)")
+    public int jobWorkers = 1;
+
     @Parameter(names = {"--scatter", "-s"}, description = "save resulting scatterplot")
     public boolean scatter = false;
 
@@ -103,9 +178,27 @@ public class CliParams {
     @Parameter(names = {"--opt-eval", "-oe"}, description = "metric for choosing optimal clustring (internal or external)")
     public String optEval = "NMI-sqrt";
 
+    @Parameter(names = "--search", description = "search strategy of --optimal: exhaustive, halving (candidates are scored on growing stratified samples) or tpe (model-based search within --budget)")
+    public String search = "exhaustive";
+
+    @Parameter(names = "--budget", description = "number of configurations evaluated by --search tpe")
+    public int budget = 30;
+
+    @Parameter(names = "--halving-eta", description = "successive halving: only 1/eta of candidates is promoted to an eta times larger sample")
+    public int halvingEta = 3;
+
+    @Parameter(names = "--halving-min", description = "successive halving: size of the smallest sample")
+    public int halvingMin = 500;
+
     @Parameter(names = {"--method", "-m th"}, description = "a named method (with predefined configuration)")
     public String method = "";
 
+    @Parameter(names = "--ap-warm", description = "sweep AffinityPropagation damping with a single similarity matrix, each value starts from messages of the previous one (max_iterations, convits and preference are taken from --alg-params)")
+    public boolean apWarm = false;
+
+    @Parameter(names = "--dbscan-index", description = "answer DBSCAN parameter search (-m sp) from a single Euclidean neighbor index instead of running DBSCAN for each configuration")
+    public boolean dbscanIndex = false;
+
     @Parameter(names = {"--meta-search", "-mts"}, description = "Tries to find optimal algorithm for given data")
     public boolean metaSearch = false;
 
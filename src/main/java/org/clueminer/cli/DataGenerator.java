@@ -16,7 +16,18 @@
  */
 package org.clueminer.cli;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.cli.data.AbstractRowStore;
+import org.clueminer.cli.data.FloatRowStore;
+import org.clueminer.cli.data.OffHeapRowStore;
 import org.clueminer.dataset.api.Dataset;
 import org.clueminer.dataset.api.Instance;
 import org.clueminer.dataset.impl.ArrayDataset;
@@ -24,20 +35,124 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Generates Gaussian blobs with varying density, imbalanced cluster sizes and
+ * uniform background noise.
+ *
+ * Rows are generated in blocks of {@link #BLOCK} rows, each block has its own
+ * random stream derived from the seed. Blocks are filled in parallel, yet the
+ * output depends only on the seed (not on number of threads).
  *
  * @author deric
+ * @param <E>
  */
 public class DataGenerator<E extends Instance> {
 
-    protected final Random rand;
     private static final Logger LOG = LoggerFactory.getLogger(DataGenerator.class);
+    public static final int BLOCK = 4096;
+    public static final String NOISE = "noise";
+
+    private long seed;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int clusters = 0;
+    private double noise = 0.0;
+    private double imbalance = 1.0;
+    private double spread = 4.0;
+
+    //model of current dataset
+    private double[][] centers;
+    private double[] sigma;
+    private double[] cdf;
+    private double lo, hi;
 
     public DataGenerator() {
-        this.rand = new Random();
+        this(new Random().nextLong());
+    }
+
+    public DataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Receives generated rows, might be called from multiple threads
+     */
+    public interface BlockHandler {
+
+        /**
+         *
+         * @param block index of the block
+         * @param from index of the first row
+         * @param rows number of rows
+         * @param values row-major values
+         * @param labels cluster of each row (-1 for noise)
+         * @throws Exception
+         */
+        void block(int block, int from, int rows, double[] values, int[] labels) throws Exception;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
     }
 
     /**
-     * Generate random dataset of doubles with given dimensions
+     * Number of clusters, when not positive 2-9 clusters are chosen randomly
+     *
+     * @param clusters
+     */
+    public void setClusters(int clusters) {
+        this.clusters = clusters;
+    }
+
+    /**
+     * Fraction of rows generated as uniform noise
+     *
+     * @param noise
+     */
+    public void setNoise(double noise) {
+        if (noise < 0.0 || noise >= 1.0) {
+            throw new IllegalArgumentException("noise fraction must be within [0, 1), got " + noise);
+        }
+        this.noise = noise;
+    }
+
+    /**
+     * Ratio between expected size of the largest and the smallest cluster
+     *
+     * @param imbalance
+     */
+    public void setImbalance(double imbalance) {
+        if (imbalance < 1.0) {
+            throw new IllegalArgumentException("imbalance must be at least 1, got " + imbalance);
+        }
+        this.imbalance = imbalance;
+    }
+
+    /**
+     * Ratio between standard deviation of the widest and the narrowest
+     * cluster
+     *
+     * @param spread
+     */
+    public void setSpread(double spread) {
+        if (spread < 1.0) {
+            throw new IllegalArgumentException("spread must be at least 1, got " + spread);
+        }
+        this.spread = spread;
+    }
+
+    public int getClusters() {
+        return centers != null ? centers.length : clusters;
+    }
+
+    /**
+     * Generate dataset of doubles with given dimensions
      *
      * @param size
      * @param dim
@@ -45,24 +160,278 @@ public class DataGenerator<E extends Instance> {
      */
     public Dataset<E> generateData(int size, int dim) {
         LOG.info("generating data: {}x{}", size, dim);
-        Dataset<E> dataset = new ArrayDataset<>(size, dim);
-        dataset.setName("g" + size + "x" + dim);
+        final Dataset<E> dataset = new ArrayDataset<>(size, dim);
+        dataset.setName(name(size, dim));
         for (int i = 0; i < dim; i++) {
             dataset.attributeBuilder().create("attr-" + i, "NUMERIC");
         }
-        int numClasses = rand.nextInt(10);
-        if (numClasses < 2) {
-            numClasses = 3;
+        for (int i = 0; i < size; i++) {
+            dataset.instance(i);
         }
+        final int[] classes = new int[size];
+        init(dim);
+        run(size, dim, new BlockHandler() {
+            @Override
+            public void block(int block, int from, int rows, double[] values, int[] labels) {
+                int pos = 0;
+                for (int i = 0; i < rows; i++) {
+                    E inst = dataset.get(from + i);
+                    for (int j = 0; j < dim; j++) {
+                        inst.set(j, values[pos++]);
+                    }
+                    classes[from + i] = labels[i];
+                }
+            }
+        });
+        //class mapping of the dataset is not thread-safe
+        String[] names = classNames();
         for (int i = 0; i < size; i++) {
-            dataset.instance(i).setName(String.valueOf(i));
+            E inst = dataset.get(i);
+            inst.setName(String.valueOf(i));
+            inst.setClassValue(names[classes[i] + 1]);
+        }
+        return dataset;
+    }
+
+    /**
+     * Generate data stored in single precision
+     *
+     * @param size
+     * @param dim
+     * @return
+     */
+    public FloatRowStore generateFloat(int size, int dim) {
+        LOG.info("generating data: {}x{} (float)", size, dim);
+        return fill(new FloatRowStore(name(size, dim), attributes(dim), size));
+    }
+
+    /**
+     * Generate data stored outside of Java heap
+     *
+     * @param size
+     * @param dim
+     * @param layout
+     * @return
+     */
+    public OffHeapRowStore generateOffHeap(int size, int dim, OffHeapRowStore.Layout layout) {
+        LOG.info("generating data: {}x{} (off-heap, {})", size, dim, layout);
+        return fill(OffHeapRowStore.allocate(name(size, dim), attributes(dim), size, layout));
+    }
+
+    public static String name(int size, int dim) {
+        return "g" + size + "x" + dim;
+    }
+
+    public static List<String> attributes(int dim) {
+        List<String> attrs = new ArrayList<>(dim);
+        for (int i = 0; i < dim; i++) {
+            attrs.add("attr-" + i);
+        }
+        return attrs;
+    }
+
+    public static String className(int label) {
+        return label < 0 ? NOISE : String.valueOf(label);
+    }
+
+    /**
+     * Class labels of current model indexed by <code>label + 1</code>
+     *
+     * @return
+     */
+    public String[] classNames() {
+        String[] names = new String[centers.length + 1];
+        for (int c = -1; c < centers.length; c++) {
+            names[c + 1] = className(c);
+        }
+        return names;
+    }
+
+    private <S extends AbstractRowStore> S fill(final S store) {
+        final int dim = store.attributeCount();
+        init(dim);
+        final String[] names = classNames();
+        run(store.size(), dim, new BlockHandler() {
+            @Override
+            public void block(int block, int from, int rows, double[] values, int[] labels) {
+                int pos = 0;
+                for (int i = 0; i < rows; i++) {
+                    for (int j = 0; j < dim; j++) {
+                        store.set(from + i, j, values[pos++]);
+                    }
+                    store.setClassValue(from + i, names[labels[i] + 1]);
+                }
+            }
+        });
+        return store;
+    }
+
+    /**
+     * Generate rows in parallel blocks
+     *
+     * @param size number of rows
+     * @param dim number of attributes
+     * @param handler
+     */
+    public void generate(int size, int dim, BlockHandler handler) {
+        init(dim);
+        run(size, dim, handler);
+    }
+
+    private void run(int size, final int dim, final BlockHandler handler) {
+        LOG.info("seed: {}, {} clusters, noise: {}, imbalance: {}, spread: {}",
+                seed, centers.length, noise, imbalance, spread);
+        final int blocks = (size + BLOCK - 1) / BLOCK;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, blocks)));
+        try {
+            List<Future<?>> futures = new ArrayList<>(blocks);
+            for (int b = 0; b < blocks; b++) {
+                final int block = b;
+                final int from = b * BLOCK;
+                final int rows = Math.min(BLOCK, size - from);
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        double[] values = new double[rows * dim];
+                        int[] labels = new int[rows];
+                        generateBlock(block, rows, dim, values, labels);
+                        handler.block(block, from, rows, values, labels);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("data generation interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("data generation failed", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Random cluster centers, standard deviations and sizes, depends only on
+     * the seed. Called by all generating methods, needed only for accessing
+     * the model before generating.
+     *
+     * @param dim
+     */
+    public void init(int dim) {
+        SplittableRandom rand = new SplittableRandom(seed);
+        int k = clusters > 0 ? clusters : 2 + rand.nextInt(8);
+        centers = new double[k][dim];
+        sigma = new double[k];
+        cdf = new double[k];
+        //log-uniform standard deviations within [1, spread]
+        for (int c = 0; c < k; c++) {
+            sigma[c] = Math.exp(rand.nextDouble() * Math.log(spread));
+        }
+        //enough room to keep clusters mostly separated
+        double perAxis = Math.ceil(Math.pow(k, 1.0 / Math.max(dim, 1)));
+        double box = 8.0 * spread * perAxis;
+        for (int c = 0; c < k; c++) {
             for (int j = 0; j < dim; j++) {
-                dataset.set(i, j, rand.nextDouble());
+                centers[c][j] = rand.nextDouble() * box;
             }
-            dataset.instance(i).setClassValue(rand.nextInt(numClasses));
         }
+        lo = -3.0 * spread;
+        hi = box + 3.0 * spread;
+        //cluster weights decay geometrically from 1 to 1/imbalance
+        double total = 0.0;
+        for (int c = 0; c < k; c++) {
+            double w = k > 1 ? Math.pow(imbalance, -c / (double) (k - 1)) : 1.0;
+            total += w;
+            cdf[c] = total;
+        }
+        for (int c = 0; c < k; c++) {
+            cdf[c] /= total;
+        }
+    }
 
-        return dataset;
+    /**
+     * Fill a single block, the result depends only on the seed and block index
+     *
+     * @param block
+     * @param rows
+     * @param dim
+     * @param values
+     * @param labels
+     */
+    protected void generateBlock(int block, int rows, int dim, double[] values, int[] labels) {
+        SplittableRandom rand = new SplittableRandom(mix(seed + (block + 1) * 0x9E3779B97F4A7C15L));
+        Gaussian gauss = new Gaussian(rand);
+        int pos = 0;
+        for (int i = 0; i < rows; i++) {
+            if (noise > 0.0 && rand.nextDouble() < noise) {
+                labels[i] = -1;
+                for (int j = 0; j < dim; j++) {
+                    values[pos++] = lo + rand.nextDouble() * (hi - lo);
+                }
+            } else {
+                int c = cluster(rand.nextDouble());
+                labels[i] = c;
+                double[] center = centers[c];
+                for (int j = 0; j < dim; j++) {
+                    values[pos++] = center[j] + sigma[c] * gauss.next();
+                }
+            }
+        }
+    }
+
+    private int cluster(double u) {
+        int c = 0;
+        while (c < cdf.length - 1 && u >= cdf[c]) {
+            c++;
+        }
+        return c;
+    }
+
+    /**
+     * SplitMix64 finalizer, decorrelates seeds of neighbouring blocks
+     *
+     * @param z
+     * @return
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Marsaglia polar method, {@link SplittableRandom} doesn't provide
+     * Gaussian values
+     */
+    private static class Gaussian {
+
+        private final SplittableRandom rand;
+        private double spare;
+        private boolean hasSpare = false;
+
+        Gaussian(SplittableRandom rand) {
+            this.rand = rand;
+        }
+
+        double next() {
+            if (hasSpare) {
+                hasSpare = false;
+                return spare;
+            }
+            double u, v, s;
+            do {
+                u = 2.0 * rand.nextDouble() - 1.0;
+                v = 2.0 * rand.nextDouble() - 1.0;
+                s = u * u + v * v;
+            } while (s >= 1.0 || s == 0.0);
+            double m = Math.sqrt(-2.0 * Math.log(s) / s);
+            spare = v * m;
+            hasSpare = true;
+            return u * m;
+        }
     }
 
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2011-2016 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs jobs described in a JSON lines file within a single JVM. Each line is
+ * an object whose keys are names of command line options (without leading
+ * dashes, <code>params</code> stands for <code>--alg-params</code>), e.g.
+ * <pre>
+ * {"data": "iris.arff", "algorithm": "k-means", "params": {"k": 3}, "eval": "NMI-sqrt", "experiment": "km"}
+ * </pre> Options of a job are applied on top of options given on the command
+ * line. Jobs run on a pool of <code>--job-workers</code> threads, datasets
+ * are parsed once and shared by all jobs reading the same file. Each job
+ * uses its own instances of algorithms and metrics. Jobs of the same
+ * experiment write into the same results, therefore they don't run
+ * concurrently.
+ *
+ * @author deric
+ */
+public class JobRunner implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JobRunner.class);
+
+    private final CliParams params;
+    private final String[] baseArgs;
+    private final SharedDatasets datasets = new SharedDatasets();
+    private final ConcurrentHashMap<String, Object> experiments = new ConcurrentHashMap<>();
+
+    /**
+     *
+     * @param params parsed command line
+     * @param args command line arguments (options applied to all jobs)
+     */
+    public JobRunner(CliParams params, String[] args) {
+        this.params = params;
+        this.baseArgs = withoutJobs(args);
+    }
+
+    private static String[] withoutJobs(String[] args) {
+        List<String> res = new ArrayList<>(args.length);
+        for (int i = 0; i < args.length; i++) {
+            if ("--jobs".equals(args[i]) || "--job-workers".equals(args[i])) {
+                i++; //skip value
+            } else {
+                res.add(args[i]);
+            }
+        }
+        return res.toArray(new String[res.size()]);
+    }
+
+    @Override
+    public void run() {
+        List<CliParams> jobs;
+        try {
+            jobs = readJobs(new File(params.jobs));
+        } catch (IOException ex) {
+            throw new InvalidArgumentException("can't read jobs from " + params.jobs + ": " + ex.getMessage());
+        }
+        int workers = Math.max(1, Math.min(params.jobWorkers, jobs.size()));
+        LOG.info("running {} jobs using {} workers", jobs.size(), workers);
+        for (CliParams job : jobs) {
+            if (job.data != null) {
+                datasets.retain(job.data);
+            }
+        }
+        final AtomicInteger failed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(jobs.size());
+            for (int i = 0; i < jobs.size(); i++) {
+                final int num = i;
+                final CliParams job = jobs.get(i);
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        try {
+                            runJob(num, job);
+                        } catch (RuntimeException ex) {
+                            failed.incrementAndGet();
+                            LOG.error("job {} failed: {}", num, ex.getMessage(), ex);
+                        } finally {
+                            if (job.data != null) {
+                                datasets.release(job.data);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for jobs", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        LOG.info("finished {} jobs, {} failed", jobs.size(), failed.get());
+    }
+
+    private void runJob(int num, CliParams job) {
+        String experiment = job.experiment != null ? job.experiment : job.algorithm;
+        Object lock = new Object();
+        Object prev = experiments.putIfAbsent(String.valueOf(experiment), lock);
+        synchronized (prev != null ? prev : lock) {
+            LOG.info("job {}: {} on {}", num, job.algorithm, job.data);
+            new Runner(job, datasets).run();
+        }
+    }
+
+    /**
+     * Parse options of all jobs (empty lines and lines starting with # are
+     * skipped)
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    protected List<CliParams> readJobs(File file) throws IOException {
+        List<CliParams> jobs = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int num = 0;
+            while ((line = br.readLine()) != null) {
+                num++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    jobs.add(parseJob(new JsonParser().parse(line).getAsJsonObject()));
+                } catch (JsonSyntaxException | IllegalStateException | ParameterException ex) {
+                    throw new InvalidArgumentException("invalid job at line " + num + ": " + ex.getMessage());
+                }
+            }
+        }
+        return jobs;
+    }
+
+    protected CliParams parseJob(JsonObject json) {
+        List<String> args = new ArrayList<>(Arrays.asList(baseArgs));
+        for (Map.Entry<String, JsonElement> e : json.entrySet()) {
+            String option = "params".equals(e.getKey()) ? "--alg-params" : "--" + e.getKey();
+            JsonElement value = e.getValue();
+            if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isBoolean()) {
+                //flags without value
+                if (value.getAsBoolean()) {
+                    args.add(option);
+                }
+            } else if (value.isJsonPrimitive()) {
+                args.add(option);
+                args.add(value.getAsString());
+            } else if (!value.isJsonNull()) {
+                args.add(option);
+                args.add(value.toString());
+            }
+        }
+        CliParams job = new CliParams();
+        new JCommander(job).parse(args.toArray(new String[args.size()]));
+        return job;
+    }
+
+}
@@ -33,6 +33,10 @@ public class Main {
     public static void main(String[] args) {
         CliParams p = parseArguments(args);
         ClmLog.setup(p.logLevel);
+        if (p.jobs != null) {
+            new JobRunner(p, args).run();
+            return;
+        }
         Runner runner = new Runner(p);
         runner.run();
     }
@@ -17,10 +17,9 @@
 package org.clueminer.cli;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -30,21 +29,27 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import org.clueminer.cli.engine.ParallelEvaluator;
+import org.clueminer.cli.engine.ParetoRanking;
+import org.clueminer.cli.engine.ScoreMatrix;
+import org.clueminer.cli.io.CsvWriterPool;
+import org.clueminer.cli.io.ScoreCache;
 import org.clueminer.clustering.api.AlgParams;
 import org.clueminer.clustering.api.Cluster;
 import org.clueminer.clustering.api.ClusterEvaluation;
 import org.clueminer.clustering.api.Clustering;
-import org.clueminer.clustering.api.EvaluationTable;
 import org.clueminer.clustering.api.InternalEvaluator;
 import org.clueminer.clustering.api.Rank;
 import org.clueminer.clustering.api.factory.InternalEvaluatorFactory;
-import org.clueminer.io.csv.CSVWriter;
 import org.clueminer.dataset.api.Dataset;
 import org.clueminer.dataset.api.Instance;
 import org.clueminer.eval.utils.ClusteringComparator;
 import org.clueminer.evolution.api.Individual;
-import org.clueminer.meta.ranking.ParetoFrontQueue;
 import org.clueminer.rank.Correlation;
 import org.clueminer.rank.Spearman;
 import org.clueminer.utils.PropType;
@@ -54,7 +59,6 @@ import org.openide.util.Exceptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.clueminer.clustering.api.RankEvaluator;
-import org.clueminer.clustering.api.ScoreException;
 import org.clueminer.clustering.api.factory.RankFactory;
 import org.clueminer.eval.external.AdjustedRand;
 import org.clueminer.eval.external.NMIsqrt;
@@ -74,12 +78,108 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
 
     private static final Logger LOG = LoggerFactory.getLogger(ResultsExporter.class);
     private final Runner<I, E, C> runner;
-    private final DecimalFormat df;
+    //DecimalFormat is not thread-safe
+    private static final ThreadLocal<DecimalFormat> DF = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            DecimalFormat df = new DecimalFormat();
+            df.setGroupingUsed(false);
+            return df;
+        }
+    };
+    private final CsvWriterPool writers = CsvWriterPool.getDefault();
+    private ParallelEvaluator evaluator;
+    //identity of evaluated data in the score cache
+    private String datasetId;
+    //lines of runs executed concurrently, written in order of runs
+    private final ThreadLocal<List<CsvLine>> deferred = new ThreadLocal<>();
+    private final Map<Integer, List<CsvLine>> pending = new HashMap<>();
+    private int nextRun;
 
     public ResultsExporter(Runner runner) {
         this.runner = runner;
-        df = new DecimalFormat();
-        df.setGroupingUsed(false);
+    }
+
+    /**
+     * Buffer CSV lines written by current thread until {@link #commit(int)}
+     */
+    public void defer() {
+        deferred.set(new LinkedList<CsvLine>());
+    }
+
+    /**
+     * Start a new sequence of concurrent runs
+     */
+    public synchronized void resetRuns() {
+        pending.clear();
+        nextRun = 0;
+    }
+
+    /**
+     * Finish buffering of current thread. Lines are written once all
+     * preceding runs are committed, so that CSV files have the same content as
+     * after sequential execution.
+     *
+     * @param run
+     */
+    public synchronized void commit(int run) {
+        List<CsvLine> lines = deferred.get();
+        deferred.remove();
+        pending.put(run, lines != null ? lines : new LinkedList<CsvLine>());
+        while (pending.containsKey(nextRun)) {
+            for (CsvLine line : pending.remove(nextRun)) {
+                //header was deferred by all runs started before the file existed
+                if (!line.append && line.file.exists()) {
+                    continue;
+                }
+                if (line.raw != null) {
+                    writeCsvLine(line.file, line.raw, line.append);
+                } else {
+                    writeCsvLine(line.file, line.columns, line.append);
+                }
+            }
+            nextRun++;
+        }
+    }
+
+    private synchronized ParallelEvaluator evaluator() {
+        if (evaluator == null) {
+            evaluator = new ParallelEvaluator(runner.runThreads());
+            datasetId = null;
+        }
+        CliParams p = runner.getParams();
+        String id = runner.datasetId();
+        //generated data have no hash
+        if (p.scoreCache && id != null && !id.equals(datasetId)) {
+            evaluator.setCache(ScoreCache.open(runner.cacheDir(p), p.scoreCacheSize), id);
+            datasetId = id;
+        }
+        return evaluator;
+    }
+
+    /**
+     * Stop threads used for evaluation, a new pool is started when needed
+     */
+    public synchronized void shutdown() {
+        if (evaluator != null) {
+            evaluator.shutdown();
+            evaluator = null;
+        }
+    }
+
+    /**
+     * Score of a single metric (possibly cached)
+     *
+     * @param eval
+     * @param clustering
+     * @return NaN when the metric failed
+     */
+    private double score(ClusterEvaluation eval, Clustering<E, C> clustering) {
+        return evaluator().evaluate(clustering, new ClusterEvaluation[]{eval}).score(0);
+    }
+
+    private String formatDecimal(double value) {
+        return DF.get().format(value);
     }
 
     public File resultsFile(String fileName) {
@@ -90,6 +190,7 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
     public File createNewFile(Dataset<E> dataset, String suffix) {
         File f = resultsFile(dataset.getName() + "-" + suffix);
         if (f.exists()) {
+            writers.close(f);
             f.delete();
         }
         return f;
@@ -116,7 +217,7 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
         i = 0;
         row[i] = dataset.getName();
         for (double d : meta.values()) {
-            row[++i] = df.format(d);
+            row[++i] = formatDecimal(d);
         }
         writeCsvLine(results, row, true);
     }
@@ -132,7 +233,7 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
 
             meta.put("dataset", dataset.getName());
             meta.put("clusters", String.valueOf(clustering.size()));
-            meta.put("rank", df.format(e.getKey()));
+            meta.put("rank", formatDecimal(e.getKey()));
             meta.put("algorithm", clustering.getParams().get(AlgParams.ALG));
 
             evaluate(clustering, evals, results, meta);
@@ -146,63 +247,154 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
      * @param results
      */
     public void evaluateRankings(List<Clustering<E, C>> list, File results, ClusterEvaluation[] extEvals) {
-        RankFactory rf = RankFactory.getInstance();
-        RankEvaluator rankCmp = new Correlation();
-        HashMap<Integer, Integer> map = new HashMap<>(list.size());
         //internal evaluation
         InternalEvaluatorFactory ief = InternalEvaluatorFactory.getInstance();
+        evaluateRankings(list, results, ief.getAllArray(), extEvals, RankFactory.getInstance().getAllArray());
+    }
 
-        ClusteringComparator comp = new ClusteringComparator(extEvals[0]);
-        Clustering[] clusts = new Clustering[list.size()];
-        Clustering[] ref = new Clustering[list.size()];
-        int i = 0;
-        for (Clustering<E, C> c : list) {
-            clusts[i] = c;
-            ref[i] = c;
-            i++;
-        }
-        ClusterEvaluation[] evals = ief.getAllArray();
-        List<ClusterEvaluation<E, C>> obj = new LinkedList<>();
-
-        for (Rank rank : rf.getAllArray()) {
-            LOG.info("ranking using {}", rank.getName());
-            obj.clear();
-            obj.add(evals[0]);
-            switch (rank.getMinObjectives()) {
-                case 1:
-                    for (i = 0; i < evals.length; i++) {
-                        obj.set(0, evals[i]);
-                        evaluateRanking(clusts, ref, results, rankCmp, rank, obj, map, extEvals, comp);
+    /**
+     * Evaluates rankings using all combinations of given objectives
+     *
+     * @param list
+     * @param results
+     * @param evals objectives of rankings
+     * @param extEvals supervised rankings
+     * @param rankings
+     */
+    void evaluateRankings(List<Clustering<E, C>> list, File results, final ClusterEvaluation[] evals,
+            ClusterEvaluation[] extEvals, Rank[] rankings) {
+        final Clustering[] clusts = list.toArray(new Clustering[list.size()]);
+        ForkJoinPool pool = new ForkJoinPool(runner.runThreads());
+        try {
+            ScoreMatrix scores = scoreAll(pool, clusts, evals, extEvals);
+            //rankings read scores from the matrix
+            final ClusterEvaluation[] internal = new ClusterEvaluation[evals.length];
+            for (int m = 0; m < evals.length; m++) {
+                internal[m] = scores.view(m);
+            }
+            final ClusterEvaluation[] external = new ClusterEvaluation[extEvals.length];
+            //supervised rankings don't depend on evaluated objectives
+            final Clustering[][] refs = new Clustering[extEvals.length][];
+            for (int e = 0; e < extEvals.length; e++) {
+                external[e] = scores.view(evals.length + e);
+                refs[e] = clusts.clone();
+                Arrays.sort(refs[e], new ClusteringComparator(external[e]));
+            }
+
+            //all combinations of objectives for each ranking
+            List<Rank> ranks = new ArrayList<>();
+            List<List<ClusterEvaluation<E, C>>> objectives = new ArrayList<>();
+            for (Rank rank : rankings) {
+                List<int[]> comb;
+                switch (rank.getMinObjectives()) {
+                    case 1:
+                    case 2:
+                    case 3:
+                        comb = combinations(evals.length, rank.getMinObjectives());
+                        break;
+                    default:
+                        throw new RuntimeException("not supported. min obj = " + rank.getMinObjectives());
+                }
+                for (int[] idx : comb) {
+                    List<ClusterEvaluation<E, C>> obj = new ArrayList<>(idx.length);
+                    for (int k : idx) {
+                        obj.add(internal[k]);
                     }
-                    break;
-                case 2:
-                    obj.add(evals[0]);
-                    for (i = 0; i < evals.length - 1; i++) {
-                        obj.set(0, evals[i]);
-                        for (int j = i + 1; j < evals.length; j++) {
-                            obj.set(1, evals[j]);
-                            evaluateRanking(clusts, ref, results, rankCmp, rank, obj, map, extEvals, comp);
-                        }
+                    ranks.add(rank);
+                    objectives.add(obj);
+                }
+            }
+            LOG.info("evaluating {} rankings using {} threads", ranks.size(), pool.getParallelism());
+            final OrderedRows sink = new OrderedRows(results);
+            List<Future<Void>> futures = new ArrayList<>(ranks.size());
+            for (int i = 0; i < ranks.size(); i++) {
+                final int idx = i;
+                final Rank rank = ranks.get(i);
+                final List<ClusterEvaluation<E, C>> obj = objectives.get(i);
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        sink.put(idx, evaluateRanking(clusts.clone(), refs, newInstance(rank), obj, external));
+                        return null;
                     }
-                    break;
-                case 3:
-                    obj.add(evals[0]);
-                    obj.add(evals[0]);
-                    for (i = 0; i < evals.length - 2; i++) {
-                        obj.set(0, evals[i]);
-                        for (int j = i + 1; j < evals.length - 1; j++) {
-                            obj.set(1, evals[j]);
-                            for (int k = j + 1; k < evals.length; k++) {
-                                obj.set(2, evals[k]);
-                                evaluateRanking(clusts, ref, results, rankCmp, rank, obj, map, extEvals, comp);
-                            }
-                        }
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while evaluating rankings", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Compute scores of all clusterings by all metrics once (or read them from
+     * the score cache)
+     *
+     * @param pool
+     * @param clusts
+     * @param evals
+     * @param extEvals
+     * @return matrix with columns of internal metrics followed by external
+     * ones
+     */
+    private ScoreMatrix scoreAll(ForkJoinPool pool, Clustering[] clusts, ClusterEvaluation[] evals, ClusterEvaluation[] extEvals) throws InterruptedException, ExecutionException {
+        final ClusterEvaluation[] metrics = new ClusterEvaluation[evals.length + extEvals.length];
+        System.arraycopy(evals, 0, metrics, 0, evals.length);
+        System.arraycopy(extEvals, 0, metrics, evals.length, extEvals.length);
+        LOG.info("computing {} x {} scores", clusts.length, metrics.length);
+        final ScoreMatrix scores = new ScoreMatrix(clusts, metrics);
+        List<Future<Void>> futures = new ArrayList<>(clusts.length);
+        for (int i = 0; i < clusts.length; i++) {
+            final int idx = i;
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    //metric instances are not shared between threads
+                    ClusterEvaluation[] local = new ClusterEvaluation[metrics.length];
+                    for (int m = 0; m < metrics.length; m++) {
+                        local[m] = newInstance(metrics[m]);
                     }
-                    break;
-                default:
-                    throw new RuntimeException("not supported. min obj = " + rank.getMinObjectives());
+                    scores.set(idx, evaluator().evaluate(clusts[idx], local));
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> f : futures) {
+            f.get();
+        }
+        return scores;
+    }
+
+    /**
+     * All k-element combinations of indexes 0..n-1 in lexicographic order
+     */
+    private static List<int[]> combinations(int n, int k) {
+        List<int[]> res = new ArrayList<>();
+        int[] idx = new int[k];
+        for (int i = 0; i < k; i++) {
+            idx[i] = i;
+        }
+        while (k <= n) {
+            res.add(idx.clone());
+            int i = k - 1;
+            while (i >= 0 && idx[i] == n - k + i) {
+                i--;
+            }
+            if (i < 0) {
+                break;
+            }
+            idx[i]++;
+            for (int j = i + 1; j < k; j++) {
+                idx[j] = idx[j - 1] + 1;
             }
         }
+        return res;
     }
 
     public void clusterings(List<Clustering<E, C>> list, File results, ClusterEvaluation[] evals) {
@@ -213,11 +405,7 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
             res.put("size", String.valueOf(c.size()));
             res.put("fingerprint", c.fingerprint());
             for (ClusterEvaluation eval : evals) {
-                try {
-                    res.put(eval.getHandle(), df.format(eval.score(c)));
-                } catch (ScoreException ex) {
-                    LOG.error("failed to evalue", ex);
-                }
+                res.put(eval.getHandle(), formatDecimal(score(eval, c)));
             }
             res.put("params", c.getParams().toString());
 
@@ -231,22 +419,21 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
     }
 
     /**
-     * Write correlation to a supervised ranking to a file
+     * Correlation of a ranking to supervised rankings
      *
      * @param clusts
-     * @param ref
-     * @param results
-     * @param rankCmp
+     * @param refs clusterings sorted by each external evaluator
      * @param rank
      * @param obj
-     * @param map
+     * @param extEvals
+     * @return CSV row (null when ranking failed)
      */
-    private void evaluateRanking(Clustering[] clusts, Clustering[] ref,
-            File results, RankEvaluator rankCmp, Rank rank,
-            List<ClusterEvaluation<E, C>> obj, HashMap<Integer, Integer> map,
-            ClusterEvaluation[] extEvals, ClusteringComparator comp) {
+    private Map<String, String> evaluateRanking(Clustering[] clusts, Clustering[][] refs,
+            Rank rank, List<ClusterEvaluation<E, C>> obj, ClusterEvaluation[] extEvals) {
         double corr;
         String methodName = null;
+        RankEvaluator rankCmp = new Correlation();
+        HashMap<Integer, Integer> map = new HashMap<>(clusts.length);
         try {
             if (rank instanceof MORank) {
                 shuffleArray(clusts);
@@ -255,25 +442,58 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
             Map<String, String> res = new TreeMap<>();
             methodName = rankingStrategyName(rank, obj);
             res.put("method", methodName);
-            for (ClusterEvaluation ext : extEvals) {
-                comp.setEvaluator(ext);
-                Arrays.sort(ref, comp);
-                corr = rankCmp.correlation(clusts, ref, map);
-                res.put(rankCmp.getName() + "-" + ext.getHandle(), df.format(corr));
+            for (int e = 0; e < extEvals.length; e++) {
+                corr = rankCmp.correlation(clusts, refs[e], map);
+                res.put(rankCmp.getName() + "-" + extEvals[e].getHandle(), formatDecimal(corr));
             }
 
             //LOG.info("{}: {}", methodName, corr);
             res.put("num-objectives", String.valueOf(obj.size()));
             res.put("ranking", rank.getName());
+            return res;
+        } catch (Exception e) {
+            LOG.error("rakning {} failed: {}", methodName, e.getMessage(), e);
+            return null;
+        }
+    }
 
+    /**
+     * Writes rows computed concurrently in the order of their indexes
+     */
+    private class OrderedRows {
 
-            //write header
-            if (!results.exists()) {
-                writeCsvLine(results, res.keySet().toArray(new String[0]), false);
+        private final File results;
+        private final Map<Integer, Map<String, String>> pending = new HashMap<>();
+        private int next;
+
+        OrderedRows(File results) {
+            this.results = results;
+        }
+
+        synchronized void put(int idx, Map<String, String> row) {
+            pending.put(idx, row);
+            while (pending.containsKey(next)) {
+                Map<String, String> res = pending.remove(next++);
+                if (res == null) {
+                    continue;
+                }
+                //write header
+                if (!results.exists()) {
+                    writeCsvLine(results, res.keySet().toArray(new String[0]), false);
+                }
+                writeCsvLine(results, res.values().toArray(new String[0]), true);
             }
-            writeCsvLine(results, res.values().toArray(new String[0]), true);
-        } catch (Exception e) {
-            LOG.error("rakning {} failed: {}", methodName, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * New instance of the same class (when it has a default constructor)
+     */
+    private static <T> T newInstance(T obj) {
+        try {
+            return (T) obj.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            return obj;
         }
     }
 
@@ -346,13 +566,13 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
         LOG.info("{}: {}", methodName, corr);
 
         Map<String, String> res = new TreeMap<>();
-        res.put(methodName, df.format(corr));
+        res.put(methodName, formatDecimal(corr));
 
         for (ClusterEvaluation e : evals) {
             comp.setEvaluator(e);
             Arrays.sort(mo, comp);
             corr = rankCmp.correlation(mo, ref, map);
-            res.put(e.getName(), df.format(corr));
+            res.put(e.getName(), formatDecimal(corr));
         }
         evaluateMOrank(res, ref, rankCmp, params);
 
@@ -386,59 +606,83 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
             }
         }
 
-        Clustering[] mo = new Clustering[ref.length];
-        int numFronts = params.getInt("fronts", 20);
-        ClusterEvaluation sort;
-        double maxCorr = -1.0;
-        for (int i = 0; i < objectives.length; i++) {
-            for (int j = i + 1; j < objectives.length; j++) {
-                for (int k = 0; k < objectives.length; k++) {
-                    List<ClusterEvaluation<E, C>> moObj = new LinkedList<>();
-                    //first MO criteria
-                    moObj.add(objectives[i]);
-                    //second criteria
-                    moObj.add(objectives[j]);
-                    //sort criteria
-                    sort = objectives[k];
-                    LOG.trace("{} & {} & {}, num fronts: {}", objectives[i].getName(),
-                            objectives[j].getName(), objectives[k].getName(), numFronts);
-                    ParetoFrontQueue<E, C, Clustering<E, C>> q = new ParetoFrontQueue<>(numFronts, moObj, sort);
-                    for (Clustering<E, C> c : ref) {
-                        q.add(c);
+        final int numFronts = params.getInt("fronts", 20);
+        final double[][] scores = new double[objectives.length][];
+        final List<int[]> pairs = combinations(objectives.length, 2);
+        final double[][] corrs = new double[pairs.size()][];
+        final Clustering[] supervised = ref;
+        final ClusterEvaluation[] obj = objectives;
+        ForkJoinPool pool = new ForkJoinPool(runner.runThreads());
+        try {
+            //scores are computed once, oriented so that higher is better
+            ScoreMatrix matrix = scoreAll(pool, ref, objectives, new ClusterEvaluation[0]);
+            for (int m = 0; m < objectives.length; m++) {
+                scores[m] = matrix.maximized(m);
+            }
+            List<Future<Void>> futures = new ArrayList<>(pairs.size());
+            for (int p = 0; p < pairs.size(); p++) {
+                final int idx = p;
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        int[] pair = pairs.get(idx);
+                        //fronts don't depend on the sorting objective
+                        ParetoRanking pareto = new ParetoRanking(scores[pair[0]], scores[pair[1]]);
+                        RankEvaluator cmp = newInstance(rankCmp);
+                        corrs[idx] = new double[obj.length];
+                        for (int k = 0; k < obj.length; k++) {
+                            int[] order = pareto.order(scores[k], numFronts);
+                            Clustering[] mo = new Clustering[order.length];
+                            for (int l = 0; l < order.length; l++) {
+                                mo[l] = supervised[order[l]];
+                            }
+                            //clusterings beyond numFronts are excluded from both rankings
+                            Clustering[] kept = supervised;
+                            if (order.length != supervised.length) {
+                                LOG.trace("ranking size: {} vs reference: {}", order.length, supervised.length);
+                                int[] rows = order.clone();
+                                Arrays.sort(rows);
+                                kept = new Clustering[rows.length];
+                                for (int l = 0; l < rows.length; l++) {
+                                    kept[l] = supervised[rows[l]];
+                                }
+                            }
+                            HashMap<Integer, Integer> map = new HashMap<>(kept.length);
+                            corrs[idx][k] = cmp.correlation(mo, kept, map);
+                        }
+                        return null;
                     }
-                    LOG.trace("excluded clusterings: {}", q.getExcludedSize());
-                    SortedMap<Double, Clustering<E, C>> ranking = q.computeRanking();
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while evaluating MO rankings", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
 
-                    int l = 0;
-                    for (Clustering<E, C> c : ranking.values()) {
-                        mo[l++] = c;
-                    }
-                    if (ranking.size() != ref.length) {
-                        LOG.warn("ranking size: {} vs reference: {}", ranking.size(), ref.length);
-                    }
-                    HashMap<Integer, Integer> map = new HashMap<>(ref.length);
-                    double corr = rankCmp.correlation(mo, ref, map);
-                    String moName = moName(q);
-                    LOG.info("{}: {}", moName, corr);
-                    if (corr > maxCorr) {
-                        maxCorr = corr;
-                        LOG.info("best result so far: {}: {}", moName, corr);
-                    }
-                    res.put(moName, df.format(corr));
+        double maxCorr = -1.0;
+        for (int p = 0; p < pairs.size(); p++) {
+            int[] pair = pairs.get(p);
+            for (int k = 0; k < objectives.length; k++) {
+                double corr = corrs[p][k];
+                String moName = objectives[pair[0]].getName() + " & " + objectives[pair[1]].getName()
+                        + " & " + objectives[k].getName();
+                LOG.info("{}: {}", moName, corr);
+                if (corr > maxCorr) {
+                    maxCorr = corr;
+                    LOG.info("best result so far: {}: {}", moName, corr);
                 }
+                res.put(moName, formatDecimal(corr));
             }
         }
     }
 
-    private String moName(ParetoFrontQueue<E, C, Clustering<E, C>> q) {
-        StringBuilder sb = new StringBuilder();
-        q.getObjectives().forEach((ev) -> {
-            sb.append(ev.getName()).append(" & ");
-        });
-        sb.append(q.getSortingObjectives().getName());
-        return sb.toString();
-    }
-
     /**
      * Export results to CSV
      *
@@ -450,8 +694,6 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
     public void evaluate(Clustering<E, C> clustering, ClusterEvaluation[] evals, File results, HashMap<String, String> meta) {
         String[] line;
         int extraAttr = meta.size() + 3;
-        double score;
-        StopWatch etime = new StopWatch(false);
 
         //CSV header
         //logger.log(Level.INFO, "writing results into: {0}", results.getAbsolutePath());
@@ -490,35 +732,26 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
         }
         StopWatch time = clustering.getLookup().lookup(StopWatch.class);
         if (time != null) {
-            line[i++] = df.format(time.timeInMs());
+            line[i++] = formatDecimal(time.timeInMs());
         } else {
             line[i++] = "";
         }
         LOG.info("Evaluating scores " + clustering.fingerprint());
-        ClusteringComparator comp = new ClusteringComparator();
-        EvaluationTable et = comp.evaluationTable(clustering);
-        String[] criteria = new String[4];
-        try {
-            for (ClusterEvaluation e : evals) {
-                etime.startMeasure();
-                score = et.getScore(e);
-                etime.endMeasure();
-                line[i++] = String.valueOf(score);
-                System.out.print(".");
-                //export only external criteria
-                if (!e.isExternal()) {
-                    criteria[0] = e.getName();
-                    criteria[1] = etime.formatMs();
-                    criteria[2] = String.valueOf(clustering.size());
-                    criteria[3] = clustering.fingerprint();
-                    writeCsvLine(criteriaCSV, criteria, true);
-                }
+        ParallelEvaluator.Result scores = evaluator().evaluate(clustering, evals);
+        for (int j = 0; j < evals.length; j++) {
+            ClusterEvaluation e = evals[j];
+            line[i++] = String.valueOf(scores.score(j));
+            //export only external criteria
+            if (!e.isExternal()) {
+                String[] criteria = new String[4];
+                criteria[0] = e.getName();
+                //cached scores weren't computed again
+                criteria[1] = scores.time(j) != null ? scores.time(j).formatMs() : "NaN";
+                criteria[2] = String.valueOf(clustering.size());
+                criteria[3] = clustering.fingerprint();
+                writeCsvLine(criteriaCSV, criteria, true);
             }
-        } catch (Exception e) {
-            System.out.println("clustering " + clustering.getParams().toJson());
-            Exceptions.printStackTrace(e);
         }
-        System.out.println("");
         line[i++] = clustering.getParams().toJson();
         writeCsvLine(results, line, true);
     }
@@ -567,7 +800,7 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
         line[i++] = String.valueOf(clustering.size());
         StopWatch time = clustering.getLookup().lookup(StopWatch.class);
         if (time != null) {
-            line[i++] = df.format(time.timeInMs());
+            line[i++] = formatDecimal(time.timeInMs());
             LOG.info("run time = " + time.timeInSec() + "s");
         } else {
             line[i++] = "";
@@ -576,19 +809,12 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
             LOG.warn("no evaluation method specified");
         } else {
             LOG.info("Evaluating scores for " + clustering.fingerprint());
-            ClusteringComparator comp = new ClusteringComparator();
-            EvaluationTable et = comp.evaluationTable(clustering);
-            try {
-                for (ClusterEvaluation e : evals) {
-                    score = et.getScore(e);
-                    line[i++] = String.valueOf(score);
-                    LOG.debug(e.getName() + ": " + score);
-                }
-            } catch (Exception e) {
-                LOG.info("clustering {}", clustering.getParams().toJson());
-                Exceptions.printStackTrace(e);
+            ParallelEvaluator.Result scores = evaluator().evaluate(clustering, evals);
+            for (int j = 0; j < evals.length; j++) {
+                score = scores.score(j);
+                line[i++] = String.valueOf(score);
+                LOG.debug(evals[j].getName() + ": " + score);
             }
-            System.out.println("");
         }
         line[i++] = clustering.getParams().toJson();
         Props p = clustering.getParams();
@@ -612,28 +838,27 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
      * @param apend
      */
     public void writeCsvLine(File file, String[] columns, boolean apend) {
-        try (PrintWriter writer = new PrintWriter(
-                new FileOutputStream(file, apend)
-        )) {
-
-            CSVWriter csv = new CSVWriter(writer, runner.getParams().separator.charAt(0));
-            csv.writeNext(columns, false);
-            writer.close();
-
-        } catch (FileNotFoundException ex) {
+        List<CsvLine> lines = deferred.get();
+        if (lines != null) {
+            lines.add(new CsvLine(file, columns, null, apend));
+            return;
+        }
+        try {
+            writers.writeNext(file, columns, runner.getParams().separator.charAt(0), apend);
+        } catch (IOException ex) {
             Exceptions.printStackTrace(ex);
         }
     }
 
     public void writeCsvLine(File file, StringBuilder line, boolean apend) {
-        try (PrintWriter writer = new PrintWriter(
-                new FileOutputStream(file, apend)
-        )) {
-
-            CSVWriter csv = new CSVWriter(writer, runner.getParams().separator.charAt(0));
-            csv.writeLine(line);
-            writer.close();
-        } catch (FileNotFoundException ex) {
+        List<CsvLine> lines = deferred.get();
+        if (lines != null) {
+            lines.add(new CsvLine(file, null, line, apend));
+            return;
+        }
+        try {
+            writers.writeLine(file, line, runner.getParams().separator.charAt(0), apend);
+        } catch (IOException ex) {
             Exceptions.printStackTrace(ex);
         }
     }
@@ -660,10 +885,8 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
             alg = c.getParams().get(AlgParams.ALG);
             sb.append(format(rank)).append(" - ").append(alg).append("[").append(c.size()).append("]").append(sep)
                     .append(alg).append(sep);
-            ClusteringComparator comp = new ClusteringComparator();
-            EvaluationTable et = comp.evaluationTable(e.getValue());
             for (ClusterEvaluation eval : evals) {
-                sb.append(format(et.getScore(eval))).append(sep);
+                sb.append(format(score(eval, c))).append(sep);
             }
             sb.append(String.format("%.0f", rank)).append(sep);
             sb.append(c.size());
@@ -675,4 +898,19 @@ public class ResultsExporter<I extends Individual<I, E, C>, E extends Instance,
         return String.format("%.2f", val);
     }
 
+    private static class CsvLine {
+
+        private final File file;
+        private final String[] columns;
+        private final StringBuilder raw;
+        private final boolean append;
+
+        CsvLine(File file, String[] columns, StringBuilder raw, boolean append) {
+            this.file = file;
+            this.columns = columns;
+            this.raw = raw;
+            this.append = append;
+        }
+    }
+
 }
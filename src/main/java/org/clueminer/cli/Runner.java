@@ -25,18 +25,52 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.imageio.ImageIO;
-import javax.xml.bind.annotation.adapters.HexBinaryAdapter;
 import org.clueminer.ap.AffinityPropagation;
 import org.clueminer.chameleon.Chameleon;
+import org.clueminer.cli.data.AbstractRowStore;
+import org.clueminer.cli.data.CondensedMatrix;
+import org.clueminer.cli.data.DatasetRowStore;
+import org.clueminer.cli.data.OffHeapRowStore;
+import org.clueminer.cli.data.RowStore;
+import org.clueminer.cli.data.SparseDataset;
+import org.clueminer.cli.engine.HamerlyKMeans;
+import org.clueminer.cli.engine.IndexedDBSCAN;
+import org.clueminer.cli.engine.LloydKMeans;
+import org.clueminer.cli.engine.NeighborIndex;
+import org.clueminer.cli.engine.SearchSpace;
+import org.clueminer.cli.engine.SuccessiveHalving;
+import org.clueminer.cli.engine.TpeOptimizer;
+import org.clueminer.cli.engine.WarmAffinityPropagation;
+import org.clueminer.cli.io.BlockFileWriter;
+import org.clueminer.cli.io.ChunkedLoader;
+import org.clueminer.cli.io.Compression;
+import org.clueminer.cli.io.CsvFormat;
+import org.clueminer.cli.io.DatasetSnapshot;
+import org.clueminer.cli.io.Fingerprint;
+import org.clueminer.cli.io.FingerprintCache;
+import org.clueminer.cli.io.FloatStoreSink;
+import org.clueminer.cli.io.OffHeapStoreSink;
+import org.clueminer.cli.io.ParallelArffLoader;
+import org.clueminer.cli.io.ParallelCsvLoader;
+import org.clueminer.cli.io.ProximityStore;
+import org.clueminer.cli.io.RowStoreSink;
+import org.clueminer.cli.io.StreamingLoader;
 import org.clueminer.exec.ClusteringExecutorCached;
 import org.clueminer.meta.engine.MesosExecutor;
 import org.clueminer.clustering.algorithm.DBSCAN;
@@ -58,6 +92,7 @@ import org.clueminer.clustering.api.factory.EvaluationFactory;
 import org.clueminer.clustering.api.factory.ExternalEvaluatorFactory;
 import org.clueminer.clustering.api.factory.InternalEvaluatorFactory;
 import org.clueminer.clustering.api.factory.RankFactory;
+import org.clueminer.clustering.struct.ClusterList;
 import org.clueminer.clustering.struct.DendrogramData;
 import org.clueminer.dataset.api.Dataset;
 import org.clueminer.dataset.api.Instance;
@@ -103,59 +138,470 @@ import org.slf4j.LoggerFactory;
 public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends Cluster<E>> implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(Runner.class);
+    private static final String[] CLUTO_CONFIGS = new String[]{
+        "{crfun=i1,agglofrom=15}",
+        "{crfun=i2}",
+        "{crfun=e1}",
+        "{crfun=g1}",
+        "{crfun=g1p}",
+        "{crfun=h1,agglofrom=20}",
+        "{crfun=h2}",
+        "{crfun=slink}",
+        "{crfun=wslink}",
+        "{crfun=clink}",
+        "{crfun=wclink}",
+        "{crfun=upgma}"
+    };
+    private static final String[] AP_CONFIGS = new String[]{
+        "{damping=0.5}",
+        "{damping=0.55}",
+        "{damping=0.6}",
+        "{damping=0.65}",
+        "{damping=0.7}",
+        "{damping=0.75}",
+        "{damping=0.8}",
+        "{damping=0.85}",
+        "{damping=0.9}",
+        "{damping=0.95}"
+    };
     private final CliParams cliParams;
-    private StopWatch time;
+    //each run (possibly concurrent) has its own timer
+    private final ThreadLocal<StopWatch> time = new ThreadLocal<>();
     private final ResultsExporter export;
+    /**
+     * digest of the input computed by <code>--hash</code> function
+     */
     private String sha1;
+    /**
+     * rows evaluated instead of the whole dataset (size and seed of the
+     * sample), null when all rows are evaluated
+     */
+    private volatile String sample;
+    private Boolean sparseInput;
+    /**
+     * datasets shared by batch jobs (might be null)
+     */
+    private final SharedDatasets shared;
 
     Runner(CliParams p) {
+        this(p, null);
+    }
+
+    Runner(CliParams p, SharedDatasets shared) {
         this.cliParams = p;
+        this.shared = shared;
         this.export = new ResultsExporter(this);
     }
 
-    protected Dataset<E> loadData(CliParams p) throws IOException, ParserError, FileNotFoundException, NoSuchAlgorithmException {
+    protected Dataset<E> loadData(final CliParams p) throws IOException, ParserError, FileNotFoundException, NoSuchAlgorithmException {
+        if (shared == null || p.generate != null) {
+            return readData(p);
+        }
+        File f = inputFile(p);
+        if (p.type == null && !DatasetSnapshot.isSnapshot(f)) {
+            //parser options depend on the type
+            detectType(f, Compression.detect(f), p);
+        }
+        String key = f.getCanonicalPath() + ";" + f.length() + ";" + f.lastModified() + ";" + p.hash + ";" + parserOptions(p);
+        SharedDatasets.Entry entry;
+        try {
+            entry = shared.get(p.data, key, new Callable<SharedDatasets.Entry>() {
+                @Override
+                public SharedDatasets.Entry call() throws Exception {
+                    Dataset<E> dataset = readData(p);
+                    return new SharedDatasets.Entry(dataset, sha1);
+                }
+            });
+        } catch (IOException | ParserError | NoSuchAlgorithmException | RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        sha1 = entry.getHash();
+        return (Dataset<E>) entry.getDataset();
+    }
+
+    private Dataset<E> readData(CliParams p) throws IOException, ParserError, FileNotFoundException, NoSuchAlgorithmException {
         Dataset<E> dataset;
         if (p.generate != null) {
-            DataGenerator<E> gen = new DataGenerator<>();
-            int n = 100;
-            int d = 5;
-            Pattern pat = Pattern.compile("(\\d+)x(\\d+)");
-            Matcher m = pat.matcher(p.generate);
-            LOG.info("generate: {}", p.generate);
-            if (m.matches()) {
-                if (m.group(1) != null && !m.group(1).isEmpty()) {
-                    n = Integer.parseInt(m.group(1));
+            int[] dim = generateSize(p);
+            dataset = generator(p).generateData(dim[0], dim[1]);
+            return dataset;
+        }
+        File f = inputFile(p);
+        FingerprintCache hashes = p.hashCache ? new FingerprintCache(cacheDir(p)) : null;
+        sha1 = hashes != null ? hashes.get(f, p.hash) : null;
+        if (DatasetSnapshot.isSnapshot(f)) {
+            return inputSnapshot(f, p, hashes).read();
+        }
+
+        Compression compression = Compression.detect(f);
+        DataFileInfo df = detectType(f, compression, p);
+        Fingerprint hasher = null;
+        if (sha1 == null) {
+            if (p.cache || !(isParallel(f, p) || compression != Compression.NONE)) {
+                sha1 = Fingerprint.create(p.hash).hash(f);
+                if (hashes != null) {
+                    hashes.put(f, p.hash, sha1);
                 }
-                if (m.group(2) != null && !m.group(2).isEmpty()) {
-                    d = Integer.parseInt(m.group(2));
+            } else {
+                //compute hash while parsing
+                hasher = Fingerprint.create(p.hash);
+            }
+        }
+        if (sha1 != null) {
+            LOG.info("file: {}, {}: {}", p.data, p.hash, sha1);
+        }
+        DatasetSnapshot<E> snapshot = null;
+        if (p.cache) {
+            snapshot = new DatasetSnapshot<>(DatasetSnapshot.location(cacheDir(p), Fingerprint.id(p.hash, sha1), parserOptions(p)));
+            if (snapshot.exists()) {
+                try {
+                    return snapshot.read();
+                } catch (IOException ex) {
+                    LOG.warn("failed to read snapshot {}: {}", snapshot.getFile().getAbsolutePath(), ex.getMessage());
                 }
             }
+        }
+        if (compression != Compression.NONE) {
+            dataset = parseCompressed(f, compression, p, hasher);
+        } else {
+            dataset = parseFile(f, df, p, hasher);
+        }
+        if (hasher != null) {
+            sha1 = hasher.digest();
+            LOG.info("file: {}, {}: {}", p.data, p.hash, sha1);
+            if (hashes != null) {
+                hashes.put(f, p.hash, sha1);
+            }
+        }
+        if (snapshot != null) {
+            try {
+                snapshot.write(dataset);
+            } catch (IOException ex) {
+                LOG.warn("failed to write snapshot {}: {}", snapshot.getFile().getAbsolutePath(), ex.getMessage());
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * Size of generated data given as <code>NxD</code>
+     *
+     * @param p
+     * @return number of rows and attributes
+     */
+    private int[] generateSize(CliParams p) {
+        int n = 100;
+        int d = 5;
+        Pattern pat = Pattern.compile("(\\d+)x(\\d+)");
+        Matcher m = pat.matcher(p.generate);
+        LOG.info("generate: {}", p.generate);
+        if (m.matches()) {
+            if (m.group(1) != null && !m.group(1).isEmpty()) {
+                n = Integer.parseInt(m.group(1));
+            }
+            if (m.group(2) != null && !m.group(2).isEmpty()) {
+                d = Integer.parseInt(m.group(2));
+            }
+        }
+        return new int[]{n, d};
+    }
 
-            dataset = gen.generateData(n, d);
-            return dataset;
+    private DataGenerator<E> generator(CliParams p) {
+        DataGenerator<E> gen = p.seed != null ? new DataGenerator<E>(p.seed) : new DataGenerator<E>();
+        gen.setThreads(p.threads);
+        gen.setClusters(p.clusters);
+        try {
+            gen.setNoise(p.noise);
+            gen.setImbalance(p.imbalance);
+            gen.setSpread(p.spread);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidArgumentException(e.getMessage());
         }
+        return gen;
+    }
+
+    private File inputFile(CliParams p) {
         File f = new File(p.data);
         if (!f.exists() || !f.canRead()) {
             throw new InvalidArgumentException("can't read from file " + p.data);
         }
-        sha1 = computeSha1(f);
-        LOG.info("file: {}, SHA-1: {}", p.data, sha1);
+        return f;
+    }
+
+    /**
+     * Detect type of the input file (unless given by user)
+     *
+     * @param f
+     * @param compression
+     * @param p
+     * @return info about plain text file, null for compressed files
+     * @throws IOException
+     */
+    private DataFileInfo detectType(File f, Compression compression, CliParams p) throws IOException {
+        DataFileInfo df = null;
+        if (compression != Compression.NONE) {
+            LOG.info("reading {} compressed file", compression.name().toLowerCase());
+            if (p.type == null) {
+                p.type = compressedType(f, compression);
+                LOG.info("auto-detected type {}", p.type);
+            }
+        } else {
+            DatasetSniffer sniffer = new DataSniffer();
+            df = sniffer.scan(f);
+            if (p.type == null) {
+                if (df.type == null) {
+                    p.type = "arff";
+                } else {
+                    p.type = df.type;
+                    LOG.info("auto-detected type {}", p.type);
+                }
+            }
+        }
+        return df;
+    }
+
+    /**
+     * Binary snapshot of the input file. When the snapshot doesn't exist yet,
+     * the input is parsed as a stream directly into the snapshot, the dataset
+     * is never loaded into memory.
+     *
+     * @param p
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    protected DatasetSnapshot<E> loadSnapshot(CliParams p) throws IOException, ParserError {
+        File f = inputFile(p);
+        FingerprintCache hashes = p.hashCache ? new FingerprintCache(cacheDir(p)) : null;
+        sha1 = hashes != null ? hashes.get(f, p.hash) : null;
+        if (DatasetSnapshot.isSnapshot(f)) {
+            return inputSnapshot(f, p, hashes);
+        }
+        Compression compression = Compression.detect(f);
+        detectType(f, compression, p);
+        File dir = cacheDir(p);
+        if (sha1 != null) {
+            DatasetSnapshot<E> snapshot = new DatasetSnapshot<>(DatasetSnapshot.location(dir, Fingerprint.id(p.hash, sha1), parserOptions(p)));
+            if (snapshot.exists()) {
+                LOG.info("using dataset snapshot {}", snapshot.getFile().getAbsolutePath());
+                return snapshot;
+            }
+        }
+        Fingerprint hasher = sha1 == null ? Fingerprint.create(p.hash) : null;
+        StreamingLoader<E> loader = new StreamingLoader<>(streamParser(p), p.loadThreads);
+        File target;
+        try (DatasetSnapshot.Writer writer = new DatasetSnapshot.Writer(dir);
+                InputStream in = compression.open(f, hasher)) {
+            loader.parse(in, inputName(f, compression), writer);
+            if (hasher != null) {
+                sha1 = hasher.digest();
+                if (hashes != null) {
+                    hashes.put(f, p.hash, sha1);
+                }
+            }
+            target = writer.commit(DatasetSnapshot.location(dir, Fingerprint.id(p.hash, sha1), parserOptions(p)));
+        }
+        LOG.info("file: {}, {}: {}", p.data, p.hash, sha1);
+        return new DatasetSnapshot<>(target);
+    }
+
+    /**
+     * Input file which is already a binary snapshot (e.g. written by
+     * <code>--generate-to data.bin</code>)
+     *
+     * @param f
+     * @param p
+     * @param hashes
+     * @return
+     * @throws IOException
+     */
+    private DatasetSnapshot<E> inputSnapshot(File f, CliParams p, FingerprintCache hashes) throws IOException {
+        if (sha1 == null) {
+            sha1 = Fingerprint.create(p.hash).hash(f);
+            if (hashes != null) {
+                hashes.put(f, p.hash, sha1);
+            }
+        }
+        LOG.info("file: {}, {}: {}", p.data, p.hash, sha1);
+        LOG.info("reading binary snapshot {}", f.getAbsolutePath());
+        return new DatasetSnapshot<>(f);
+    }
 
+    /**
+     * Load values into a compact row store (single precision or off-heap).
+     * Input is streamed directly into the store, the dataset is never held on
+     * heap in double precision.
+     *
+     * @param p
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    protected AbstractRowStore loadStore(CliParams p) throws IOException, ParserError {
+        if (p.offHeap && isFloat(p)) {
+            throw new InvalidArgumentException("off-heap storage supports only double precision");
+        }
+        if (p.generate != null) {
+            int[] dim = generateSize(p);
+            DataGenerator<E> gen = generator(p);
+            if (p.offHeap) {
+                return gen.generateOffHeap(dim[0], dim[1], layout(p));
+            }
+            return gen.generateFloat(dim[0], dim[1]);
+        }
+        File f = inputFile(p);
+        if (DatasetSnapshot.isSnapshot(f)) {
+            throw new InvalidArgumentException("binary snapshot " + p.data + " is mapped directly, use --out-of-core");
+        }
+        FingerprintCache hashes = p.hashCache ? new FingerprintCache(cacheDir(p)) : null;
+        sha1 = hashes != null ? hashes.get(f, p.hash) : null;
+        Compression compression = Compression.detect(f);
+        detectType(f, compression, p);
+        Fingerprint hasher = sha1 == null ? Fingerprint.create(p.hash) : null;
+        StreamingLoader<E> loader = new StreamingLoader<>(streamParser(p), p.loadThreads);
+        RowStoreSink<?> sink = p.offHeap ? new OffHeapStoreSink(layout(p)) : new FloatStoreSink();
+        try (InputStream in = compression.open(f, hasher)) {
+            loader.parse(in, inputName(f, compression), sink);
+        }
+        if (hasher != null) {
+            sha1 = hasher.digest();
+            if (hashes != null) {
+                hashes.put(f, p.hash, sha1);
+            }
+        }
+        LOG.info("file: {}, {}: {}", p.data, p.hash, sha1);
+        return sink.getStore();
+    }
+
+    /**
+     * Whether input is a sparse ARFF file
+     *
+     * @param p
+     * @return
+     */
+    private boolean isSparseInput(CliParams p) {
+        if (sparseInput == null) {
+            sparseInput = false;
+            if (p.generate == null && p.data != null) {
+                File f = inputFile(p);
+                try {
+                    if (!DatasetSnapshot.isSnapshot(f) && Compression.detect(f) == Compression.NONE) {
+                        detectType(f, Compression.NONE, p);
+                        sparseInput = "arff".equals(p.type)
+                                && new ParallelArffLoader<E>(p.clsIndex, p.loadThreads).isSparse(f);
+                    }
+                } catch (IOException | ParserError ex) {
+                    LOG.warn("failed to read {}: {}", p.data, ex.getMessage());
+                }
+            }
+        }
+        return sparseInput;
+    }
+
+    /**
+     * Load sparse ARFF into a CSR store, rows are never expanded to dense
+     * vectors
+     *
+     * @param p
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    protected SparseDataset loadSparse(CliParams p) throws IOException, ParserError {
+        File f = inputFile(p);
+        FingerprintCache hashes = p.hashCache ? new FingerprintCache(cacheDir(p)) : null;
+        sha1 = hashes != null ? hashes.get(f, p.hash) : null;
+        Fingerprint hasher = sha1 == null ? Fingerprint.create(p.hash) : null;
+        ParallelArffLoader<E> loader = new ParallelArffLoader<>(p.clsIndex, p.loadThreads);
+        loader.setFingerprint(hasher);
+        LOG.info("parsing dataset as sparse arff using {} threads", p.loadThreads);
+        SparseDataset sparse = loader.loadSparse(f);
+        if (hasher != null) {
+            sha1 = hasher.digest();
+            if (hashes != null) {
+                hashes.put(f, p.hash, sha1);
+            }
+        }
+        LOG.info("file: {}, {}: {}", p.data, p.hash, sha1);
+        LOG.info("stored {} non-zero values (density {})", sparse.nnz(), String.format("%.4f", sparse.density()));
+        return sparse;
+    }
+
+    private OffHeapRowStore.Layout layout(CliParams p) {
+        try {
+            return OffHeapRowStore.Layout.parse(p.layout);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidArgumentException("unsupported layout '" + p.layout + "', use row or column");
+        }
+    }
+
+    /**
+     * Whether file will be loaded by multi-threaded parser. Text files with a
+     * header or class column are left to the sequential loader, which handles
+     * these options differently, so that results don't depend on file size.
+     *
+     * @param f
+     * @param p
+     * @return
+     */
+    private boolean isParallel(File f, CliParams p) {
+        if (p.type == null || p.loadThreads <= 1 || f.length() < ChunkedLoader.MIN_SIZE) {
+            return false;
+        }
+        switch (p.type) {
+            case "csv":
+            case "arff":
+                return true;
+            case "txt":
+                if (p.header || p.clsIndex > -1) {
+                    LOG.info("txt with --header or --class is parsed sequentially");
+                    return false;
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Parse dataset from a text file
+     *
+     * @param f
+     * @param df
+     * @param p
+     * @param hasher when not null, hash is computed by the parser
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    private Dataset<E> parseFile(File f, DataFileInfo df, CliParams p, Fingerprint hasher) throws IOException, ParserError {
+        Dataset<E> dataset;
         int clsIndex = p.clsIndex;
         ArrayList<Integer> skip = new ArrayList<>(1);
 
-        DatasetSniffer sniffer = new DataSniffer();
-        DataFileInfo df = sniffer.scan(f);
-        if (p.type == null) {
-            if (df.type == null) {
-                p.type = "arff";
-            } else {
-                p.type = df.type;
-                LOG.info("auto-detected type {}", p.type);
+        if ("arff".equals(p.type)) {
+            //sequential parser doesn't support sparse rows
+            ParallelArffLoader<E> loader = new ParallelArffLoader<>(clsIndex, p.loadThreads);
+            boolean sparse = loader.isSparse(f);
+            if (sparse || isParallel(f, p)) {
+                LOG.info("parsing dataset as {} using {} threads", sparse ? "sparse arff" : p.type, p.loadThreads);
+                loader.setFingerprint(hasher);
+                if (sparse) {
+                    //the algorithm requires dense rows, k-means runs over the sparse store
+                    return loader.loadSparse(f).toDataset();
+                }
+                return loader.load(f);
             }
+        } else if (isParallel(f, p)) {
+            LOG.info("parsing dataset as {} using {} threads", p.type, p.loadThreads);
+            ParallelCsvLoader<E> loader = new ParallelCsvLoader<>(CsvFormat.from(p), p.loadThreads);
+            loader.setFingerprint(hasher);
+            return loader.load(f);
         }
         //guess number of attributes
-        //TODO: we should be able to estimate number of lines
+        //small files are parsed sequentially, no need to estimate number of lines
         dataset = new ArrayDataset(150, df.numAttributes);
 
         LOG.info("parsing dataset as {}", p.type);
@@ -202,17 +648,146 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         return dataset;
     }
 
+    /**
+     * Parse compressed file. Input is decompressed on a background thread
+     * while the parser processes already decompressed blocks, no temporary
+     * files are written.
+     *
+     * @param f
+     * @param compression
+     * @param p
+     * @param hasher when not null, hash of the compressed file is computed
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    private Dataset<E> parseCompressed(File f, Compression compression, CliParams p, Fingerprint hasher) throws IOException, ParserError {
+        StreamingLoader<E> loader = new StreamingLoader<>(streamParser(p), p.loadThreads);
+        try (InputStream in = compression.open(f, hasher)) {
+            return loader.load(in, inputName(f, compression));
+        }
+    }
+
+    /**
+     * Parser for streamed input
+     *
+     * @param p
+     * @return
+     */
+    private ChunkedLoader streamParser(CliParams p) {
+        LOG.info("parsing dataset as {} using {} threads", p.type, p.loadThreads);
+        switch (p.type) {
+            case "csv":
+            case "txt":
+                return new ParallelCsvLoader<E>(CsvFormat.from(p), p.loadThreads);
+            case "arff":
+                return new ParallelArffLoader<E>(p.clsIndex, p.loadThreads);
+            default:
+                throw new InvalidArgumentException("file format " + p.type + " is not supported");
+        }
+    }
+
+    /**
+     * Dataset name derived from file name (without extensions)
+     *
+     * @param f
+     * @param compression
+     * @return
+     */
+    private String inputName(File f, Compression compression) {
+        String name = compression.stripSuffix(f.getName());
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Guess type of compressed data from file name (e.g.
+     * <code>data.csv.gz</code>) or from the first line
+     *
+     * @param f
+     * @param compression
+     * @return
+     * @throws IOException
+     */
+    private String compressedType(File f, Compression compression) throws IOException {
+        String name = compression.stripSuffix(f.getName()).toLowerCase();
+        for (String type : new String[]{"csv", "txt", "arff"}) {
+            if (name.endsWith("." + type)) {
+                return type;
+            }
+        }
+        try (InputStream in = compression.decompress(new FileInputStream(f))) {
+            int b;
+            while ((b = in.read()) >= 0 && Character.isWhitespace(b)) {
+                //skip leading blank lines
+            }
+            return (b == '@' || b == '%') ? "arff" : "csv";
+        }
+    }
+
+    /**
+     * Directory for cached dataset snapshots
+     *
+     * @param p
+     * @return
+     */
+    File cacheDir(CliParams p) {
+        if (p.cacheDir != null) {
+            return new File(FileUtil.mkdir(p.cacheDir));
+        }
+        return new File(FileUtil.mkdir(p.home + File.separatorChar + "cache"));
+    }
+
+    /**
+     * Options which affect parsed dataset
+     *
+     * @param p
+     * @return
+     */
+    private String parserOptions(CliParams p) {
+        return p.type + ";" + CsvFormat.from(p).key();
+    }
+
     protected ClusteringAlgorithm parseAlgorithm(String alg) {
-        ClusteringAlgorithm algorithm = ClusteringFactory.getInstance().getProvider(alg);
+        ClusteringAlgorithm algorithm = provider(ClusteringFactory.getInstance().getProvider(alg));
         return algorithm;
     }
 
+    /**
+     * Evaluation metric of given name
+     *
+     * @param name
+     * @return
+     */
+    private ClusterEvaluation metric(String name) {
+        return provider(EvaluationFactory.getInstance().getProvider(name));
+    }
+
     @Override
     public void run() {
+        try {
+            execute();
+        } finally {
+            //threads of metric evaluation
+            export.shutdown();
+        }
+    }
+
+    private void execute() {
         if (cliParams.syncDB) {
             syncDB();
             return;
         }
+        if (cliParams.generateTo != null) {
+            generateFile();
+            return;
+        }
+        if (cliParams.outOfCore || cliParams.offHeap || isFloat(cliParams) || isHamerly(cliParams)
+                || isSparseInput(cliParams)) {
+            if (storeClustering()) {
+                return;
+            }
+        }
         Dataset<E> dataset = null;
         try {
             dataset = (Dataset<E>) loadData(cliParams);
@@ -260,12 +835,12 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
                     //internal evaluation
                     InternalEvaluatorFactory ief = InternalEvaluatorFactory.getInstance();
                     File res = export.createNewFile(dataset, "internal-" + run);
-                    evals = ief.getAllArray();
+                    evals = providers(ief.getAllArray());
                     export.ranking(ranking, evals, res);
 
                     LOG.info("Computing correlation to {}", cliParams.optEval);
                     //ranking correlation
-                    ClusterEvaluation supervised = EvaluationFactory.getInstance().getProvider(cliParams.optEval);
+                    ClusterEvaluation supervised = metric(cliParams.optEval);
                     res = export.resultsFile(dataset.getName() + "-correlation");
                     export.correlation(ranking, evals, res, supervised, rankingName(metaSearch), metaParams);
 
@@ -273,7 +848,7 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
                     LOG.info("Computing unsupervised cooeficients");
                     ExternalEvaluatorFactory eef = ExternalEvaluatorFactory.getInstance();
                     res = export.createNewFile(dataset, "external-" + run);
-                    evals = eef.getAllArray();
+                    evals = providers(eef.getAllArray());
                     export.ranking(ranking, evals, res);
                     //TODO: make sure list is sorted in ascending order
                     Clustering c = list.get(0);
@@ -349,7 +924,7 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         if (prop.size() > 0) {
             LOG.info("params: {}", prop.toString());
         }
-        prop.put(PropType.RUNTIME, "sha1", sha1);
+        putHash(prop);
 
         String alg = prop.get("algorithm", cliParams.algorithm);
         ClusteringAlgorithm algorithm = parseAlgorithm(alg);
@@ -363,14 +938,13 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         if (cliParams.hintK) {
             prop.putInt(KMeans.K, dataset.getClasses().size());
         }
-        Executor exec;
-        if ("local".equals(cliParams.executor)) {
-            exec = new ClusteringExecutorCached();
-        } else {
-            exec = new MesosExecutor(cliParams.executor);
+        if (cliParams.parallel > 1 && cliParams.repeat > 1) {
+            parallelRuns(dataset, prop, algorithm, evals);
+            return;
         }
+        Executor exec = executor();
 
-        time = new StopWatch(false);
+        time.set(new StopWatch(false));
         for (int run = 0; run < cliParams.repeat; run++) {
             LOG.debug("executing {}", prop.toJson());
             if (algorithm instanceof AgglomerativeClustering) {
@@ -378,10 +952,440 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
             } else {
                 prop = flatPartitioning(dataset, prop, algorithm, evals, run);
             }
-            LOG.info("finished clustering [run {}]: {}", new Object[]{prop.toString(), run});
-            LOG.info("total time {}ms, in seconds: {}", new Object[]{time.formatMs(), time.formatSec()});
-
+            LOG.info("finished clustering [run {}]: {}", new Object[]{prop.toString(), run});
+            LOG.info("total time {}ms, in seconds: {}", new Object[]{time.get().formatMs(), time.get().formatSec()});
+
+        }
+    }
+
+    private Executor executor() {
+        if ("local".equals(cliParams.executor)) {
+            return new ClusteringExecutorCached();
+        }
+        return new MesosExecutor(cliParams.executor);
+    }
+
+    /**
+     * Concurrent runs of the same configuration. Unlike sequential runs
+     * parameters found by a run are not passed to the next one, each run
+     * starts from a copy of initial parameters and uses its own algorithm
+     * instance.
+     *
+     * @param dataset
+     * @param prop
+     * @param algorithm
+     * @param evals
+     */
+    private void parallelRuns(final Dataset<E> dataset, final Props prop, final ClusteringAlgorithm algorithm, final ClusterEvaluation[] evals) {
+        repeat(new RunTask() {
+            @Override
+            public void run(int run) {
+                ClusteringAlgorithm alg = newInstance(algorithm);
+                Props res;
+                LOG.debug("executing {}", prop.toJson());
+                if (alg instanceof AgglomerativeClustering) {
+                    res = hierachical(executor(), dataset, prop.copy(), alg, evals, run);
+                } else {
+                    res = flatPartitioning(dataset, prop.copy(), alg, evals, run);
+                }
+                LOG.info("finished clustering [run {}]: {}", run, res.toString());
+                LOG.info("run {} time {}ms, in seconds: {}", run, time.get().formatMs(), time.get().formatSec());
+            }
+        });
+    }
+
+    /**
+     * New instance of the same class (factories return shared instances which
+     * are not meant to be used concurrently)
+     *
+     * @param <T>
+     * @param obj
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T newInstance(T obj) {
+        try {
+            return (T) obj.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new RuntimeException("failed to create instance of " + obj.getClass().getName(), ex);
+        }
+    }
+
+    /**
+     * Instance returned by a factory. Jobs (<code>--jobs</code>) might run
+     * concurrently, each one uses its own instances.
+     *
+     * @param <T>
+     * @param obj
+     * @return
+     */
+    private <T> T provider(T obj) {
+        return shared != null && obj != null ? newInstance(obj) : obj;
+    }
+
+    private <T> T[] providers(T[] objs) {
+        if (shared == null) {
+            return objs;
+        }
+        T[] res = objs.clone();
+        for (int i = 0; i < res.length; i++) {
+            res[i] = newInstance(res[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Number of threads available to a single run
+     *
+     * @return
+     */
+    int runThreads() {
+        return runThreads(cliParams.parallel);
+    }
+
+    /**
+     * Number of threads available to a single run when <code>parallel</code>
+     * runs are executed concurrently
+     *
+     * @param parallel
+     * @return
+     */
+    int runThreads(int parallel) {
+        return Math.max(1, cliParams.threads / Math.max(1, Math.min(parallel, cliParams.repeat)));
+    }
+
+    /**
+     * Single run of a repeated experiment
+     */
+    private interface RunTask {
+
+        void run(int run);
+    }
+
+    /**
+     * Execute <code>--repeat</code> runs, up to <code>--parallel</code> runs
+     * concurrently. Each run has its own timer, CSV results of concurrent runs
+     * are written in order of runs.
+     *
+     * @param task
+     */
+    private void repeat(final RunTask task) {
+        repeat(cliParams.parallel, task);
+    }
+
+    /**
+     * Execute <code>--repeat</code> runs, up to <code>parallel</code> runs
+     * concurrently
+     *
+     * @param parallel
+     * @param task
+     */
+    private void repeat(int parallel, final RunTask task) {
+        int threads = Math.min(Math.max(parallel, 1), cliParams.repeat);
+        if (threads <= 1) {
+            for (int run = 0; run < cliParams.repeat; run++) {
+                time.set(new StopWatch(false));
+                task.run(run);
+            }
+            return;
+        }
+        LOG.info("executing {} runs, {} concurrently", cliParams.repeat, threads);
+        export.resetRuns();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(cliParams.repeat);
+            for (int r = 0; r < cliParams.repeat; r++) {
+                final int run = r;
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        time.set(new StopWatch(false));
+                        export.defer();
+                        try {
+                            task.run(run);
+                        } finally {
+                            export.commit(run);
+                            time.remove();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for runs", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("run failed: " + ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Stream generated data into a file, format is given by file extension.
+     * Blocks of rows are generated and formatted in parallel.
+     */
+    private void generateFile() {
+        if (cliParams.generate == null) {
+            throw new InvalidArgumentException("--generate-to requires data dimensions, e.g. --generate 1000000x10");
+        }
+        File f = new File(cliParams.generateTo);
+        BlockFileWriter.Format format;
+        try {
+            format = BlockFileWriter.Format.of(f);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidArgumentException(e.getMessage());
+        }
+        int[] dim = generateSize(cliParams);
+        DataGenerator<E> gen = generator(cliParams);
+        gen.init(dim[1]);
+        StopWatch timer = new StopWatch(false);
+        timer.startMeasure();
+        try (final BlockFileWriter writer = new BlockFileWriter(f, format, DataGenerator.name(dim[0], dim[1]),
+                DataGenerator.attributes(dim[1]), gen.classNames(), dim[0])) {
+            gen.generate(dim[0], dim[1], new DataGenerator.BlockHandler() {
+                @Override
+                public void block(int block, int from, int rows, double[] values, int[] labels) throws Exception {
+                    //noise (-1) is the first class
+                    for (int i = 0; i < rows; i++) {
+                        labels[i]++;
+                    }
+                    writer.write(block, from, rows, values, labels);
+                }
+            });
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+            throw new RuntimeException("failed to write " + f.getAbsolutePath());
+        }
+        timer.endMeasure();
+        LOG.info("generated {}x{} into {} in {}s", dim[0], dim[1], f.getAbsolutePath(), timer.formatSec());
+    }
+
+    private boolean isFloat(CliParams p) {
+        switch (p.precision) {
+            case "double":
+                return false;
+            case "float":
+                return true;
+            default:
+                throw new InvalidArgumentException("unsupported precision '" + p.precision + "', use double or float");
+        }
+    }
+
+    private boolean isHamerly(CliParams p) {
+        switch (p.kmeans.toLowerCase()) {
+            case "lloyd":
+                return false;
+            case "hamerly":
+                return true;
+            default:
+                throw new InvalidArgumentException("unsupported k-means engine '" + p.kmeans + "', use lloyd or hamerly");
+        }
+    }
+
+    /**
+     * Run k-means over a compact row store: memory-mapped snapshot of the
+     * input (out-of-core), sparse rows, off-heap buffers or values in single
+     * precision.
+     * Clustering is evaluated on a uniform sample of rows, since evaluation
+     * metrics require whole clustering to be loaded into memory. The
+     * accelerated engine might also run over a heap dataset, which is then
+     * evaluated whole.
+     *
+     * @return false when the algorithm can't run on a row store
+     */
+    private boolean storeClustering() {
+        Props prop = parseJson(cliParams.getParams());
+        String alg = prop.get("algorithm", cliParams.algorithm);
+        ClusteringAlgorithm algorithm = parseAlgorithm(alg);
+        if (!(algorithm instanceof KMeans)) {
+            if (cliParams.outOfCore) {
+                throw new RuntimeException("out-of-core mode supports only k-means, got '" + alg + "'");
+            }
+            if (cliParams.offHeap || isFloat(cliParams)) {
+                LOG.warn("compact storage is supported only by k-means, '{}' will use heap dataset", alg);
+            }
+            return false;
+        }
+        if (cliParams.experiment == null) {
+            cliParams.experiment = safeName(alg);
+        }
+        RowStore data;
+        Dataset<E> sample;
+        int[] rows;
+        try {
+            if (cliParams.outOfCore) {
+                DatasetSnapshot<E> snapshot = loadSnapshot(cliParams);
+                data = snapshot.rowStore();
+                rows = sampleRows(data.size());
+                sample = snapshot.read(rows);
+            } else if (isSparseInput(cliParams)) {
+                //only the evaluation sample is converted to dense rows
+                SparseDataset sparse = loadSparse(cliParams);
+                data = sparse;
+                rows = sampleRows(data.size());
+                sample = sparse.toDataset(rows);
+            } else if (cliParams.offHeap || isFloat(cliParams)) {
+                AbstractRowStore store = loadStore(cliParams);
+                data = store;
+                rows = sampleRows(data.size());
+                sample = store.toDataset(rows);
+            } else {
+                sample = (Dataset<E>) loadData(cliParams);
+                data = new DatasetRowStore(sample);
+                rows = new int[sample.size()];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = i;
+                }
+            }
+        } catch (IOException | ParserError | NoSuchAlgorithmException ex) {
+            Exceptions.printStackTrace(ex);
+            throw new RuntimeException("failed to load any data");
+        }
+        LOG.info("loaded dataset \"{}\" with {} instances, {} attributes", sample.getName(), data.size(), data.attributeCount());
+        putHash(prop);
+        if (cliParams.hintK) {
+            prop.putInt(KMeans.K, sample.getClasses().size());
+        }
+        final ClusterEvaluation[] evals = loadEvaluation(cliParams.eval);
+        final boolean hamerly = isHamerly(cliParams);
+        int parallel = cliParams.parallel;
+        if (hamerly && parallel == 1) {
+            //independent restarts
+            parallel = Math.max(1, Math.min(cliParams.repeat, cliParams.threads));
+        }
+        //cores are shared by concurrent runs
+        final int threads = runThreads(parallel);
+        final RowStore store = data;
+        final Dataset<E> evalSample = sample;
+        final int[] sampled = rows;
+        final double[] inertia = new double[Math.max(1, cliParams.repeat)];
+        final List<Clustering<E, C>> results = new ArrayList<>(Collections.<Clustering<E, C>>nCopies(inertia.length, null));
+        repeat(parallel, new RunTask() {
+            @Override
+            public void run(int run) {
+                Props conf = prop.copy();
+                int k = conf.getInt(KMeans.K, 4);
+                int iterations = conf.getInt("iterations", 100);
+                //each restart starts from different centroids
+                long seed = conf.getLong("seed", 0) + run;
+                LloydKMeans kmeans = hamerly
+                        ? new HamerlyKMeans(k, iterations, seed, threads) : new LloydKMeans(k, iterations, seed, threads);
+                time.get().startMeasure();
+                int[] labels = kmeans.cluster(store);
+                time.get().endMeasure();
+                conf.put(PropType.RUNTIME, "sse", String.valueOf(kmeans.getSse()));
+                conf.put(PropType.RUNTIME, "iterations", String.valueOf(kmeans.getIterations()));
+                Clustering<E, C> clustering = sampleClustering(evalSample, sampled, labels, conf);
+                inertia[run] = kmeans.getSse();
+                results.set(run, clustering);
+                clustering.lookupAdd(time.get());
+                LOG.info("got {} clusters (in sample of {} rows)", clustering.size(), sampled.length);
+                export.evaluate(clustering, evals, evalSample);
+                LOG.info("finished clustering [run {}]: {}", run, conf.toString());
+                LOG.info("run {} time {}ms, in seconds: {}", run, time.get().formatMs(), time.get().formatSec());
+            }
+        });
+        int best = LloydKMeans.best(inertia);
+        LOG.info("best run {} with inertia {}", best, inertia[best]);
+        if (hamerly && cliParams.scatter && results.get(best) != null) {
+            saveScatter(results.get(best), evalSample.getName(), algorithm);
+        }
+        return true;
+    }
+
+    private int[] sampleRows(int n) {
+        int size = Math.min(n, cliParams.sample);
+        //indexes of sampled instances differ from the whole dataset
+        sample = size + "/" + n + ";seed=" + (cliParams.seed != null ? cliParams.seed : n);
+        return LloydKMeans.sample(n, size, sampling(n));
+    }
+
+    /**
+     * Random generator for sampling rows, seeded by <code>--seed</code> (or
+     * by number of rows when not given, so that samples are reproducible)
+     *
+     * @param n
+     * @return
+     */
+    private Random sampling(int n) {
+        return new Random(cliParams.seed != null ? cliParams.seed : n);
+    }
+
+    /**
+     * Clustering of all rows, rows labeled as {@link IndexedDBSCAN#NOISE} (if
+     * any) are put into the last cluster named "Noise"
+     *
+     * @param dataset
+     * @param labels
+     * @param prop
+     * @return
+     */
+    private Clustering<E, C> labelClustering(Dataset<E> dataset, int[] labels, Props prop) {
+        int k = IndexedDBSCAN.clusters(labels);
+        boolean noise = false;
+        for (int l : labels) {
+            if (l == IndexedDBSCAN.NOISE) {
+                noise = true;
+                break;
+            }
+        }
+        Clustering<E, C> clustering = new ClusterList(noise ? k + 1 : k);
+        List<C> clusters = new ArrayList<>(k + 1);
+        //labels are assigned in order of rows
+        for (int i = 0; i < k; i++) {
+            clusters.add(clustering.createCluster());
+        }
+        if (noise) {
+            C cluster = clustering.createCluster();
+            cluster.setName("Noise");
+            clusters.add(cluster);
+        }
+        for (int i = 0; i < labels.length; i++) {
+            clusters.get(labels[i] == IndexedDBSCAN.NOISE ? k : labels[i]).add(dataset.get(i));
+        }
+        clustering.lookupAdd(dataset);
+        clustering.mergeParams(prop);
+        return clustering;
+    }
+
+    /**
+     * Clustering of sampled rows
+     *
+     * @param sample
+     * @param rows index of each sampled row in the whole dataset
+     * @param labels cluster assignments of all rows
+     * @param prop
+     * @return
+     */
+    private Clustering<E, C> sampleClustering(Dataset<E> sample, int[] rows, int[] labels, Props prop) {
+        int k = 0;
+        for (int row : rows) {
+            k = Math.max(k, labels[row] + 1);
+        }
+        Clustering<E, C> clustering = new ClusterList(k);
+        List<C> clusters = new ArrayList<>(k);
+        for (int i = 0; i < k; i++) {
+            clusters.add(null);
+        }
+        //clusters are created in order of labels
+        for (int i = 0; i < k; i++) {
+            for (int row : rows) {
+                if (labels[row] == i) {
+                    clusters.set(i, clustering.createCluster());
+                    break;
+                }
+            }
         }
+        for (int i = 0; i < rows.length; i++) {
+            clusters.get(labels[rows[i]]).add(sample.get(i));
+        }
+        clustering.lookupAdd(sample);
+        clustering.mergeParams(prop);
+        return clustering;
     }
 
     private String rankingName(Evolution evo) {
@@ -424,10 +1428,10 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
     }
 
     private Clustering cluster(Dataset<? extends Instance> dataset, Props prop, ClusteringAlgorithm algorithm) {
-        time.startMeasure();
+        time.get().startMeasure();
         Clustering clustering = algorithm.cluster(dataset, prop);
-        time.endMeasure();
-        clustering.lookupAdd(time);
+        time.get().endMeasure();
+        clustering.lookupAdd(time.get());
         return clustering;
     }
 
@@ -441,7 +1445,11 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
             prop.put(AlgParams.CUTOFF_STRATEGY, cliParams.cutoff);
         }
         LOG.info("clustering rows/columns: {}", cliParams.cluster);
-        time.startMeasure();
+        if (cliParams.proximityCache) {
+            //the library computes the proximity matrix internally
+            throw new InvalidArgumentException("--proximity-cache is supported only with --dbscan-index, not by hierarchical algorithms");
+        }
+        time.get().startMeasure();
         if (cliParams.optimal) {
             res = optHierarchical(exec, dataset, prop, evals);
             prop = res.getClustering().getParams();
@@ -464,7 +1472,7 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         }
         if (res != null) {
             clustering = res.getClustering();
-            clustering.lookupAdd(time);
+            clustering.lookupAdd(time.get());
             if (evals != null) {
                 export.evaluate(clustering, evals, dataset);
             }
@@ -491,7 +1499,7 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         switch (cliParams.cluster) {
             case "rows":
                 HierarchicalResult rowsResult = exec.hclustRows(dataset, prop);
-                time.endMeasure();
+                time.get().endMeasure();
                 //don't count time required for finding best cutoff into total
                 exec.findCutoff(rowsResult, prop);
                 mapping = new DendrogramData(dataset, rowsResult);
@@ -514,7 +1522,28 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         return res;
     }
 
-    private HierarchicalResult optHierarchical(Executor exec, Dataset<E> dataset, Props def, ClusterEvaluation[] evals) {
+    private HierarchicalResult optHierarchical(final Executor exec, final Dataset<E> dataset, Props def, ClusterEvaluation[] evals) {
+        if (exec.getAlgorithm() instanceof Chameleon && "tpe".equals(cliParams.search)) {
+            SearchSpace space = new SearchSpace()
+                    .categorical("k-estim", "log10", "10ln", "8ln", "4ln", "cln")
+                    .real("closeness_priority", 0.5, 4.0)
+                    .real("interconnectivity_priority", 0.5, 4.0);
+            return tpeSearch(dataset, def, space, metric(cliParams.optEval), evals,
+                    new Trial<HierarchicalResult>() {
+                @Override
+                public HierarchicalResult run(Props conf) {
+                    time.set(new StopWatch(true));
+                    HierarchicalResult res = stdHierarchical(exec, dataset, conf);
+                    res.getClustering().lookupAdd(time.get());
+                    return res;
+                }
+
+                @Override
+                public Clustering clustering(HierarchicalResult result) {
+                    return result.getClustering();
+                }
+            });
+        }
         if (exec.getAlgorithm() instanceof Chameleon) {
             //test several configurations and return best result
             String[] configs;
@@ -643,32 +1672,82 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         }
     }
 
-    private HierarchicalResult findBestHclust(String[] configs, Executor exec, Dataset<E> dataset, Props def, ClusterEvaluation[] evals) {
-        double maxScore = 0.0, score;
-        Props prop;
-        ClusterEvaluation eval = EvaluationFactory.getInstance().getProvider(cliParams.optEval);
-        Clustering clustering;
-        HierarchicalResult res;
-        HierarchicalResult bestRes = null;
-        for (String config : configs) {
-            prop = def.copy();
-            prop.merge(Props.fromJson(config));
-            System.out.println("using prop: " + prop.toString());
-            time = new StopWatch(true);
-            res = stdHierarchical(exec, dataset, prop);
-            clustering = res.getClustering();
-            clustering.lookupAdd(time);
-            try {
-                score = eval.score(clustering, prop);
-            } catch (ScoreException ex) {
-                score = Double.NaN;
-                LOG.warn("failed to compute score {}: {}", new Object[]{eval.getName(), ex.getMessage()});
+    /**
+     * Evaluate Chameleon configurations on a pool of workers, each
+     * configuration with its own executor and algorithm instance. Results are
+     * exported in order of configurations. The k-NN graph and its
+     * partitioning are built by every configuration, Chameleon doesn't accept
+     * a prebuilt graph.
+     *
+     * @param configs
+     * @param exec
+     * @param dataset
+     * @param def
+     * @param evals
+     * @return best result according to <code>--opt-eval</code>
+     */
+    private HierarchicalResult findBestHclust(String[] configs, final Executor exec, final Dataset<E> dataset, Props def, ClusterEvaluation[] evals) {
+        double maxScore = 0.0;
+        final ClusterEvaluation eval = metric(cliParams.optEval);
+        final Props[] props = new Props[configs.length];
+        for (int i = 0; i < configs.length; i++) {
+            props[i] = def.copy();
+            props[i].merge(Props.fromJson(configs[i]));
+        }
+        final HierarchicalResult[] results = new HierarchicalResult[configs.length];
+        final StopWatch[] watches = new StopWatch[configs.length];
+        final double[] scores = new double[configs.length];
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(runThreads(), configs.length)));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(configs.length);
+            for (int i = 0; i < configs.length; i++) {
+                final int idx = i;
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Executor local = executor();
+                        local.setAlgorithm(newInstance(exec.getAlgorithm()));
+                        ClusterEvaluation ev = newInstance(eval);
+                        LOG.info("using prop: {}", props[idx].toString());
+                        watches[idx] = new StopWatch(true);
+                        time.set(watches[idx]);
+                        HierarchicalResult res = stdHierarchical(local, dataset, props[idx]);
+                        Clustering clustering = res.getClustering();
+                        clustering.lookupAdd(watches[idx]);
+                        time.remove();
+                        try {
+                            scores[idx] = ev.score(clustering, props[idx]);
+                        } catch (ScoreException ex) {
+                            scores[idx] = Double.NaN;
+                            LOG.warn("failed to compute score {}: {}", new Object[]{eval.getName(), ex.getMessage()});
+                        }
+                        results[idx] = res;
+                        return null;
+                    }
+                }));
             }
-            if (eval.isBetter(score, maxScore)) {
-                maxScore = score;
-                bestRes = res;
+            for (Future<Void> f : futures) {
+                f.get();
             }
-            export.evaluate(clustering, evals, dataset);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Chameleon search interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Chameleon search failed: " + ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        HierarchicalResult bestRes = null;
+        for (int i = 0; i < configs.length; i++) {
+            if (eval.isBetter(scores[i], maxScore)) {
+                maxScore = scores[i];
+                bestRes = results[i];
+            }
+            export.evaluate(results[i].getClustering(), evals, dataset);
+        }
+        //same timer as after sequential search (of the last configuration)
+        if (watches.length > 0) {
+            time.set(watches[watches.length - 1]);
         }
         return bestRes;
     }
@@ -699,21 +1778,51 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         Clustering clustering = null;
         Clustering curr;
         int cnt = 0;
-        ClusterEvaluation eval = EvaluationFactory.getInstance().getProvider(cliParams.optEval);
+        ClusterEvaluation eval = metric(cliParams.optEval);
+        if ("halving".equals(cliParams.search)) {
+            List<Props> candidates = searchCandidates(algorithm, prop);
+            if (candidates != null) {
+                return halvingSearch(dataset, prop, algorithm, eval, evals, candidates);
+            }
+            LOG.warn("successive halving is not supported by {}, using exhaustive search", algorithm.getName());
+        }
+        if ("tpe".equals(cliParams.search)) {
+            SearchSpace space = searchSpace(dataset, prop, algorithm);
+            if (space != null) {
+                final ClusteringAlgorithm alg = algorithm;
+                final Dataset<E> data = dataset;
+                return tpeSearch(dataset, prop, space, eval, evals, new Trial<Clustering>() {
+                    @Override
+                    public Clustering run(Props conf) {
+                        return cluster(data, conf, alg);
+                    }
+
+                    @Override
+                    public Clustering clustering(Clustering result) {
+                        return result;
+                    }
+                });
+            }
+            LOG.warn("model-based search is not supported by {}, using exhaustive search", algorithm.getName());
+        }
         if (algorithm instanceof DBSCAN) {
             double bestEps = 0;
             int bestPts = 0;
             int maxSize = (int) Math.sqrt(dataset.size());
             double maxScore = 0.0, score;
             DBSCANParamEstim<E> dbscanParam = DBSCANParamEstim.getInstance();
-            dbscanParam.estimate((Dataset<E>) dataset, prop);
+            double epsMax, epsMin;
+            //the estimator is a singleton shared by concurrent jobs
+            synchronized (dbscanParam) {
+                dbscanParam.estimate((Dataset<E>) dataset, prop);
 
-            //plot k-dist
-            GnuplotLinePlot<E, C> chart = new GnuplotLinePlot<>(workDir() + File.separatorChar + dataset.getName());
-            chart.plot(dbscanParam, dataset, "4-dist plot " + dataset.getName());
+                //plot k-dist
+                GnuplotLinePlot<E, C> chart = new GnuplotLinePlot<>(workDir() + File.separatorChar + dataset.getName());
+                chart.plot(dbscanParam, dataset, "4-dist plot " + dataset.getName());
 
-            double epsMax = dbscanParam.getMaxEps();
-            double epsMin = dbscanParam.getMinEps();
+                epsMax = dbscanParam.getMaxEps();
+                epsMin = dbscanParam.getMinEps();
+            }
             double step = (epsMax - epsMin) / 10.0;
 
             System.out.println("min = " + epsMin + ", max = " + epsMax);
@@ -722,32 +1831,17 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
             LOG.info("using method: {}", cliParams.method);
             switch (cliParams.method) {
                 case "sp"://search parameters (a.k.a. super-powers)
-                    for (int i = 4; i <= 10; i++) {
-                        prop.putInt(DBSCAN.MIN_PTS, i);
-                        eps = epsMax;
-                        while (eps > epsMin) {
-                            prop.putDouble(DBSCAN.EPS, eps);
-                            curr = cluster(dataset, prop, algorithm);
-                            try {
-                                score = eval.score(curr, prop);
-                            } catch (ScoreException ex) {
-                                score = Double.NaN;
-                                LOG.warn("failed to compute score {}: {}", new Object[]{eval.getName(), ex.getMessage()});
-                            }
-                            System.out.println("eps = " + eps + " minPts = " + i + " => " + eval.getName() + ": " + score + ", clusters: " + curr.size());
-                            if (eval.isBetter(score, maxScore)) {
-                                maxScore = score;
-                                clustering = curr;
-                                bestEps = eps;
-                                bestPts = i;
-                            }
-                            export.evaluate(curr, evals, dataset);
-                            cnt++;
-                            eps -= step; //eps increment
-                            if (curr.size() == 1 || curr.size() >= maxSize) {
-                                break;
-                            }
+                    for (SweepPoint pt : dbscanSweep(dataset, prop, algorithm, eval, epsMin, epsMax, step, maxSize)) {
+                        LOG.debug("eps = {} minPts = {} => {}: {}, clusters: {}",
+                                new Object[]{pt.eps, pt.minPts, eval.getName(), pt.score, pt.clustering.size()});
+                        if (eval.isBetter(pt.score, maxScore)) {
+                            maxScore = pt.score;
+                            clustering = pt.clustering;
+                            bestEps = pt.eps;
+                            bestPts = pt.minPts;
                         }
+                        export.evaluate(pt.clustering, evals, dataset);
+                        cnt++;
                     }
                     break;
                 default:
@@ -810,20 +1904,7 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
             }
             prop.put(CURE.SHRINK_FACTOR, bestShrink);
         } else if (algorithm.getName().equals("CLUTO")) {
-            String[] configs = new String[]{
-                "{crfun=i1,agglofrom=15}",
-                "{crfun=i2}",
-                "{crfun=e1}",
-                "{crfun=g1}",
-                "{crfun=g1p}",
-                "{crfun=h1,agglofrom=20}",
-                "{crfun=h2}",
-                "{crfun=slink}",
-                "{crfun=wslink}",
-                "{crfun=clink}",
-                "{crfun=wclink}",
-                "{crfun=upgma}"
-            };
+            String[] configs = CLUTO_CONFIGS;
             Props conf;
             double maxScore = 0.0, score;
             String bestConf = "";
@@ -850,25 +1931,29 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
             /**
              * TODO: a heuristic to determine preference
              */
-            String[] configs = new String[]{
-                "{damping=0.5}",
-                "{damping=0.55}",
-                "{damping=0.6}",
-                "{damping=0.65}",
-                "{damping=0.7}",
-                "{damping=0.75}",
-                "{damping=0.8}",
-                "{damping=0.85}",
-                "{damping=0.9}",
-                "{damping=0.95}"
-            };
+            String[] configs = AP_CONFIGS;
             Props conf;
             double maxScore = 0.0, score;
             String bestConf = "";
+            //single similarity matrix, each damping starts from previous messages
+            WarmAffinityPropagation warm = null;
+            if (cliParams.apWarm) {
+                warm = new WarmAffinityPropagation(new DatasetRowStore(dataset),
+                        prop.getInt("max_iterations", 1000), prop.getInt("convits", 15),
+                        prop.getDouble("preference", Double.NaN), dataset.size(), runThreads());
+            }
             for (String config : configs) {
                 conf = prop.copy();
                 conf.merge(Props.fromJson(config));
-                curr = cluster(dataset, conf, algorithm);
+                if (warm != null) {
+                    time.get().startMeasure();
+                    int[] labels = warm.cluster(conf.getDouble("damping"));
+                    time.get().endMeasure();
+                    curr = labelClustering(dataset, labels, conf);
+                    curr.lookupAdd(time.get());
+                } else {
+                    curr = cluster(dataset, conf, algorithm);
+                }
                 try {
                     score = eval.score(curr, conf);
                 } catch (ScoreException ex) {
@@ -891,8 +1976,494 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         return clustering;
     }
 
+    /**
+     * Configurations tried by <code>--optimal</code> search
+     *
+     * @param algorithm
+     * @param prop
+     * @return null when the algorithm has no fixed list of candidates
+     */
+    private List<Props> searchCandidates(ClusteringAlgorithm algorithm, Props prop) {
+        List<Props> res = new ArrayList<>();
+        if (algorithm instanceof CURE) {
+            for (double shrink = 0.1; shrink < 1.0; shrink += 0.1) {
+                Props conf = prop.copy();
+                conf.putDouble(CURE.SHRINK_FACTOR, shrink);
+                res.add(conf);
+            }
+            return res;
+        }
+        String[] configs;
+        if (algorithm.getName().equals("CLUTO")) {
+            configs = CLUTO_CONFIGS;
+        } else if (algorithm instanceof AffinityPropagation) {
+            configs = AP_CONFIGS;
+        } else {
+            return null;
+        }
+        for (String config : configs) {
+            Props conf = prop.copy();
+            conf.merge(Props.fromJson(config));
+            res.add(conf);
+        }
+        return res;
+    }
+
+    /**
+     * Parameters explored by model-based search
+     *
+     * @param dataset
+     * @param prop
+     * @param algorithm
+     * @return null when parameters of the algorithm are unknown
+     */
+    private SearchSpace searchSpace(Dataset<E> dataset, Props prop, ClusteringAlgorithm algorithm) {
+        if (algorithm instanceof DBSCAN) {
+            DBSCANParamEstim<E> dbscanParam = DBSCANParamEstim.getInstance();
+            //the estimator is a singleton shared by concurrent jobs
+            synchronized (dbscanParam) {
+                dbscanParam.estimate(dataset, prop);
+                return new SearchSpace()
+                        .real(DBSCAN.EPS, dbscanParam.getMinEps(), Math.max(dbscanParam.getMinEps(), dbscanParam.getMaxEps()))
+                        .integer(DBSCAN.MIN_PTS, 4, 10);
+            }
+        } else if (algorithm instanceof CURE) {
+            return new SearchSpace().real(CURE.SHRINK_FACTOR, 0.1, 0.9);
+        } else if (algorithm.getName().equals("CLUTO")) {
+            return new SearchSpace().categorical("config", CLUTO_CONFIGS);
+        } else if (algorithm instanceof AffinityPropagation) {
+            return new SearchSpace().real("damping", 0.5, 0.95);
+        }
+        return null;
+    }
+
+    /**
+     * Single evaluation of a configuration
+     *
+     * @param <R> result type
+     */
+    private interface Trial<R> {
+
+        R run(Props conf);
+
+        Clustering clustering(R result);
+    }
+
+    /**
+     * Sequential model-based search (TPE) with <code>--budget</code>
+     * evaluations of <code>--opt-eval</code>
+     *
+     * @param <R>
+     * @param dataset
+     * @param prop updated with the best configuration
+     * @param space
+     * @param eval
+     * @param evals
+     * @param trial
+     * @return best result
+     */
+    private <R> R tpeSearch(Dataset<E> dataset, Props prop, SearchSpace space, ClusterEvaluation eval,
+            ClusterEvaluation[] evals, Trial<R> trial) {
+        boolean maximize = eval.isMaximized();
+        int budget = Math.max(1, cliParams.budget);
+        long seed = cliParams.seed != null ? cliParams.seed : System.nanoTime();
+        TpeOptimizer optimizer = new TpeOptimizer(space, Math.min(10, Math.max(2, budget / 3)), seed);
+        R best = null;
+        Props bestConf = null;
+        double maxScore = 0.0, score;
+        for (int i = 0; i < budget; i++) {
+            double[] x = optimizer.suggest();
+            Props conf = prop.copy();
+            applyParams(space, x, conf);
+            R res = trial.run(conf);
+            Clustering curr = trial.clustering(res);
+            try {
+                score = eval.score(curr, conf);
+            } catch (ScoreException ex) {
+                score = Double.NaN;
+                LOG.warn("failed to compute score {}: {}", new Object[]{eval.getName(), ex.getMessage()});
+            }
+            optimizer.observe(x, maximize ? -score : score);
+            LOG.info("trial {}: {} => {}: {}, clusters: {}", i, conf, eval.getName(), score, curr.size());
+            if (eval.isBetter(score, maxScore)) {
+                maxScore = score;
+                best = res;
+                bestConf = conf;
+            }
+            export.evaluate(curr, evals, dataset);
+        }
+        if (bestConf != null) {
+            prop.merge(bestConf);
+            LOG.info("best configuration: {}", bestConf.toString());
+        }
+        LOG.info("evaluated {} configurations (tpe)", budget);
+        return best;
+    }
+
+    /**
+     * Set parameters suggested by an optimizer, categorical values in JSON
+     * format are merged
+     */
+    private void applyParams(SearchSpace space, double[] x, Props conf) {
+        List<SearchSpace.Param> params = space.getParams();
+        for (int p = 0; p < x.length; p++) {
+            SearchSpace.Param param = params.get(p);
+            switch (param.getType()) {
+                case REAL:
+                    conf.putDouble(param.getName(), x[p]);
+                    break;
+                case INTEGER:
+                    conf.putInt(param.getName(), (int) x[p]);
+                    break;
+                default:
+                    String value = param.choice((int) x[p]);
+                    if (value.startsWith("{")) {
+                        conf.merge(Props.fromJson(value));
+                    } else {
+                        conf.put(param.getName(), value);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Successive halving: all candidates are scored on a small stratified
+     * sample, only the best 1/eta of them are scored on an eta times larger
+     * sample, until the survivors are clustered on the whole dataset.
+     *
+     * @param dataset
+     * @param prop updated with the best configuration
+     * @param algorithm
+     * @param eval
+     * @param evals
+     * @param candidates
+     * @return best clustering of the whole dataset
+     */
+    private Clustering halvingSearch(final Dataset<E> dataset, Props prop, final ClusteringAlgorithm algorithm,
+            final ClusterEvaluation eval, ClusterEvaluation[] evals, final List<Props> candidates) {
+        int n = dataset.size();
+        int eta = Math.max(2, cliParams.halvingEta);
+        List<Integer> survivors = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            survivors.add(i);
+        }
+        final Clustering[] results = new Clustering[candidates.size()];
+        final double[] scores = new double[candidates.size()];
+        long[] rungs = SuccessiveHalving.rungs(n, cliParams.halvingMin, eta);
+        int cnt = 0;
+        for (int r = 0; r < rungs.length; r++) {
+            final Dataset<E> sample = rungs[r] < n ? stratifiedSample(dataset, (int) rungs[r]) : dataset;
+            LOG.info("halving: scoring {} candidates on {} rows", survivors.size(), sample.size());
+            scoreCandidates(sample, algorithm, eval, candidates, survivors, results, scores);
+            cnt += survivors.size();
+            if (sample == dataset) {
+                break;
+            }
+            //keep the best candidates, ties are kept in original order
+            Collections.sort(survivors, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return compareScores(eval, scores[a], scores[b]);
+                }
+            });
+            survivors = new ArrayList<>(survivors.subList(0, SuccessiveHalving.promoted(survivors.size(), eta)));
+            Collections.sort(survivors);
+        }
+        Clustering clustering = null;
+        double maxScore = 0.0;
+        int best = -1;
+        for (int i : survivors) {
+            LOG.info("{} => {}: {}, clusters: {}", candidates.get(i), eval.getName(), scores[i], results[i].size());
+            if (eval.isBetter(scores[i], maxScore)) {
+                maxScore = scores[i];
+                clustering = results[i];
+                best = i;
+            }
+            export.evaluate(results[i], evals, dataset);
+        }
+        if (best >= 0) {
+            prop.merge(candidates.get(best));
+            LOG.info("best configuration: {}", candidates.get(best).toString());
+        }
+        LOG.info("{}: evaluated {} clusterings (successive halving)", new Object[]{algorithm.getName(), cnt});
+        return clustering;
+    }
+
+    /**
+     * Cluster given dataset with selected candidates using a pool of workers
+     */
+    private void scoreCandidates(final Dataset<E> data, final ClusteringAlgorithm algorithm, final ClusterEvaluation eval,
+            final List<Props> candidates, List<Integer> selected, final Clustering[] results, final double[] scores) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(runThreads(), selected.size()));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(selected.size());
+            for (final int idx : selected) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        Props conf = candidates.get(idx).copy();
+                        time.set(new StopWatch(false));
+                        results[idx] = cluster(data, conf, newInstance(algorithm));
+                        time.remove();
+                        try {
+                            scores[idx] = newInstance(eval).score(results[idx], conf);
+                        } catch (ScoreException ex) {
+                            scores[idx] = Double.NaN;
+                            LOG.warn("failed to compute score {}: {}", new Object[]{eval.getName(), ex.getMessage()});
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("parameter search interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("parameter search failed: " + ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Order of scores, better first, NaN last
+     */
+    private static int compareScores(ClusterEvaluation eval, double a, double b) {
+        if (Double.isNaN(a) || Double.isNaN(b)) {
+            return Boolean.compare(Double.isNaN(a), Double.isNaN(b));
+        }
+        if (eval.isBetter(a, b)) {
+            return -1;
+        }
+        return eval.isBetter(b, a) ? 1 : 0;
+    }
+
+    /**
+     * Random sample which keeps proportions of classes (largest remainder
+     * allocation), rows are kept in original order
+     *
+     * @param dataset
+     * @param size
+     * @return
+     */
+    private Dataset<E> stratifiedSample(Dataset<E> dataset, int size) {
+        int n = dataset.size();
+        Object[] classes = new Object[n];
+        for (int i = 0; i < n; i++) {
+            classes[i] = dataset.get(i).classValue();
+        }
+        int[] rows = SuccessiveHalving.stratified(classes, size, sampling(n));
+        Dataset<E> sample = new ArrayDataset<>(size, dataset.attributeCount());
+        sample.setName(dataset.getName());
+        for (int j = 0; j < dataset.attributeCount(); j++) {
+            sample.attributeBuilder().create(dataset.getAttribute(j).getName(), "NUMERIC");
+        }
+        for (int i = 0; i < size; i++) {
+            E src = dataset.get(rows[i]);
+            E inst = sample.instance(i);
+            for (int j = 0; j < dataset.attributeCount(); j++) {
+                inst.set(j, src.get(j));
+            }
+            if (src.classValue() != null) {
+                inst.setClassValue(src.classValue());
+            }
+            if (src.getName() != null) {
+                inst.setName(src.getName());
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Evaluate DBSCAN on a grid of minPts (4-10) and eps values using a pool
+     * of workers. For each minPts eps values are tried from the largest one,
+     * a result with a single cluster or with at least sqrt(n) clusters cancels
+     * smaller eps values of the same minPts. Returned points are the same as
+     * points visited by a sequential sweep.
+     *
+     * With <code>--dbscan-index</code> neighbors within epsMax are computed
+     * once and each point is answered by relabeling rows.
+     *
+     * @param dataset
+     * @param prop
+     * @param algorithm
+     * @param eval
+     * @param epsMin
+     * @param epsMax
+     * @param step
+     * @param maxSize
+     * @return evaluated points ordered by minPts and descending eps
+     */
+    private List<SweepPoint> dbscanSweep(final Dataset<E> dataset, final Props prop, final ClusteringAlgorithm algorithm,
+            final ClusterEvaluation eval, double epsMin, double epsMax, double step, final int maxSize) {
+        final int ptsFrom = 4;
+        final int ptsTo = 10;
+        List<Double> epsilons = new ArrayList<>();
+        for (double eps = epsMax; eps > epsMin; eps -= step) {
+            epsilons.add(eps);
+        }
+        final int m = epsilons.size();
+        //index of the last eps to evaluate for each minPts
+        final AtomicIntegerArray cutoff = new AtomicIntegerArray(ptsTo - ptsFrom + 1);
+        for (int i = 0; i < cutoff.length(); i++) {
+            cutoff.set(i, m - 1);
+        }
+        final SweepPoint[][] results = new SweepPoint[cutoff.length()][m];
+        final IndexedDBSCAN indexed = cliParams.dbscanIndex
+                ? new IndexedDBSCAN(neighborIndex(dataset, epsMax)) : null;
+        ExecutorService pool = Executors.newFixedThreadPool(runThreads());
+        try {
+            List<Future<Void>> futures = new ArrayList<>(results.length * m);
+            //large eps first, so that cancellation is known as soon as possible
+            for (int j = 0; j < m; j++) {
+                for (int i = 0; i < results.length; i++) {
+                    final int pts = i;
+                    final int idx = j;
+                    final double eps = epsilons.get(j);
+                    futures.add(pool.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            if (idx > cutoff.get(pts)) {
+                                return null;
+                            }
+                            Props conf = prop.copy();
+                            conf.putInt(DBSCAN.MIN_PTS, ptsFrom + pts);
+                            conf.putDouble(DBSCAN.EPS, eps);
+                            Clustering curr;
+                            if (indexed != null) {
+                                curr = labelClustering(dataset, indexed.cluster(eps, ptsFrom + pts), conf);
+                            } else {
+                                time.set(new StopWatch(false));
+                                curr = cluster(dataset, conf, newInstance(algorithm));
+                                time.remove();
+                            }
+                            double score;
+                            try {
+                                score = newInstance(eval).score(curr, conf);
+                            } catch (ScoreException ex) {
+                                score = Double.NaN;
+                                LOG.warn("failed to compute score {}: {}", new Object[]{eval.getName(), ex.getMessage()});
+                            }
+                            results[pts][idx] = new SweepPoint(ptsFrom + pts, eps, curr, score);
+                            if (curr.size() == 1 || curr.size() >= maxSize) {
+                                int c;
+                                while (idx < (c = cutoff.get(pts)) && !cutoff.compareAndSet(pts, c, idx)) {
+                                    //retry
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("DBSCAN sweep interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("DBSCAN sweep failed: " + ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        //points after cutoff might have been computed before the cutoff was known
+        List<SweepPoint> points = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            for (int j = 0; j <= cutoff.get(i); j++) {
+                points.add(results[i][j]);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Euclidean neighbors within given radius, distances are taken from the
+     * proximity cache when enabled
+     *
+     * @param dataset
+     * @param radius
+     * @return
+     */
+    private NeighborIndex neighborIndex(Dataset<E> dataset, double radius) {
+        RowStore rows = new DatasetRowStore(dataset);
+        if (cliParams.proximityCache && sha1 != null) {
+            ProximityStore proximity = new ProximityStore(new File(cacheDir(cliParams), "proximity"), cliParams.proximityCacheSize << 20);
+            try {
+                CondensedMatrix matrix = proximity.get(getHash(), "euclidean;raw;" + parserOptions(cliParams), rows, isFloat(cliParams), runThreads());
+                return NeighborIndex.build(matrix, radius, runThreads());
+            } catch (IOException ex) {
+                LOG.warn("failed to use proximity cache: {}", ex.getMessage());
+            }
+        }
+        return NeighborIndex.build(rows, radius, runThreads());
+    }
+
+    private static class SweepPoint {
+
+        private final int minPts;
+        private final double eps;
+        private final Clustering clustering;
+        private final double score;
+
+        SweepPoint(int minPts, double eps, Clustering clustering, double score) {
+            this.minPts = minPts;
+            this.eps = eps;
+            this.clustering = clustering;
+            this.score = score;
+        }
+    }
+
+    /**
+     *
+     * @return hash of the input file prefixed by the hash function (null for
+     * generated data)
+     */
+    public String getHash() {
+        return Fingerprint.id(cliParams.hash, sha1);
+    }
+
+    /**
+     * Digest of the input as a runtime param: <code>sha1</code> when computed
+     * by SHA-1 (same column as before), otherwise <code>hash</code> and
+     * <code>hash-alg</code>
+     *
+     * @param prop
+     */
+    private void putHash(Props prop) {
+        String alg = Fingerprint.create(cliParams.hash).getName();
+        if (Fingerprint.SHA1.equals(alg)) {
+            prop.put(PropType.RUNTIME, "sha1", sha1);
+        } else {
+            prop.put(PropType.RUNTIME, "hash", sha1);
+            prop.put(PropType.RUNTIME, "hash-alg", alg);
+        }
+    }
+
+    /**
+     * Identity of evaluated instances used by the score cache: hash of the
+     * input, parser options (class, id and skipped columns change indexes of
+     * instances) and the evaluated sample
+     *
+     * @return null when the input has no hash
+     */
+    String datasetId() {
+        String hash = getHash();
+        if (hash == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(hash).append(';').append(parserOptions(cliParams));
+        if (sample != null) {
+            sb.append(";sample=").append(sample);
+        }
+        return sb.toString();
+    }
+
     public StopWatch getTimer() {
-        return time;
+        return time.get();
     }
 
     private ClusterEvaluation[] loadEvaluation(String metrics) {
@@ -906,7 +2477,7 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
             evals = new ClusterEvaluation[names.length];
             int i = 0;
             for (String m : names) {
-                evals[i++] = ef.getProvider(m);
+                evals[i++] = provider(ef.getProvider(m));
             }
         }
         return evals;
@@ -955,35 +2526,6 @@ public class Runner<I extends Individual<I, E, C>, E extends Instance, C extends
         return cliParams;
     }
 
-    /**
-     * Read the file and calculate the SHA-1 checksum
-     *
-     * @param file the file to read
-     * @return the hex representation of the SHA-1 using uppercase chars
-     * @throws FileNotFoundException if the file does not exist, is a directory
-     * rather than a regular file, or for some other reason cannot be opened for
-     * reading
-     * @throws IOException if an I/O error occurs
-     * @throws NoSuchAlgorithmException should never happen
-     */
-    private static String computeSha1(File file) throws FileNotFoundException,
-            IOException, NoSuchAlgorithmException {
-
-        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
-        try (InputStream input = new FileInputStream(file)) {
-
-            byte[] buffer = new byte[8192];
-            int len = input.read(buffer);
-
-            while (len != -1) {
-                sha1.update(buffer, 0, len);
-                len = input.read(buffer);
-            }
-
-            return new HexBinaryAdapter().marshal(sha1.digest());
-        }
-    }
-
     private void syncDB() {
         if ("local".equals(cliParams.executor)) {
             System.err.println("Please provide --exec URI for connection");
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2011-2016 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Datasets loaded by batch jobs. A file is parsed by the first job which
+ * needs it, concurrent jobs wait for the result. Once no pending job refers
+ * to a file, its datasets are released.
+ *
+ * @author deric
+ */
+public class SharedDatasets {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedDatasets.class);
+
+    private final ConcurrentHashMap<String, FutureTask<Entry>> loaded = new ConcurrentHashMap<>();
+    private final Map<String, Integer> references = new HashMap<>();
+
+    /**
+     * Loaded dataset with fingerprint of its file
+     */
+    public static class Entry {
+
+        private final Dataset<? extends Instance> dataset;
+        private final String hash;
+
+        public Entry(Dataset<? extends Instance> dataset, String hash) {
+            this.dataset = dataset;
+            this.hash = hash;
+        }
+
+        public Dataset<? extends Instance> getDataset() {
+            return dataset;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+    }
+
+    /**
+     * Dataset for given key, loaded at most once
+     *
+     * @param file path of the input (used for releasing)
+     * @param key file and all options which affect parsing
+     * @param loader
+     * @return
+     * @throws Exception thrown by the loader
+     */
+    public Entry get(String file, String key, Callable<Entry> loader) throws Exception {
+        String id = file + "\u0000" + key;
+        FutureTask<Entry> task = new FutureTask<>(loader);
+        FutureTask<Entry> prev = loaded.putIfAbsent(id, task);
+        if (prev == null) {
+            prev = task;
+            task.run();
+        } else {
+            LOG.info("reusing loaded dataset {}", file);
+        }
+        try {
+            return prev.get();
+        } catch (ExecutionException ex) {
+            //let other jobs retry
+            loaded.remove(id, prev);
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Another pending job refers to the file
+     *
+     * @param file
+     */
+    public synchronized void retain(String file) {
+        Integer cnt = references.get(file);
+        references.put(file, cnt == null ? 1 : cnt + 1);
+    }
+
+    /**
+     * A job which referred to the file has finished
+     *
+     * @param file
+     */
+    public synchronized void release(String file) {
+        Integer cnt = references.get(file);
+        if (cnt == null || cnt <= 1) {
+            references.remove(file);
+            Iterator<String> it = loaded.keySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().startsWith(file + "\u0000")) {
+                    it.remove();
+                }
+            }
+        } else {
+            references.put(file, cnt - 1);
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.data;
+
+import java.util.List;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.dataset.impl.ArrayDataset;
+
+/**
+ * Row store with dataset meta information (names of attributes and instances,
+ * class labels).
+ *
+ * @author deric
+ */
+public abstract class AbstractRowStore implements RowStore {
+
+    protected String name;
+    protected final List<String> attributes;
+    protected final String[] classes;
+    protected String[] names;
+
+    public AbstractRowStore(String name, List<String> attributes, int size) {
+        this.name = name;
+        this.attributes = attributes;
+        this.classes = new String[size];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public int attributeCount() {
+        return attributes.size();
+    }
+
+    public String classValue(int row) {
+        return classes[row];
+    }
+
+    public void setClassValue(int row, String cls) {
+        classes[row] = cls;
+    }
+
+    public String instanceName(int row) {
+        return names != null ? names[row] : null;
+    }
+
+    public void setInstanceName(int row, String value) {
+        if (names == null) {
+            synchronized (this) {
+                if (names == null) {
+                    names = new String[classes.length];
+                }
+            }
+        }
+        names[row] = value;
+    }
+
+    /**
+     * Set value of a dense store
+     *
+     * @param row
+     * @param col
+     * @param value
+     */
+    public void set(int row, int col, double value) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is read-only");
+    }
+
+    @Override
+    public void row(int row, double[] out) {
+        for (int j = 0; j < attributeCount(); j++) {
+            out[j] = get(row, j);
+        }
+    }
+
+    @Override
+    public double dot(int row, double[] v) {
+        double sum = 0.0;
+        for (int j = 0; j < attributeCount(); j++) {
+            sum += get(row, j) * v[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredNorm(int row) {
+        double sum = 0.0, x;
+        for (int j = 0; j < attributeCount(); j++) {
+            x = get(row, j);
+            sum += x * x;
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(int row, double[] acc) {
+        for (int j = 0; j < attributeCount(); j++) {
+            acc[j] += get(row, j);
+        }
+    }
+
+    @Override
+    public boolean isSparse() {
+        return false;
+    }
+
+    /**
+     * Convert into a dense dataset which is accepted by all clustering
+     * algorithms.
+     *
+     * @param <E>
+     * @return
+     */
+    public <E extends Instance> Dataset<E> toDataset() {
+        int[] all = new int[size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        return toDataset(all);
+    }
+
+    /**
+     * Dense dataset with selected rows only (e.g. a sample)
+     *
+     * @param <E>
+     * @param select row indexes
+     * @return
+     */
+    public <E extends Instance> Dataset<E> toDataset(int[] select) {
+        int d = attributeCount();
+        Dataset<E> dataset = new ArrayDataset<>(select.length, d);
+        dataset.setName(name);
+        for (String attr : attributes) {
+            dataset.attributeBuilder().create(attr, "NUMERIC");
+        }
+        double[] values = new double[d];
+        for (int i = 0; i < select.length; i++) {
+            int row = select[i];
+            E inst = dataset.instance(i);
+            row(row, values);
+            for (int j = 0; j < d; j++) {
+                inst.set(j, values[j]);
+            }
+            if (classes[row] != null) {
+                inst.setClassValue(classes[row]);
+            }
+            if (names != null && names[row] != null) {
+                inst.setName(names[row]);
+            }
+        }
+        return dataset;
+    }
+
+}
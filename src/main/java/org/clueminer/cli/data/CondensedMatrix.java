@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Symmetric distance matrix with zero diagonal, only the upper triangle is
+ * stored (row-major, n(n-1)/2 values) in single or double precision. Values
+ * are split into buffers of at most {@link #SEGMENT_BYTES}, buffers might be
+ * memory-mapped.
+ *
+ * @author deric
+ */
+public class CondensedMatrix {
+
+    public static final int SEGMENT_BYTES = 1 << 30;
+
+    private final ByteBuffer[] segments;
+    private final int n;
+    private final int width;
+    private final int perSegment;
+
+    /**
+     *
+     * @param segments buffers of {@link #SEGMENT_BYTES} (the last one might be
+     * smaller)
+     * @param n number of rows
+     * @param single whether values are stored as floats
+     */
+    public CondensedMatrix(ByteBuffer[] segments, int n, boolean single) {
+        this.segments = segments;
+        this.n = n;
+        this.width = single ? 4 : 8;
+        this.perSegment = SEGMENT_BYTES / width;
+    }
+
+    /**
+     * Number of stored values
+     *
+     * @param n
+     * @return
+     */
+    public static long entries(int n) {
+        return (long) n * (n - 1) / 2;
+    }
+
+    /**
+     * Number of bytes needed for a matrix of <code>n</code> rows
+     *
+     * @param n
+     * @param single
+     * @return
+     */
+    public static long bytes(int n, boolean single) {
+        return entries(n) * (single ? 4 : 8);
+    }
+
+    /**
+     * Position of value (i, j) in the condensed form
+     *
+     * @param i
+     * @param j
+     * @return
+     */
+    public long index(int i, int j) {
+        if (i > j) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        return (long) i * n - (long) i * (i + 1) / 2 + (j - i - 1);
+    }
+
+    public int size() {
+        return n;
+    }
+
+    public boolean isSingle() {
+        return width == 4;
+    }
+
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0.0;
+        }
+        long idx = index(i, j);
+        ByteBuffer seg = segments[(int) (idx / perSegment)];
+        int pos = (int) (idx % perSegment) * width;
+        return width == 4 ? seg.getFloat(pos) : seg.getDouble(pos);
+    }
+
+    public void set(int i, int j, double value) {
+        long idx = index(i, j);
+        ByteBuffer seg = segments[(int) (idx / perSegment)];
+        int pos = (int) (idx % perSegment) * width;
+        if (width == 4) {
+            seg.putFloat(pos, (float) value);
+        } else {
+            seg.putDouble(pos, value);
+        }
+    }
+
+    /**
+     * Distances from row <code>i</code> to all rows
+     *
+     * @param i
+     * @param out array of at least {@link #size()} elements
+     */
+    public void row(int i, double[] out) {
+        for (int j = 0; j < n; j++) {
+            out[j] = get(i, j);
+        }
+    }
+
+}
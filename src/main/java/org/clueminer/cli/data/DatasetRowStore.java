@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.data;
+
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+
+/**
+ * {@link RowStore} view of a dataset, values are not copied.
+ *
+ * @author deric
+ */
+public class DatasetRowStore implements RowStore {
+
+    private final Dataset<? extends Instance> dataset;
+    private final int d;
+
+    public DatasetRowStore(Dataset<? extends Instance> dataset) {
+        this.dataset = dataset;
+        this.d = dataset.attributeCount();
+    }
+
+    @Override
+    public int size() {
+        return dataset.size();
+    }
+
+    @Override
+    public int attributeCount() {
+        return d;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return dataset.get(row, col);
+    }
+
+    @Override
+    public void row(int row, double[] out) {
+        Instance inst = dataset.get(row);
+        for (int j = 0; j < d; j++) {
+            out[j] = inst.get(j);
+        }
+    }
+
+    @Override
+    public double dot(int row, double[] v) {
+        Instance inst = dataset.get(row);
+        double sum = 0.0;
+        for (int j = 0; j < d; j++) {
+            sum += inst.get(j) * v[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredNorm(int row) {
+        Instance inst = dataset.get(row);
+        double sum = 0.0, x;
+        for (int j = 0; j < d; j++) {
+            x = inst.get(j);
+            sum += x * x;
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(int row, double[] acc) {
+        Instance inst = dataset.get(row);
+        for (int j = 0; j < d; j++) {
+            acc[j] += inst.get(j);
+        }
+    }
+
+    @Override
+    public boolean isSparse() {
+        return false;
+    }
+
+}
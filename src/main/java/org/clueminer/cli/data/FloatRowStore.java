@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+
+/**
+ * Dense rows stored in single precision, which halves memory compared to
+ * doubles. All arithmetic (dot products, norms, sums) is accumulated in
+ * double precision.
+ *
+ * @author deric
+ */
+public class FloatRowStore extends AbstractRowStore {
+
+    private final float[] values;
+    private final int d;
+    private final int n;
+
+    public FloatRowStore(String name, List<String> attributes, int size) {
+        this(name, attributes, new float[capacity(size, attributes.size())], size);
+    }
+
+    /**
+     *
+     * @param name
+     * @param attributes
+     * @param values row-major values (at least size x attributes)
+     * @param size number of rows
+     */
+    public FloatRowStore(String name, List<String> attributes, float[] values, int size) {
+        super(name, attributes, size);
+        this.values = values;
+        this.d = attributes.size();
+        this.n = size;
+    }
+
+    /**
+     * Number of values in a single array
+     *
+     * @param rows
+     * @param cols
+     * @return
+     */
+    public static int capacity(long rows, int cols) {
+        long len = rows * cols;
+        if (len > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("can't store " + rows + "x" + cols + " values in a single array");
+        }
+        return (int) len;
+    }
+
+    /**
+     * Single precision copy of a dataset
+     *
+     * @param dataset
+     * @return
+     */
+    public static FloatRowStore from(Dataset<? extends Instance> dataset) {
+        List<String> attrs = new ArrayList<>(dataset.attributeCount());
+        for (int j = 0; j < dataset.attributeCount(); j++) {
+            attrs.add(dataset.getAttribute(j).getName());
+        }
+        FloatRowStore store = new FloatRowStore(dataset.getName(), attrs, dataset.size());
+        for (int i = 0; i < dataset.size(); i++) {
+            Instance inst = dataset.get(i);
+            for (int j = 0; j < attrs.size(); j++) {
+                store.set(i, j, inst.get(j));
+            }
+            if (inst.classValue() != null) {
+                store.setClassValue(i, inst.classValue().toString());
+            }
+            if (inst.getName() != null) {
+                store.setInstanceName(i, inst.getName());
+            }
+        }
+        return store;
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public void set(int row, int col, double value) {
+        values[row * d + col] = (float) value;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return values[row * d + col];
+    }
+
+    @Override
+    public void row(int row, double[] out) {
+        int base = row * d;
+        for (int j = 0; j < d; j++) {
+            out[j] = values[base + j];
+        }
+    }
+
+    @Override
+    public double dot(int row, double[] v) {
+        int base = row * d;
+        double sum = 0.0;
+        for (int j = 0; j < d; j++) {
+            sum += values[base + j] * v[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredNorm(int row) {
+        int base = row * d;
+        double sum = 0.0, x;
+        for (int j = 0; j < d; j++) {
+            x = values[base + j];
+            sum += x * x;
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(int row, double[] acc) {
+        int base = row * d;
+        for (int j = 0; j < d; j++) {
+            acc[j] += values[base + j];
+        }
+    }
+
+}
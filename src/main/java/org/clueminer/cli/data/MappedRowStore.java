@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.data;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Dense row-major values stored outside of Java heap (typically a
+ * memory-mapped file). Data are split into segments because a single buffer
+ * can't exceed 2GB.
+ *
+ * @author deric
+ */
+public class MappedRowStore implements RowStore {
+
+    private final DoubleBuffer[] segments;
+    private final int rowsPerSegment;
+    private final int rows;
+    private final int cols;
+
+    /**
+     *
+     * @param segments buffers with <code>rowsPerSegment</code> rows (except the
+     * last one)
+     * @param rowsPerSegment
+     * @param rows
+     * @param cols
+     */
+    public MappedRowStore(DoubleBuffer[] segments, int rowsPerSegment, int rows, int cols) {
+        this.segments = segments;
+        this.rowsPerSegment = rowsPerSegment;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    @Override
+    public int size() {
+        return rows;
+    }
+
+    @Override
+    public int attributeCount() {
+        return cols;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        return segments[row / rowsPerSegment].get((row % rowsPerSegment) * cols + col);
+    }
+
+    @Override
+    public void row(int row, double[] out) {
+        DoubleBuffer seg = segments[row / rowsPerSegment];
+        int base = (row % rowsPerSegment) * cols;
+        for (int j = 0; j < cols; j++) {
+            out[j] = seg.get(base + j);
+        }
+    }
+
+    @Override
+    public double dot(int row, double[] v) {
+        DoubleBuffer seg = segments[row / rowsPerSegment];
+        int base = (row % rowsPerSegment) * cols;
+        double sum = 0.0;
+        for (int j = 0; j < cols; j++) {
+            sum += seg.get(base + j) * v[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredNorm(int row) {
+        DoubleBuffer seg = segments[row / rowsPerSegment];
+        int base = (row % rowsPerSegment) * cols;
+        double sum = 0.0, x;
+        for (int j = 0; j < cols; j++) {
+            x = seg.get(base + j);
+            sum += x * x;
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(int row, double[] acc) {
+        DoubleBuffer seg = segments[row / rowsPerSegment];
+        int base = (row % rowsPerSegment) * cols;
+        for (int j = 0; j < cols; j++) {
+            acc[j] += seg.get(base + j);
+        }
+    }
+
+    @Override
+    public boolean isSparse() {
+        return false;
+    }
+
+}
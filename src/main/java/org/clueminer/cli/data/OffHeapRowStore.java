@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.List;
+
+/**
+ * Dense values stored in direct buffers outside of Java heap, the heap holds
+ * only meta information (attribute names, class labels). Values are split
+ * into segments of at most {@link #SEGMENT_BYTES}, within a segment rows are
+ * stored either row-major or column-major.
+ *
+ * Direct memory is limited by <code>-XX:MaxDirectMemorySize</code> (by default
+ * equal to max. heap size).
+ *
+ * @author deric
+ */
+public class OffHeapRowStore extends AbstractRowStore {
+
+    public enum Layout {
+        ROW, COLUMN;
+
+        public static Layout parse(String value) {
+            return valueOf(value.toUpperCase());
+        }
+    }
+
+    /**
+     * Max. size of a single buffer
+     */
+    public static final int SEGMENT_BYTES = 1 << 28;
+
+    private final DoubleBuffer[] segments;
+    private final int rowsPerSegment;
+    private final int[] strides;
+    private final Layout layout;
+    private final int n;
+    private final int d;
+
+    /**
+     *
+     * @param name
+     * @param attributes
+     * @param segments buffers with <code>rowsPerSegment</code> rows (the last
+     * one might be smaller)
+     * @param rowsPerSegment
+     * @param size number of rows
+     * @param layout
+     */
+    public OffHeapRowStore(String name, List<String> attributes, DoubleBuffer[] segments, int rowsPerSegment, int size, Layout layout) {
+        super(name, attributes, size);
+        this.segments = segments;
+        this.rowsPerSegment = rowsPerSegment;
+        this.layout = layout;
+        this.n = size;
+        this.d = attributes.size();
+        //distance between values of consecutive attributes of a row
+        this.strides = new int[segments.length];
+        for (int s = 0; s < segments.length; s++) {
+            strides[s] = layout == Layout.ROW ? 1 : segments[s].capacity() / Math.max(d, 1);
+        }
+    }
+
+    /**
+     * Allocate store for given number of rows
+     *
+     * @param name
+     * @param attributes
+     * @param size
+     * @param layout
+     * @return
+     */
+    public static OffHeapRowStore allocate(String name, List<String> attributes, int size, Layout layout) {
+        int d = attributes.size();
+        int rps = rowsPerSegment(d);
+        DoubleBuffer[] segments = new DoubleBuffer[(size + rps - 1) / rps];
+        for (int s = 0; s < segments.length; s++) {
+            segments[s] = allocateSegment(Math.min(rps, size - s * rps), d);
+        }
+        return new OffHeapRowStore(name, attributes, segments, rps, size, layout);
+    }
+
+    public static int rowsPerSegment(int cols) {
+        return Math.max(1, SEGMENT_BYTES / (8 * Math.max(cols, 1)));
+    }
+
+    public static DoubleBuffer allocateSegment(int rows, int cols) {
+        return ByteBuffer.allocateDirect(rows * cols * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    /**
+     * Position of the first value of a row in its segment
+     *
+     * @param s segment
+     * @param row
+     * @return
+     */
+    private int base(int s, int row) {
+        int local = row - s * rowsPerSegment;
+        return layout == Layout.ROW ? local * d : local;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public void set(int row, int col, double value) {
+        int s = row / rowsPerSegment;
+        segments[s].put(base(s, row) + col * strides[s], value);
+    }
+
+    @Override
+    public double get(int row, int col) {
+        int s = row / rowsPerSegment;
+        return segments[s].get(base(s, row) + col * strides[s]);
+    }
+
+    @Override
+    public void row(int row, double[] out) {
+        int s = row / rowsPerSegment;
+        DoubleBuffer seg = segments[s];
+        int pos = base(s, row);
+        int step = strides[s];
+        for (int j = 0; j < d; j++, pos += step) {
+            out[j] = seg.get(pos);
+        }
+    }
+
+    @Override
+    public double dot(int row, double[] v) {
+        int s = row / rowsPerSegment;
+        DoubleBuffer seg = segments[s];
+        int pos = base(s, row);
+        int step = strides[s];
+        double sum = 0.0;
+        for (int j = 0; j < d; j++, pos += step) {
+            sum += seg.get(pos) * v[j];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredNorm(int row) {
+        int s = row / rowsPerSegment;
+        DoubleBuffer seg = segments[s];
+        int pos = base(s, row);
+        int step = strides[s];
+        double sum = 0.0, x;
+        for (int j = 0; j < d; j++, pos += step) {
+            x = seg.get(pos);
+            sum += x * x;
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(int row, double[] acc) {
+        int s = row / rowsPerSegment;
+        DoubleBuffer seg = segments[s];
+        int pos = base(s, row);
+        int step = strides[s];
+        for (int j = 0; j < d; j++, pos += step) {
+            acc[j] += seg.get(pos);
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.data;
+
+/**
+ * Numeric data matrix accessed by rows. Unlike {@link org.clueminer.dataset.api.Dataset}
+ * rows are not represented by objects, which allows compact (sparse, single
+ * precision, off-heap) storage.
+ *
+ * The vector operations are sufficient for centroid based algorithms, which
+ * therefore don't need to know how values are stored.
+ *
+ * @author deric
+ */
+public interface RowStore {
+
+    /**
+     * Number of rows
+     *
+     * @return
+     */
+    int size();
+
+    int attributeCount();
+
+    double get(int row, int col);
+
+    /**
+     * Copy row values into <code>out</code>
+     *
+     * @param row
+     * @param out array of at least {@link #attributeCount()} elements
+     */
+    void row(int row, double[] out);
+
+    /**
+     * Dot product of a row and a dense vector
+     *
+     * @param row
+     * @param v
+     * @return
+     */
+    double dot(int row, double[] v);
+
+    /**
+     * Squared Euclidean norm of a row
+     *
+     * @param row
+     * @return
+     */
+    double squaredNorm(int row);
+
+    /**
+     * Add row values to an accumulator
+     *
+     * @param row
+     * @param acc
+     */
+    void addTo(int row, double[] acc);
+
+    /**
+     * Whether only non-zero values are stored. Vector operations on sparse
+     * rows are cheaper than copying values.
+     *
+     * @return
+     */
+    boolean isSparse();
+
+}
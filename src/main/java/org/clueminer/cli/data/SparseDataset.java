@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sparse rows in compressed sparse row (CSR) format. Only non-zero values are
+ * stored, for each row <code>[rowPtr[i], rowPtr[i+1])</code> is a range in
+ * column indexes and values. Column indexes within a row are sorted.
+ *
+ * @author deric
+ */
+public class SparseDataset extends AbstractRowStore {
+
+    private final int[] rowPtr;
+    private final int[] cols;
+    private final double[] vals;
+
+    /**
+     *
+     * @param name
+     * @param attributes
+     * @param rowPtr row offsets (size + 1 items)
+     * @param cols column indexes
+     * @param vals values
+     */
+    public SparseDataset(String name, List<String> attributes, int[] rowPtr, int[] cols, double[] vals) {
+        super(name, attributes, rowPtr.length - 1);
+        this.rowPtr = rowPtr;
+        this.cols = cols;
+        this.vals = vals;
+    }
+
+    @Override
+    public int size() {
+        return rowPtr.length - 1;
+    }
+
+    /**
+     * Number of stored (non-zero) values
+     *
+     * @return
+     */
+    public int nnz() {
+        return rowPtr[rowPtr.length - 1];
+    }
+
+    /**
+     * Fraction of non-zero values
+     *
+     * @return
+     */
+    public double density() {
+        return nnz() / ((double) size() * attributeCount());
+    }
+
+    @Override
+    public boolean isSparse() {
+        return true;
+    }
+
+    @Override
+    public double get(int row, int col) {
+        int k = Arrays.binarySearch(cols, rowPtr[row], rowPtr[row + 1], col);
+        return k >= 0 ? vals[k] : 0.0;
+    }
+
+    @Override
+    public void row(int row, double[] out) {
+        Arrays.fill(out, 0, attributeCount(), 0.0);
+        for (int k = rowPtr[row]; k < rowPtr[row + 1]; k++) {
+            out[cols[k]] = vals[k];
+        }
+    }
+
+    @Override
+    public double dot(int row, double[] v) {
+        double sum = 0.0;
+        for (int k = rowPtr[row]; k < rowPtr[row + 1]; k++) {
+            sum += vals[k] * v[cols[k]];
+        }
+        return sum;
+    }
+
+    @Override
+    public double squaredNorm(int row) {
+        double sum = 0.0;
+        for (int k = rowPtr[row]; k < rowPtr[row + 1]; k++) {
+            sum += vals[k] * vals[k];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addTo(int row, double[] acc) {
+        for (int k = rowPtr[row]; k < rowPtr[row + 1]; k++) {
+            acc[cols[k]] += vals[k];
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.cli.data.RowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * k-means with k-means++ seeding and Hamerly's triangle inequality pruning
+ * (Hamerly, 2010). Each row keeps an upper bound of the distance to its
+ * centroid and a lower bound of the distance to the second closest one, the
+ * nearest centroid is searched only when the bounds overlap. Results are the
+ * same as of Lloyd's algorithm started from the same centroids.
+ *
+ * @author deric
+ */
+public class HamerlyKMeans extends LloydKMeans {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HamerlyKMeans.class);
+
+    private long distances;
+
+    public HamerlyKMeans(int k, int maxIterations, long seed, int threads) {
+        super(k, maxIterations, seed, threads);
+    }
+
+    @Override
+    public int[] cluster(final RowStore store) {
+        final int n = store.size();
+        if (n < k) {
+            throw new IllegalArgumentException("can't find " + k + " clusters in " + n + " rows");
+        }
+        centroids = initialCentroids(store);
+        final int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        final double[] upper = new double[n];
+        final double[] lower = new double[n];
+        int parts = Math.min(threads, n);
+        ExecutorService pool = Executors.newFixedThreadPool(parts);
+        distances = 0;
+        try {
+            iterations = 0;
+            long changed;
+            do {
+                final double[][] curr = centroids;
+                final double[] half = halfSeparation(curr);
+                List<Future<Partial>> futures = new ArrayList<>(parts);
+                for (int t = 0; t < parts; t++) {
+                    final int from = (int) ((long) n * t / parts);
+                    final int to = (int) ((long) n * (t + 1) / parts);
+                    futures.add(pool.submit(new Callable<Partial>() {
+                        @Override
+                        public Partial call() {
+                            return assign(store, curr, half, labels, upper, lower, from, to);
+                        }
+                    }));
+                }
+                Partial total = new Partial(k, store.attributeCount());
+                for (Future<Partial> f : futures) {
+                    total.merge(get(f));
+                }
+                changed = total.changed;
+                distances += total.distances;
+                centroids = update(total, curr);
+                moveBounds(curr, centroids, labels, upper, lower);
+                iterations++;
+                LOG.debug("iteration {}: {} changes", iterations, changed);
+            } while (changed > 0 && iterations < maxIterations);
+            sse = inertia(pool, store, labels, parts);
+        } finally {
+            pool.shutdownNow();
+        }
+        LOG.info("k-means converged after {} iterations, sse = {}, {} distance computations", iterations, sse, distances);
+        return labels;
+    }
+
+    /**
+     * k-means++ seeding: each next centroid is a row chosen with probability
+     * proportional to squared distance to the nearest chosen centroid
+     *
+     * @param store
+     * @return
+     */
+    @Override
+    protected double[][] initialCentroids(RowStore store) {
+        Random rand = new Random(seed);
+        int n = store.size();
+        int d = store.attributeCount();
+        double[][] res = new double[k][d];
+        double[] x = new double[d];
+        double[] nearest = new double[n];
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        store.row(rand.nextInt(n), res[0]);
+        for (int c = 1; c < k; c++) {
+            double total = 0.0;
+            for (int i = 0; i < n; i++) {
+                store.row(i, x);
+                nearest[i] = Math.min(nearest[i], squaredDistance(x, res[c - 1], nearest[i]));
+                total += nearest[i];
+            }
+            int next = n - 1;
+            double r = rand.nextDouble() * total;
+            for (int i = 0; i < n; i++) {
+                r -= nearest[i];
+                if (r < 0) {
+                    next = i;
+                    break;
+                }
+            }
+            store.row(next, res[c]);
+        }
+        return res;
+    }
+
+    /**
+     * Half of the distance from each centroid to its closest centroid
+     */
+    private double[] halfSeparation(double[][] curr) {
+        double[] half = new double[k];
+        Arrays.fill(half, Double.POSITIVE_INFINITY);
+        for (int a = 0; a < k; a++) {
+            for (int b = a + 1; b < k; b++) {
+                double dist = 0.5 * Math.sqrt(squaredDistance(curr[a], curr[b], Double.POSITIVE_INFINITY));
+                half[a] = Math.min(half[a], dist);
+                half[b] = Math.min(half[b], dist);
+            }
+        }
+        return half;
+    }
+
+    /**
+     * Assign rows <code>[from, to)</code>
+     */
+    private Partial assign(RowStore store, double[][] curr, double[] half, int[] labels,
+            double[] upper, double[] lower, int from, int to) {
+        int d = store.attributeCount();
+        Partial part = new Partial(k, d);
+        double[] x = new double[d];
+        long computed = 0;
+        for (int i = from; i < to; i++) {
+            store.row(i, x);
+            int a = labels[i];
+            if (a < 0 || upper[i] > Math.max(half[a], lower[i])) {
+                if (a >= 0) {
+                    //tighten the upper bound
+                    upper[i] = Math.sqrt(squaredDistance(x, curr[a], Double.POSITIVE_INFINITY));
+                    computed++;
+                }
+                if (a < 0 || upper[i] > Math.max(half[a], lower[i])) {
+                    double first = Double.POSITIVE_INFINITY, second = Double.POSITIVE_INFINITY;
+                    int best = 0;
+                    for (int c = 0; c < k; c++) {
+                        double dist = squaredDistance(x, curr[c], Double.POSITIVE_INFINITY);
+                        if (dist < first) {
+                            second = first;
+                            first = dist;
+                            best = c;
+                        } else if (dist < second) {
+                            second = dist;
+                        }
+                    }
+                    computed += k;
+                    upper[i] = Math.sqrt(first);
+                    lower[i] = Math.sqrt(second);
+                    if (best != a) {
+                        labels[i] = best;
+                        part.changed++;
+                    }
+                }
+            }
+            double[] sum = part.sums[labels[i]];
+            for (int j = 0; j < d; j++) {
+                sum[j] += x[j];
+            }
+            part.counts[labels[i]]++;
+        }
+        part.distances = computed;
+        return part;
+    }
+
+    /**
+     * Bounds after centroids moved
+     */
+    private void moveBounds(double[][] prev, double[][] next, int[] labels, double[] upper, double[] lower) {
+        double[] moved = new double[k];
+        int far = 0;
+        double second = 0.0;
+        for (int c = 0; c < k; c++) {
+            moved[c] = Math.sqrt(squaredDistance(prev[c], next[c], Double.POSITIVE_INFINITY));
+            if (moved[c] > moved[far]) {
+                far = c;
+            }
+        }
+        for (int c = 0; c < k; c++) {
+            if (c != far) {
+                second = Math.max(second, moved[c]);
+            }
+        }
+        for (int i = 0; i < labels.length; i++) {
+            int a = labels[i];
+            upper[i] += moved[a];
+            lower[i] -= a == far ? second : moved[far];
+        }
+    }
+
+    /**
+     * Number of point-centroid distances computed by the last run
+     *
+     * @return
+     */
+    public long getDistances() {
+        return distances;
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.Arrays;
+
+/**
+ * DBSCAN answered from a precomputed {@link NeighborIndex}. Each call only
+ * relabels rows, therefore a grid of (eps, minPts) values below the index
+ * radius costs a single neighbor computation.
+ *
+ * A row is a core point when at least <code>minPts</code> rows (including the
+ * row itself) are within <code>eps</code>. Rows are visited in index order, a
+ * border point belongs to the first cluster which reaches it.
+ *
+ * Instances are immutable, concurrent calls are safe.
+ *
+ * @author deric
+ */
+public class IndexedDBSCAN {
+
+    public static final int NOISE = -1;
+    private static final int UNVISITED = -2;
+
+    private final NeighborIndex index;
+
+    public IndexedDBSCAN(NeighborIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Assign each row to a cluster
+     *
+     * @param eps
+     * @param minPts
+     * @return cluster label of each row (from 0), {@link #NOISE} for noise
+     */
+    public int[] cluster(double eps, int minPts) {
+        if (eps > index.getRadius()) {
+            throw new IllegalArgumentException("eps " + eps + " exceeds index radius " + index.getRadius());
+        }
+        int n = index.size();
+        int[] counts = new int[n];
+        for (int i = 0; i < n; i++) {
+            counts[i] = index.count(i, eps);
+        }
+        int[] labels = new int[n];
+        Arrays.fill(labels, UNVISITED);
+        int[] queue = new int[n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (labels[i] != UNVISITED) {
+                continue;
+            }
+            if (counts[i] + 1 < minPts) {
+                labels[i] = NOISE;
+                continue;
+            }
+            labels[i] = k;
+            int head = 0, tail = 0;
+            queue[tail++] = i;
+            while (head < tail) {
+                int p = queue[head++];
+                if (counts[p] + 1 < minPts) {
+                    //border point
+                    continue;
+                }
+                int[] nb = index.neighbors(p);
+                for (int j = 0; j < counts[p]; j++) {
+                    int q = nb[j];
+                    if (labels[q] == UNVISITED) {
+                        labels[q] = k;
+                        queue[tail++] = q;
+                    } else if (labels[q] == NOISE) {
+                        labels[q] = k;
+                    }
+                }
+            }
+            k++;
+        }
+        return labels;
+    }
+
+    /**
+     * Number of clusters (noise not included)
+     *
+     * @param labels
+     * @return
+     */
+    public static int clusters(int[] labels) {
+        int k = 0;
+        for (int l : labels) {
+            k = Math.max(k, l + 1);
+        }
+        return k;
+    }
+
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.cli.data.RowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Multi-threaded Lloyd's k-means over a {@link RowStore}.
+ *
+ * Only centroids and cluster labels are kept on heap, rows are read from the
+ * store in each iteration. Therefore the store might be memory-mapped and
+ * larger than available memory. Rows are statically partitioned between
+ * threads, each thread accumulates its own centroid sums which are merged at
+ * the end of iteration (results don't depend on thread scheduling).
+ *
+ * @author deric
+ */
+public class LloydKMeans {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LloydKMeans.class);
+
+    protected final int k;
+    protected final int maxIterations;
+    protected final long seed;
+    protected final int threads;
+    protected double[][] centroids;
+    protected int iterations;
+    protected double sse;
+
+    public LloydKMeans(int k, int maxIterations, long seed, int threads) {
+        this.k = k;
+        this.maxIterations = maxIterations;
+        this.seed = seed;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Assign each row to a cluster
+     *
+     * @param store
+     * @return cluster label of each row
+     */
+    public int[] cluster(final RowStore store) {
+        final int n = store.size();
+        if (n < k) {
+            throw new IllegalArgumentException("can't find " + k + " clusters in " + n + " rows");
+        }
+        centroids = initialCentroids(store);
+        final int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        int parts = (int) Math.min(threads, n);
+        ExecutorService pool = Executors.newFixedThreadPool(parts);
+        try {
+            iterations = 0;
+            long changed;
+            do {
+                final double[][] curr = centroids;
+                final double[] norms = squaredNorms(curr);
+                List<Future<Partial>> futures = new ArrayList<>(parts);
+                for (int t = 0; t < parts; t++) {
+                    final int from = (int) ((long) n * t / parts);
+                    final int to = (int) ((long) n * (t + 1) / parts);
+                    futures.add(pool.submit(new Callable<Partial>() {
+                        @Override
+                        public Partial call() {
+                            return assign(store, curr, norms, labels, from, to);
+                        }
+                    }));
+                }
+                Partial total = new Partial(k, store.attributeCount());
+                for (Future<Partial> f : futures) {
+                    total.merge(get(f));
+                }
+                changed = total.changed;
+                centroids = update(total, curr);
+                iterations++;
+                LOG.debug("iteration {}: {} changes, sse = {}", iterations, changed, total.sse);
+            } while (changed > 0 && iterations < maxIterations);
+            sse = inertia(pool, store, labels, parts);
+        } finally {
+            pool.shutdownNow();
+        }
+        LOG.info("k-means converged after {} iterations, sse = {}", iterations, sse);
+        return labels;
+    }
+
+    /**
+     * Random distinct rows
+     *
+     * @param store
+     * @return
+     */
+    protected double[][] initialCentroids(RowStore store) {
+        Random rand = new Random(seed);
+        int[] rows = sample(store.size(), k, rand);
+        double[][] res = new double[k][store.attributeCount()];
+        for (int i = 0; i < k; i++) {
+            store.row(rows[i], res[i]);
+        }
+        return res;
+    }
+
+    /**
+     * Index of the restart with the lowest SSE (the first one on ties)
+     *
+     * @param sse SSE of each restart
+     * @return
+     */
+    public static int best(double[] sse) {
+        int best = 0;
+        for (int run = 1; run < sse.length; run++) {
+            if (sse[run] < sse[best]) {
+                best = run;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Floyd's sampling of <code>m</code> distinct indexes from
+     * <code>[0, n)</code>, sorted in ascending order
+     *
+     * @param n
+     * @param m
+     * @param rand
+     * @return
+     */
+    public static int[] sample(int n, int m, Random rand) {
+        TreeSet<Integer> set = new TreeSet<>();
+        for (int j = n - m; j < n; j++) {
+            int t = rand.nextInt(j + 1);
+            if (!set.add(t)) {
+                set.add(j);
+            }
+        }
+        int[] res = new int[m];
+        int i = 0;
+        for (int v : set) {
+            res[i++] = v;
+        }
+        return res;
+    }
+
+    /**
+     * Assign rows <code>[from, to)</code> to the nearest centroid
+     */
+    private Partial assign(RowStore store, double[][] curr, double[] norms, int[] labels, int from, int to) {
+        int d = store.attributeCount();
+        Partial part = new Partial(k, d);
+        double[] x = new double[d];
+        boolean sparse = store.isSparse();
+        for (int i = from; i < to; i++) {
+            int best = 0;
+            double bestDist = Double.POSITIVE_INFINITY;
+            double dist;
+            if (sparse) {
+                //|x - c|^2 = |x|^2 - 2 x.c + |c|^2
+                double xx = store.squaredNorm(i);
+                for (int c = 0; c < k; c++) {
+                    dist = xx - 2 * store.dot(i, curr[c]) + norms[c];
+                    if (dist < bestDist) {
+                        bestDist = dist;
+                        best = c;
+                    }
+                }
+                store.addTo(i, part.sums[best]);
+                bestDist = Math.max(bestDist, 0.0);
+            } else {
+                store.row(i, x);
+                for (int c = 0; c < k; c++) {
+                    dist = squaredDistance(x, curr[c], bestDist);
+                    if (dist < bestDist) {
+                        bestDist = dist;
+                        best = c;
+                    }
+                }
+                double[] sum = part.sums[best];
+                for (int j = 0; j < d; j++) {
+                    sum[j] += x[j];
+                }
+            }
+            if (labels[i] != best) {
+                labels[i] = best;
+                part.changed++;
+            }
+            part.counts[best]++;
+            part.sse += bestDist;
+        }
+        return part;
+    }
+
+    /**
+     * Sum of squared distances of rows to centroids of their clusters
+     */
+    protected double inertia(ExecutorService pool, final RowStore store, final int[] labels, int parts) {
+        final int n = store.size();
+        final double[][] curr = centroids;
+        final double[] norms = squaredNorms(curr);
+        List<Future<Double>> futures = new ArrayList<>(parts);
+        for (int t = 0; t < parts; t++) {
+            final int from = (int) ((long) n * t / parts);
+            final int to = (int) ((long) n * (t + 1) / parts);
+            futures.add(pool.submit(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    double[] x = new double[store.attributeCount()];
+                    boolean sparse = store.isSparse();
+                    double sum = 0.0;
+                    for (int i = from; i < to; i++) {
+                        int c = labels[i];
+                        if (sparse) {
+                            sum += Math.max(store.squaredNorm(i) - 2 * store.dot(i, curr[c]) + norms[c], 0.0);
+                        } else {
+                            store.row(i, x);
+                            sum += squaredDistance(x, curr[c], Double.POSITIVE_INFINITY);
+                        }
+                    }
+                    return sum;
+                }
+            }));
+        }
+        double total = 0.0;
+        for (Future<Double> f : futures) {
+            total += get(f);
+        }
+        return total;
+    }
+
+    /**
+     * Squared Euclidean distance, computation stops once it exceeds
+     * <code>bound</code>
+     *
+     * @param x
+     * @param c
+     * @param bound
+     * @return
+     */
+    protected static double squaredDistance(double[] x, double[] c, double bound) {
+        double sum = 0.0, diff;
+        for (int j = 0; j < x.length; j++) {
+            diff = x[j] - c[j];
+            sum += diff * diff;
+            if (sum > bound) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    protected static double[] squaredNorms(double[][] vectors) {
+        double[] res = new double[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            for (double v : vectors[i]) {
+                res[i] += v * v;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * New centroids are means of assigned rows, centroid of an empty cluster
+     * is not moved
+     */
+    protected double[][] update(Partial total, double[][] prev) {
+        double[][] res = new double[k][];
+        for (int c = 0; c < k; c++) {
+            if (total.counts[c] == 0) {
+                LOG.debug("cluster {} is empty", c);
+                res[c] = prev[c];
+                continue;
+            }
+            res[c] = total.sums[c];
+            for (int j = 0; j < res[c].length; j++) {
+                res[c][j] /= total.counts[c];
+            }
+        }
+        return res;
+    }
+
+    public double[][] getCentroids() {
+        return centroids;
+    }
+
+    /**
+     * Number of performed iterations
+     *
+     * @return
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Sum of squared distances to final centroids
+     *
+     * @return
+     */
+    public double getSse() {
+        return sse;
+    }
+
+    protected static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Statistics accumulated by a single thread
+     */
+    protected static class Partial {
+
+        protected final double[][] sums;
+        protected final long[] counts;
+        protected long changed;
+        protected double sse;
+        /**
+         * number of computed point-centroid distances (if tracked)
+         */
+        protected long distances;
+
+        Partial(int k, int d) {
+            sums = new double[k][d];
+            counts = new long[k];
+        }
+
+        void merge(Partial other) {
+            for (int c = 0; c < sums.length; c++) {
+                counts[c] += other.counts[c];
+                for (int j = 0; j < sums[c].length; j++) {
+                    sums[c][j] += other.sums[c][j];
+                }
+            }
+            changed += other.changed;
+            sse += other.sse;
+            distances += other.distances;
+        }
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.cli.data.CondensedMatrix;
+import org.clueminer.cli.data.RowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Euclidean neighbors of each row within a fixed radius, sorted by distance.
+ * Distances are either computed from rows or read from a precomputed matrix.
+ *
+ * Once built, neighborhood of any smaller radius is a prefix of the stored
+ * list (found by binary search), so that range queries for many different
+ * radii are answered without computing any distance.
+ *
+ * @author deric
+ */
+public class NeighborIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NeighborIndex.class);
+
+    private final int[][] neighbors;
+    private final double[][] distances;
+    private final double radius;
+
+    private NeighborIndex(int[][] neighbors, double[][] distances, double radius) {
+        this.neighbors = neighbors;
+        this.distances = distances;
+        this.radius = radius;
+    }
+
+    /**
+     * Find all pairs of rows within <code>radius</code> (brute force, rows are
+     * split between threads)
+     *
+     * @param store
+     * @param radius
+     * @param threads
+     * @return
+     */
+    public static NeighborIndex build(final RowStore store, final double radius, int threads) {
+        return build(store.size(), radius, threads, new Source() {
+            @Override
+            public void distances(int i, double[] out, double[] x, double[] y) {
+                //squared distances, sqrt only for neighbors
+                store.row(i, x);
+                for (int j = 0; j < out.length; j++) {
+                    if (j != i) {
+                        store.row(j, y);
+                        out[j] = LloydKMeans.squaredDistance(x, y, radius * radius);
+                    }
+                }
+            }
+
+            @Override
+            public int attributeCount() {
+                return store.attributeCount();
+            }
+
+            @Override
+            public boolean isSquared() {
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Neighbors from a precomputed distance matrix
+     *
+     * @param matrix
+     * @param radius
+     * @param threads
+     * @return
+     */
+    public static NeighborIndex build(final CondensedMatrix matrix, double radius, int threads) {
+        return build(matrix.size(), radius, threads, new Source() {
+            @Override
+            public void distances(int i, double[] out, double[] x, double[] y) {
+                matrix.row(i, out);
+            }
+
+            @Override
+            public int attributeCount() {
+                return 0;
+            }
+
+            @Override
+            public boolean isSquared() {
+                return false;
+            }
+        });
+    }
+
+    private static NeighborIndex build(final int n, final double radius, int threads, final Source source) {
+        final int[][] neighbors = new int[n][];
+        final double[][] distances = new double[n][];
+        int parts = Math.max(1, Math.min(threads, n));
+        ExecutorService pool = Executors.newFixedThreadPool(parts);
+        try {
+            List<Future<Long>> futures = new ArrayList<>(parts);
+            for (int t = 0; t < parts; t++) {
+                final int from = (int) ((long) n * t / parts);
+                final int to = (int) ((long) n * (t + 1) / parts);
+                futures.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        return neighbors(source, n, radius, from, to, neighbors, distances);
+                    }
+                }));
+            }
+            long pairs = 0;
+            for (Future<Long> f : futures) {
+                pairs += LloydKMeans.get(f);
+            }
+            LOG.info("neighbor index of {} rows within {}: {} pairs", n, radius, pairs);
+        } finally {
+            pool.shutdownNow();
+        }
+        return new NeighborIndex(neighbors, distances, radius);
+    }
+
+    /**
+     * Distances of a row to all rows
+     */
+    private interface Source {
+
+        /**
+         *
+         * @param i row
+         * @param out distances to all rows (value at <code>i</code> is
+         * ignored)
+         * @param x temporary array of {@link #attributeCount()} elements
+         * @param y temporary array of {@link #attributeCount()} elements
+         */
+        void distances(int i, double[] out, double[] x, double[] y);
+
+        int attributeCount();
+
+        /**
+         * Whether distances are squared
+         *
+         * @return
+         */
+        boolean isSquared();
+    }
+
+    /**
+     * Neighbors of rows <code>[from, to)</code>
+     *
+     * @return number of found neighbors
+     */
+    private static long neighbors(Source source, int n, double radius, int from, int to, int[][] neighbors, double[][] distances) {
+        boolean squared = source.isSquared();
+        double bound = squared ? radius * radius : radius;
+        double[] x = new double[source.attributeCount()];
+        double[] y = new double[source.attributeCount()];
+        double[] all = new double[n];
+        int[] ids = new int[16];
+        double[] dist = new double[16];
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            source.distances(i, all, x, y);
+            int cnt = 0;
+            for (int j = 0; j < n; j++) {
+                if (j != i && all[j] <= bound) {
+                    if (cnt == ids.length) {
+                        ids = Arrays.copyOf(ids, cnt * 2);
+                        dist = Arrays.copyOf(dist, cnt * 2);
+                    }
+                    ids[cnt] = j;
+                    dist[cnt] = squared ? Math.sqrt(all[j]) : all[j];
+                    cnt++;
+                }
+            }
+            neighbors[i] = Arrays.copyOf(ids, cnt);
+            distances[i] = Arrays.copyOf(dist, cnt);
+            sort(distances[i], neighbors[i], 0, cnt - 1);
+            total += cnt;
+        }
+        return total;
+    }
+
+    /**
+     * Sort by distance, ties are ordered by row index
+     */
+    private static void sort(double[] dist, int[] ids, int lo, int hi) {
+        while (lo < hi) {
+            if (hi - lo < 16) {
+                for (int i = lo + 1; i <= hi; i++) {
+                    double d = dist[i];
+                    int id = ids[i];
+                    int j = i - 1;
+                    while (j >= lo && less(d, id, dist[j], ids[j])) {
+                        dist[j + 1] = dist[j];
+                        ids[j + 1] = ids[j];
+                        j--;
+                    }
+                    dist[j + 1] = d;
+                    ids[j + 1] = id;
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double pd = dist[mid];
+            int pid = ids[mid];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (less(dist[i], ids[i], pd, pid)) {
+                    i++;
+                }
+                while (less(pd, pid, dist[j], ids[j])) {
+                    j--;
+                }
+                if (i <= j) {
+                    double td = dist[i];
+                    dist[i] = dist[j];
+                    dist[j] = td;
+                    int ti = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = ti;
+                    i++;
+                    j--;
+                }
+            }
+            //recurse into the smaller part
+            if (j - lo < hi - i) {
+                sort(dist, ids, lo, j);
+                lo = i;
+            } else {
+                sort(dist, ids, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private static boolean less(double d1, int id1, double d2, int id2) {
+        return d1 < d2 || (d1 == d2 && id1 < id2);
+    }
+
+    public int size() {
+        return neighbors.length;
+    }
+
+    /**
+     * Max. indexed distance
+     *
+     * @return
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Number of neighbors within <code>eps</code> (the row itself is not
+     * included)
+     *
+     * @param row
+     * @param eps at most {@link #getRadius()}
+     * @return
+     */
+    public int count(int row, double eps) {
+        double[] dist = distances[row];
+        int lo = 0, hi = dist.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dist[mid] <= eps) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Neighbors of a row ordered by distance, the first
+     * {@link #count(int, double)} are within given eps
+     *
+     * @param row
+     * @return
+     */
+    public int[] neighbors(int row) {
+        return neighbors[row];
+    }
+
+    public double[] distances(int row) {
+        return distances[row];
+    }
+
+}
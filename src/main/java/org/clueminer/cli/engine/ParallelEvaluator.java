@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import org.clueminer.cli.io.ScoreCache;
+import org.clueminer.clustering.api.Cluster;
+import org.clueminer.clustering.api.ClusterEvaluation;
+import org.clueminer.clustering.api.Clustering;
+import org.clueminer.clustering.api.ScoreException;
+import org.clueminer.clustering.struct.ClusterList;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.utils.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scores a clustering by several metrics concurrently.
+ *
+ * Clusters cache lazily computed statistics (e.g. centroids) which are not
+ * safe to initialize concurrently, therefore each concurrently running metric
+ * gets its own instance and its own copy of the clustering (clusters are
+ * copied, instances and lookup contents are shared). Scores are the same as
+ * from sequential evaluation. Scores found in a {@link ScoreCache} are not
+ * computed again.
+ *
+ * @author deric
+ */
+public class ParallelEvaluator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelEvaluator.class);
+
+    private final int threads;
+    private ExecutorService pool;
+    private ScoreCache cache;
+    private String dataset;
+
+    /**
+     * Scores and evaluation times of metrics
+     */
+    public static class Result {
+
+        private final double[] scores;
+        private final StopWatch[] times;
+
+        Result(int n) {
+            this.scores = new double[n];
+            this.times = new StopWatch[n];
+        }
+
+        /**
+         *
+         * @param i index of the metric
+         * @return score (NaN when the metric failed)
+         */
+        public double score(int i) {
+            return scores[i];
+        }
+
+        /**
+         *
+         * @param i index of the metric
+         * @return evaluation time, null when the score was cached
+         */
+        public StopWatch time(int i) {
+            return times[i];
+        }
+    }
+
+    /**
+     *
+     * @param threads max. number of metrics evaluated at the same time
+     */
+    public ParallelEvaluator(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Reuse scores computed for the same dataset
+     *
+     * @param cache
+     * @param dataset identity of evaluated instances (hash of the data, parser
+     * options, sample)
+     */
+    public void setCache(ScoreCache cache, String dataset) {
+        this.cache = cache;
+        this.dataset = dataset;
+    }
+
+    public <E extends Instance, C extends Cluster<E>> Result evaluate(final Clustering<E, C> clustering, final ClusterEvaluation[] evals) {
+        final Result res = new Result(evals.length);
+        List<Integer> missing = new ArrayList<>(evals.length);
+        String key = cache != null ? ScoreCache.key(clustering) : null;
+        for (int i = 0; i < evals.length; i++) {
+            Double cached = key != null ? cache.get(dataset, key, evals[i].getHandle()) : null;
+            if (cached != null) {
+                res.scores[i] = cached;
+            } else {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return res;
+        }
+        if (threads == 1 || missing.size() < 2) {
+            for (int i : missing) {
+                score(clustering, evals[i], res, i);
+            }
+        } else {
+            compute(clustering, evals, missing, res);
+        }
+        if (key != null) {
+            for (int i : missing) {
+                cache.put(dataset, key, evals[i].getHandle(), res.scores[i]);
+            }
+        }
+        return res;
+    }
+
+    private <E extends Instance, C extends Cluster<E>> void compute(final Clustering<E, C> clustering, final ClusterEvaluation[] evals, List<Integer> missing, final Result res) {
+        List<Future<Void>> futures = new ArrayList<>(missing.size());
+        for (final int idx : missing) {
+            futures.add(pool().submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    score(copy(clustering), newInstance(evals[idx]), res, idx);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while evaluating " + clustering.fingerprint(), ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Clustering with the same assignments and its own clusters
+     *
+     * @param clustering
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    static <E extends Instance, C extends Cluster<E>> Clustering<E, C> copy(Clustering<E, C> clustering) {
+        Clustering<E, C> res = new ClusterList(clustering.size());
+        for (int j = 0; j < clustering.size(); j++) {
+            C orig = clustering.get(j);
+            C cluster = res.createCluster();
+            cluster.setName(orig.getName());
+            for (E inst : orig) {
+                cluster.add(inst);
+            }
+        }
+        for (Object obj : clustering.getLookup().lookupAll(Object.class)) {
+            res.lookupAdd(obj);
+        }
+        res.mergeParams(clustering.getParams());
+        return res;
+    }
+
+    private <E extends Instance, C extends Cluster<E>> void score(Clustering<E, C> clustering, ClusterEvaluation eval, Result res, int idx) {
+        StopWatch time = new StopWatch(true);
+        try {
+            res.scores[idx] = eval.score(clustering);
+        } catch (ScoreException | RuntimeException ex) {
+            res.scores[idx] = Double.NaN;
+            LOG.warn("failed to compute score {}: {}", eval.getName(), ex.getMessage());
+        }
+        time.endMeasure();
+        res.times[idx] = time;
+    }
+
+    private ClusterEvaluation newInstance(ClusterEvaluation eval) {
+        try {
+            return eval.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            //metric without default constructor, assume it's stateless
+            return eval;
+        }
+    }
+
+    private synchronized ExecutorService pool() {
+        if (pool == null) {
+            pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "eval");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return pool;
+    }
+
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Pareto ranking by two objectives. Scores are given as vectors where higher
+ * value is better (NaN is the worst value).
+ *
+ * Non-dominated sorting: items are processed in order of the first objective
+ * and each one is put into the first front which doesn't dominate it. Fronts
+ * are found by binary search, i.e. O(n log n) in total.
+ *
+ * @author deric
+ */
+public class ParetoRanking {
+
+    private final double[] a;
+    private final double[] b;
+    private final int[][] fronts;
+
+    /**
+     *
+     * @param a scores by the first objective
+     * @param b scores by the second objective
+     */
+    public ParetoRanking(double[] a, double[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("score vectors differ in length: " + a.length + " vs " + b.length);
+        }
+        this.a = a;
+        this.b = b;
+        this.fronts = decompose();
+    }
+
+    private int[][] decompose() {
+        Integer[] order = new Integer[a.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        //by first objective, then second (both best first)
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer x, Integer y) {
+                int cmp = compareScore(a[y], a[x]);
+                return cmp != 0 ? cmp : compareScore(b[y], b[x]);
+            }
+        });
+        List<List<Integer>> res = new ArrayList<>();
+        //last item added to each front, its second score is the best in the front
+        List<Integer> last = new ArrayList<>();
+        for (int p : order) {
+            int lo = 0, hi = last.size();
+            //domination by a front is monotone in front index
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (dominates(last.get(mid), p)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (lo == res.size()) {
+                res.add(new ArrayList<Integer>());
+                last.add(p);
+            }
+            res.get(lo).add(p);
+            last.set(lo, p);
+        }
+        int[][] f = new int[res.size()][];
+        for (int i = 0; i < f.length; i++) {
+            List<Integer> front = res.get(i);
+            f[i] = new int[front.size()];
+            for (int j = 0; j < f[i].length; j++) {
+                f[i][j] = front.get(j);
+            }
+        }
+        return f;
+    }
+
+    /**
+     * Whether <code>q</code> (processed before <code>p</code>) dominates
+     * <code>p</code>
+     */
+    private boolean dominates(int q, int p) {
+        int cb = compareScore(b[q], b[p]);
+        return cb > 0 || (cb == 0 && compareScore(a[q], a[p]) > 0);
+    }
+
+    /**
+     * Compare scores, NaN is the worst one
+     */
+    private static int compareScore(double x, double y) {
+        if (Double.isNaN(x)) {
+            return Double.isNaN(y) ? 0 : -1;
+        }
+        if (Double.isNaN(y)) {
+            return 1;
+        }
+        return Double.compare(x, y);
+    }
+
+    /**
+     *
+     * @return indexes of items in each front, the first front is
+     * non-dominated
+     */
+    public int[][] getFronts() {
+        return fronts;
+    }
+
+    /**
+     * Ranking of items in the first <code>maxFronts</code> fronts: fronts in
+     * order, items of a front sorted by the <code>sort</code> objective. Items
+     * in further fronts are excluded (as by ParetoFrontQueue).
+     *
+     * @param sort scores by sorting objective (higher is better)
+     * @param maxFronts
+     * @return indexes of ranked items, the best one first
+     */
+    public int[] order(final double[] sort, int maxFronts) {
+        Comparator<Integer> bySort = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer x, Integer y) {
+                int cmp = compareScore(sort[y], sort[x]);
+                return cmp != 0 ? cmp : Integer.compare(x, y);
+            }
+        };
+        int size = 0;
+        for (int f = 0; f < Math.min(maxFronts, fronts.length); f++) {
+            size += fronts[f].length;
+        }
+        int[] res = new int[size];
+        int pos = 0;
+        for (int f = 0; f < Math.min(maxFronts, fronts.length); f++) {
+            Integer[] front = new Integer[fronts[f].length];
+            for (int j = 0; j < front.length; j++) {
+                front[j] = fronts[f][j];
+            }
+            Arrays.sort(front, bySort);
+            for (int p : front) {
+                res[pos++] = p;
+            }
+        }
+        return res;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.clueminer.clustering.api.ClusterEvaluation;
+import org.clueminer.clustering.api.Clustering;
+
+/**
+ * Scores of clusterings by several metrics. Scores are computed once (e.g. by
+ * {@link ParallelEvaluator}) and rankings read them from the matrix instead of
+ * evaluating the same clustering again.
+ *
+ * @author deric
+ */
+public class ScoreMatrix {
+
+    private final ClusterEvaluation[] metrics;
+    //clusterings x metrics
+    private final double[][] scores;
+    private final IdentityHashMap<Clustering, Integer> rows;
+
+    /**
+     *
+     * @param clusterings rows of the matrix
+     * @param metrics columns of the matrix
+     */
+    public ScoreMatrix(Clustering[] clusterings, ClusterEvaluation[] metrics) {
+        this.metrics = metrics;
+        this.scores = new double[clusterings.length][metrics.length];
+        this.rows = new IdentityHashMap<>(clusterings.length);
+        for (int i = 0; i < clusterings.length; i++) {
+            rows.put(clusterings[i], i);
+        }
+    }
+
+    /**
+     * Set scores of i-th clustering
+     *
+     * @param i
+     * @param res scores in the same order as metrics of the matrix
+     */
+    public void set(int i, ParallelEvaluator.Result res) {
+        for (int m = 0; m < metrics.length; m++) {
+            scores[i][m] = res.score(m);
+        }
+    }
+
+    public void set(int i, int m, double score) {
+        scores[i][m] = score;
+    }
+
+    public double get(int i, int m) {
+        return scores[i][m];
+    }
+
+    /**
+     *
+     * @param clustering
+     * @return row of the clustering, -1 when it's not in the matrix
+     */
+    public int row(Clustering clustering) {
+        Integer i = rows.get(clustering);
+        return i != null ? i : -1;
+    }
+
+    public int size() {
+        return scores.length;
+    }
+
+    public ClusterEvaluation metric(int m) {
+        return metrics[m];
+    }
+
+    /**
+     * Scores by m-th metric oriented so that higher is always better
+     *
+     * @param m
+     * @return
+     */
+    public double[] maximized(int m) {
+        double[] res = new double[scores.length];
+        boolean max = metrics[m].isMaximized();
+        for (int i = 0; i < scores.length; i++) {
+            res[i] = max ? scores[i][m] : -scores[i][m];
+        }
+        return res;
+    }
+
+    /**
+     * Metric which returns scores stored in the matrix, any other call
+     * (including scoring of a clustering which isn't in the matrix) goes to
+     * the original metric. The view implements the same interfaces as the
+     * metric.
+     *
+     * @param m
+     * @return
+     */
+    public ClusterEvaluation view(final int m) {
+        final ClusterEvaluation eval = metrics[m];
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> c = eval.getClass(); c != null; c = c.getSuperclass()) {
+            collect(c, interfaces);
+        }
+        return (ClusterEvaluation) Proxy.newProxyInstance(eval.getClass().getClassLoader(),
+                interfaces.toArray(new Class<?>[interfaces.size()]), new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if ("score".equals(method.getName()) && method.getReturnType() == double.class
+                        && args != null && args.length > 0 && args[0] instanceof Clustering) {
+                    int i = row((Clustering) args[0]);
+                    if (i >= 0) {
+                        return scores[i][m];
+                    }
+                }
+                try {
+                    return method.invoke(eval, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        });
+    }
+
+    private static void collect(Class<?> c, Set<Class<?>> interfaces) {
+        for (Class<?> i : c.getInterfaces()) {
+            if (interfaces.add(i)) {
+                collect(i, interfaces);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Typed parameters of an algorithm explored by an optimizer. Each parameter
+ * is mapped onto the unit interval: real and integer ranges linearly (or in
+ * log scale), categorical values by index.
+ *
+ * @author deric
+ */
+public class SearchSpace {
+
+    public enum Type {
+        REAL, INTEGER, CATEGORICAL
+    }
+
+    private final List<Param> params = new ArrayList<>();
+
+    public SearchSpace real(String name, double low, double high) {
+        params.add(new Param(name, Type.REAL, low, high, false, null));
+        return this;
+    }
+
+    /**
+     * Real range explored in log scale
+     *
+     * @param name
+     * @param low positive lower bound
+     * @param high
+     * @return
+     */
+    public SearchSpace logReal(String name, double low, double high) {
+        if (low <= 0) {
+            throw new IllegalArgumentException("log scale requires positive bounds: " + name);
+        }
+        params.add(new Param(name, Type.REAL, low, high, true, null));
+        return this;
+    }
+
+    public SearchSpace integer(String name, int low, int high) {
+        params.add(new Param(name, Type.INTEGER, low, high, false, null));
+        return this;
+    }
+
+    public SearchSpace categorical(String name, String... choices) {
+        params.add(new Param(name, Type.CATEGORICAL, 0, choices.length - 1, false, choices));
+        return this;
+    }
+
+    public List<Param> getParams() {
+        return Collections.unmodifiableList(params);
+    }
+
+    public int size() {
+        return params.size();
+    }
+
+    public static class Param {
+
+        private final String name;
+        private final Type type;
+        private final double low;
+        private final double high;
+        private final boolean log;
+        private final String[] choices;
+
+        Param(String name, Type type, double low, double high, boolean log, String[] choices) {
+            if (high < low) {
+                throw new IllegalArgumentException("empty range of " + name);
+            }
+            this.name = name;
+            this.type = type;
+            this.low = low;
+            this.high = high;
+            this.log = log;
+            this.choices = choices;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Number of categories
+         *
+         * @return
+         */
+        public int choices() {
+            return choices.length;
+        }
+
+        /**
+         * Value of a numeric parameter at position <code>u</code> of the
+         * unit interval (integers are rounded)
+         *
+         * @param u
+         * @return
+         */
+        public double value(double u) {
+            u = Math.max(0.0, Math.min(1.0, u));
+            double v = log
+                    ? Math.exp(Math.log(low) + u * (Math.log(high) - Math.log(low)))
+                    : low + u * (high - low);
+            return type == Type.REAL ? v : Math.round(v);
+        }
+
+        /**
+         * Inverse of {@link #value(double)}
+         *
+         * @param value
+         * @return
+         */
+        public double unit(double value) {
+            if (high == low) {
+                return 0.5;
+            }
+            return log
+                    ? (Math.log(value) - Math.log(low)) / (Math.log(high) - Math.log(low))
+                    : (value - low) / (high - low);
+        }
+
+        public String choice(int index) {
+            return choices[index];
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Schedule of successive halving: candidates are scored on growing samples
+ * of the dataset, only the best 1/eta of them are promoted to the next
+ * (eta times larger) sample.
+ *
+ * @author deric
+ */
+public class SuccessiveHalving {
+
+    private SuccessiveHalving() {
+    }
+
+    /**
+     * Sample sizes of all rungs
+     *
+     * @param n size of the dataset
+     * @param min size of the smallest sample
+     * @param eta growth of samples
+     * @return sizes of samples, the last one is the whole dataset
+     */
+    public static long[] rungs(int n, long min, int eta) {
+        List<Long> sizes = new ArrayList<>();
+        long size = Math.max(1, min);
+        while (size < n) {
+            sizes.add(size);
+            size *= Math.max(2, eta);
+        }
+        sizes.add((long) n);
+        long[] res = new long[sizes.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = sizes.get(i);
+        }
+        return res;
+    }
+
+    /**
+     *
+     * @param candidates number of candidates scored in a rung
+     * @param eta
+     * @return number of candidates promoted to the next rung (at least one)
+     */
+    public static int promoted(int candidates, int eta) {
+        eta = Math.max(2, eta);
+        return Math.max(1, (candidates + eta - 1) / eta);
+    }
+
+    /**
+     * Random sample which keeps proportions of classes (largest remainder
+     * allocation)
+     *
+     * @param classes class of each row (might be null)
+     * @param size size of the sample
+     * @param rand
+     * @return sampled rows in ascending order
+     */
+    public static int[] stratified(Object[] classes, int size, Random rand) {
+        int n = classes.length;
+        Map<Object, List<Integer>> strata = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            List<Integer> rows = strata.get(classes[i]);
+            if (rows == null) {
+                rows = new ArrayList<>();
+                strata.put(classes[i], rows);
+            }
+            rows.add(i);
+        }
+        List<List<Integer>> groups = new ArrayList<>(strata.values());
+        int[] quota = new int[groups.size()];
+        double[] remainder = new double[groups.size()];
+        int assigned = 0;
+        for (int g = 0; g < quota.length; g++) {
+            double exact = (double) size * groups.get(g).size() / n;
+            quota[g] = (int) exact;
+            remainder[g] = exact - quota[g];
+            assigned += quota[g];
+        }
+        while (assigned < size) {
+            int best = 0;
+            for (int g = 1; g < quota.length; g++) {
+                if (remainder[g] > remainder[best]) {
+                    best = g;
+                }
+            }
+            quota[best]++;
+            remainder[best] = -1.0;
+            assigned++;
+        }
+        int[] rows = new int[size];
+        int k = 0;
+        for (int g = 0; g < quota.length; g++) {
+            List<Integer> group = groups.get(g);
+            for (int i : LloydKMeans.sample(group.size(), quota[g], rand)) {
+                rows[k++] = group.get(i);
+            }
+        }
+        Arrays.sort(rows);
+        return rows;
+    }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Sequential model-based optimization using Tree-structured Parzen
+ * Estimators (Bergstra et al., 2011).
+ *
+ * After a few random configurations observations are split into good ones
+ * (the best <code>gamma</code> fraction) and the rest. Each parameter gets
+ * two Parzen densities, l(x) fitted to good and g(x) to other observations.
+ * Next configuration is the candidate sampled from l(x) with the highest
+ * ratio l(x)/g(x). Parameters are modeled independently.
+ *
+ * @author deric
+ */
+public class TpeOptimizer {
+
+    private static final double GAMMA = 0.25;
+    private static final int CANDIDATES = 24;
+
+    private final SearchSpace space;
+    private final int startup;
+    private final Random rand;
+    private final List<double[]> points = new ArrayList<>();
+    private final List<Double> losses = new ArrayList<>();
+
+    /**
+     *
+     * @param space
+     * @param startup number of random configurations before the model is used
+     * @param seed
+     */
+    public TpeOptimizer(SearchSpace space, int startup, long seed) {
+        this.space = space;
+        this.startup = Math.max(2, startup);
+        this.rand = new Random(seed);
+    }
+
+    /**
+     * Next configuration to evaluate
+     *
+     * @return value of each parameter (index of category for categorical
+     * parameters)
+     */
+    public double[] suggest() {
+        List<SearchSpace.Param> params = space.getParams();
+        double[] x = new double[params.size()];
+        if (points.size() < startup) {
+            for (int p = 0; p < x.length; p++) {
+                SearchSpace.Param param = params.get(p);
+                x[p] = param.getType() == SearchSpace.Type.CATEGORICAL
+                        ? rand.nextInt(param.choices()) : param.value(rand.nextDouble());
+            }
+            return x;
+        }
+        //split observations by loss
+        Integer[] order = new Integer[points.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(losses.get(a), losses.get(b));
+            }
+        });
+        int good = Math.max(1, (int) Math.ceil(GAMMA * order.length));
+        for (int p = 0; p < x.length; p++) {
+            SearchSpace.Param param = params.get(p);
+            double[] below = new double[good];
+            double[] above = new double[order.length - good];
+            for (int i = 0; i < order.length; i++) {
+                double v = points.get(order[i])[p];
+                if (param.getType() != SearchSpace.Type.CATEGORICAL) {
+                    v = param.unit(v);
+                }
+                if (i < good) {
+                    below[i] = v;
+                } else {
+                    above[i - good] = v;
+                }
+            }
+            if (param.getType() == SearchSpace.Type.CATEGORICAL) {
+                x[p] = suggestCategory(param.choices(), below, above);
+            } else {
+                x[p] = param.value(suggestNumeric(below, above));
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Record result of a configuration
+     *
+     * @param x configuration returned by {@link #suggest()}
+     * @param loss lower is better, NaN is the worst
+     */
+    public void observe(double[] x, double loss) {
+        points.add(x.clone());
+        losses.add(Double.isNaN(loss) ? Double.POSITIVE_INFINITY : loss);
+    }
+
+    public int observations() {
+        return points.size();
+    }
+
+    private int suggestCategory(int k, double[] below, double[] above) {
+        double[] l = categoryWeights(k, below);
+        double[] g = categoryWeights(k, above);
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < CANDIDATES; c++) {
+            //sample from l(x)
+            double r = rand.nextDouble();
+            int cat = 0;
+            while (cat < k - 1 && r > l[cat]) {
+                r -= l[cat];
+                cat++;
+            }
+            double score = Math.log(l[cat]) - Math.log(g[cat]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = cat;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Smoothed frequencies (each category has a prior count of one)
+     */
+    private static double[] categoryWeights(int k, double[] values) {
+        double[] w = new double[k];
+        Arrays.fill(w, 1.0);
+        for (double v : values) {
+            w[(int) v] += 1.0;
+        }
+        double sum = k + values.length;
+        for (int c = 0; c < k; c++) {
+            w[c] /= sum;
+        }
+        return w;
+    }
+
+    private double suggestNumeric(double[] below, double[] above) {
+        Parzen l = new Parzen(below);
+        Parzen g = new Parzen(above);
+        double best = 0.5;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < CANDIDATES; c++) {
+            double u = l.sample(rand);
+            double score = Math.log(l.density(u)) - Math.log(g.density(u));
+            if (score > bestScore) {
+                bestScore = score;
+                best = u;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Mixture of Gaussians truncated to the unit interval, one component per
+     * observation plus a wide prior component. Bandwidth of a component is
+     * the larger distance to its neighbors.
+     */
+    private static class Parzen {
+
+        private final double[] mu;
+        private final double[] sigma;
+        private final double[] norm;
+
+        Parzen(double[] values) {
+            List<Double> sorted = new ArrayList<>(values.length + 1);
+            for (double v : values) {
+                sorted.add(v);
+            }
+            //prior
+            sorted.add(0.5);
+            Collections.sort(sorted);
+            int n = sorted.size();
+            mu = new double[n];
+            sigma = new double[n];
+            norm = new double[n];
+            double min = 1.0 / Math.min(100, n);
+            boolean prior = false;
+            for (int i = 0; i < n; i++) {
+                mu[i] = sorted.get(i);
+                if (!prior && mu[i] == 0.5) {
+                    prior = true;
+                    sigma[i] = 1.0;
+                } else {
+                    double left = i > 0 ? mu[i] - sorted.get(i - 1) : mu[i];
+                    double right = i < n - 1 ? sorted.get(i + 1) - mu[i] : 1.0 - mu[i];
+                    sigma[i] = Math.max(min, Math.min(1.0, Math.max(left, right)));
+                }
+                norm[i] = cdf((1.0 - mu[i]) / sigma[i]) - cdf(-mu[i] / sigma[i]);
+            }
+        }
+
+        double sample(Random rand) {
+            int c = rand.nextInt(mu.length);
+            for (int attempt = 0; attempt < 100; attempt++) {
+                double u = mu[c] + sigma[c] * rand.nextGaussian();
+                if (u >= 0.0 && u <= 1.0) {
+                    return u;
+                }
+            }
+            return Math.max(0.0, Math.min(1.0, mu[c]));
+        }
+
+        double density(double u) {
+            double sum = 0.0;
+            for (int i = 0; i < mu.length; i++) {
+                double z = (u - mu[i]) / sigma[i];
+                sum += Math.exp(-0.5 * z * z) / (sigma[i] * Math.sqrt(2 * Math.PI) * norm[i]);
+            }
+            return sum / mu.length;
+        }
+    }
+
+    /**
+     * Standard normal CDF
+     */
+    static double cdf(double x) {
+        return 0.5 * (1.0 + erf(x / Math.sqrt(2.0)));
+    }
+
+    /**
+     * Abramowitz and Stegun 7.1.26 (max. error 1.5e-7)
+     */
+    private static double erf(double x) {
+        double t = 1.0 / (1.0 + 0.3275911 * Math.abs(x));
+        double y = 1.0 - (((((1.061405429 * t - 1.453152027) * t) + 1.421413741) * t - 0.284496736) * t + 0.254829592) * t * Math.exp(-x * x);
+        return x >= 0 ? y : -y;
+    }
+
+}
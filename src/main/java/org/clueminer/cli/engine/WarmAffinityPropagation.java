@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.cli.data.RowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Affinity propagation (Frey and Dueck, 2007) for a sequence of damping
+ * values. Similarity matrix (negative squared Euclidean distance, preference
+ * is the median similarity unless given) is computed once, responsibilities and
+ * availabilities converged for one damping value are the starting point for
+ * the next one. Only a single set of n x n matrices is kept.
+ *
+ * Rows are statically partitioned between threads.
+ *
+ * @author deric
+ */
+public class WarmAffinityPropagation {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WarmAffinityPropagation.class);
+
+    private final int n;
+    private final int maxIterations;
+    private final int convits;
+    private final int threads;
+    private final double[] s;
+    private final double[] r;
+    private final double[] a;
+    private int iterations;
+
+    /**
+     *
+     * @param store
+     * @param maxIterations max. number of iterations for a damping value
+     * @param convits number of iterations with unchanged exemplars needed for
+     * convergence
+     * @param seed seed of noise which removes degeneracies
+     * @param threads
+     */
+    public WarmAffinityPropagation(RowStore store, int maxIterations, int convits, long seed, int threads) {
+        this(store, maxIterations, convits, Double.NaN, seed, threads);
+    }
+
+    /**
+     *
+     * @param store
+     * @param maxIterations max. number of iterations for a damping value
+     * @param convits number of iterations with unchanged exemplars needed for
+     * convergence
+     * @param preference self-similarity of each row, median similarity when
+     * <code>NaN</code>
+     * @param seed seed of noise which removes degeneracies
+     * @param threads
+     */
+    public WarmAffinityPropagation(RowStore store, int maxIterations, int convits, double preference, long seed, int threads) {
+        this.n = store.size();
+        if ((long) n * n > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("can't store similarity matrix of " + n + " rows");
+        }
+        this.maxIterations = maxIterations;
+        this.convits = convits;
+        this.threads = Math.max(1, Math.min(threads, n));
+        this.s = similarities(store, preference, seed);
+        this.r = new double[n * n];
+        this.a = new double[n * n];
+    }
+
+    private double[] similarities(RowStore store, double preference, long seed) {
+        int d = store.attributeCount();
+        double[] sim = new double[n * n];
+        double[] x = new double[d];
+        double[] y = new double[d];
+        for (int i = 0; i < n; i++) {
+            store.row(i, x);
+            for (int k = i + 1; k < n; k++) {
+                store.row(k, y);
+                double dist = LloydKMeans.squaredDistance(x, y, Double.POSITIVE_INFINITY);
+                sim[i * n + k] = -dist;
+                sim[k * n + i] = -dist;
+            }
+        }
+        double[] off = new double[n * (n - 1)];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < n; k++) {
+                if (i != k) {
+                    off[m++] = sim[i * n + k];
+                }
+            }
+        }
+        Arrays.sort(off);
+        if (Double.isNaN(preference)) {
+            preference = off.length == 0 ? 0.0
+                    : (off.length % 2 == 1 ? off[off.length / 2] : (off[off.length / 2 - 1] + off[off.length / 2]) / 2);
+        }
+        double range = off.length == 0 ? 0.0 : off[off.length - 1] - off[0];
+        Random rand = new Random(seed);
+        for (int i = 0; i < n; i++) {
+            sim[i * n + i] = preference;
+            //tiny noise breaks ties between equally good exemplars
+            for (int k = 0; k < n; k++) {
+                sim[i * n + k] += 1e-12 * range * rand.nextDouble();
+            }
+        }
+        LOG.debug("preference {}", preference);
+        return sim;
+    }
+
+    /**
+     * Run message passing with given damping, starting from the state of the
+     * previous call
+     *
+     * @param damping in [0.5, 1)
+     * @return cluster label of each row (clusters are numbered in order of
+     * rows)
+     */
+    public int[] cluster(final double damping) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        boolean[] exemplars = new boolean[n];
+        try {
+            int stable = 0;
+            iterations = 0;
+            final double[] colsum = new double[n];
+            while (iterations < maxIterations && stable < convits) {
+                //responsibilities
+                run(pool, new Range() {
+                    @Override
+                    public void run(int from, int to) {
+                        updateResponsibilities(damping, from, to);
+                    }
+                });
+                //sum of positive responsibilities in each column
+                Arrays.fill(colsum, 0.0);
+                for (int i = 0; i < n; i++) {
+                    int base = i * n;
+                    for (int k = 0; k < n; k++) {
+                        double v = r[base + k];
+                        if (v > 0 || i == k) {
+                            colsum[k] += v;
+                        }
+                    }
+                }
+                run(pool, new Range() {
+                    @Override
+                    public void run(int from, int to) {
+                        updateAvailabilities(damping, colsum, from, to);
+                    }
+                });
+                iterations++;
+                boolean changed = false;
+                int count = 0;
+                for (int k = 0; k < n; k++) {
+                    boolean ex = a[k * n + k] + r[k * n + k] > 0;
+                    if (ex != exemplars[k]) {
+                        exemplars[k] = ex;
+                        changed = true;
+                    }
+                    if (ex) {
+                        count++;
+                    }
+                }
+                //no exemplars yet is not a solution
+                stable = changed || count == 0 ? 0 : stable + 1;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        LOG.info("damping {}: {} iterations", damping, iterations);
+        return assign(exemplars);
+    }
+
+    /**
+     * r(i,k) = s(i,k) - max_{k' != k} (a(i,k') + s(i,k'))
+     */
+    private void updateResponsibilities(double damping, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int base = i * n;
+            double first = Double.NEGATIVE_INFINITY, second = Double.NEGATIVE_INFINITY;
+            int arg = -1;
+            for (int k = 0; k < n; k++) {
+                double v = a[base + k] + s[base + k];
+                if (v > first) {
+                    second = first;
+                    first = v;
+                    arg = k;
+                } else if (v > second) {
+                    second = v;
+                }
+            }
+            for (int k = 0; k < n; k++) {
+                double v = s[base + k] - (k == arg ? second : first);
+                r[base + k] = damping * r[base + k] + (1 - damping) * v;
+            }
+        }
+    }
+
+    /**
+     * a(i,k) = min(0, r(k,k) + sum_{i' not in {i,k}} max(0, r(i',k))),
+     * a(k,k) = sum_{i' != k} max(0, r(i',k))
+     *
+     * @param colsum r(k,k) + sum_{i' != k} max(0, r(i',k))
+     */
+    private void updateAvailabilities(double damping, double[] colsum, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int base = i * n;
+            for (int k = 0; k < n; k++) {
+                double v;
+                if (i == k) {
+                    v = colsum[k] - r[base + k];
+                } else {
+                    v = Math.min(0.0, colsum[k] - Math.max(0.0, r[base + k]));
+                }
+                a[base + k] = damping * a[base + k] + (1 - damping) * v;
+            }
+        }
+    }
+
+    /**
+     * Assign each row to the most similar exemplar
+     */
+    private int[] assign(boolean[] exemplars) {
+        int[] labels = new int[n];
+        List<Integer> ex = new ArrayList<>();
+        for (int k = 0; k < n; k++) {
+            if (exemplars[k]) {
+                ex.add(k);
+            }
+        }
+        if (ex.isEmpty()) {
+            //not converged, single cluster
+            return labels;
+        }
+        int[] exemplar = new int[n];
+        for (int i = 0; i < n; i++) {
+            int best = -1;
+            if (exemplars[i]) {
+                best = i;
+            } else {
+                double bestSim = Double.NEGATIVE_INFINITY;
+                for (int k : ex) {
+                    if (s[i * n + k] > bestSim) {
+                        bestSim = s[i * n + k];
+                        best = k;
+                    }
+                }
+            }
+            exemplar[i] = best;
+        }
+        //number clusters in order of rows
+        int[] cluster = new int[n];
+        Arrays.fill(cluster, -1);
+        int c = 0;
+        for (int i = 0; i < n; i++) {
+            int e = exemplar[i];
+            if (cluster[e] < 0) {
+                cluster[e] = c++;
+            }
+            labels[i] = cluster[e];
+        }
+        return labels;
+    }
+
+    /**
+     * Number of iterations of the last {@link #cluster(double)} call
+     *
+     * @return
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    private interface Range {
+
+        void run(int from, int to);
+    }
+
+    private void run(ExecutorService pool, final Range task) {
+        List<Future<Void>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int from = (int) ((long) n * t / threads);
+            final int to = (int) ((long) n * (t + 1) / threads);
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    task.run(from, to);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> f : futures) {
+            LloydKMeans.get(f);
+        }
+    }
+
+}
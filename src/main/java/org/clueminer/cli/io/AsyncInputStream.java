@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads the underlying stream on a background thread into a bounded queue of
+ * blocks. The producer blocks when the consumer falls behind, therefore
+ * memory usage is limited to <code>capacity</code> blocks.
+ *
+ * @author deric
+ */
+public class AsyncInputStream extends InputStream {
+
+    private static final byte[] EOF = new byte[0];
+
+    private final BlockingQueue<byte[]> queue;
+    private final Thread reader;
+    private volatile IOException error;
+    private byte[] current;
+    private int pos;
+    private boolean finished = false;
+
+    /**
+     *
+     * @param in source stream (closed when fully read)
+     * @param blockSize
+     * @param capacity maximum number of blocks read ahead
+     */
+    public AsyncInputStream(final InputStream in, final int blockSize, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        byte[] block = new byte[blockSize];
+                        int len = 0;
+                        int read;
+                        while (len < blockSize && (read = in.read(block, len, blockSize - len)) > 0) {
+                            len += read;
+                        }
+                        if (len > 0) {
+                            queue.put(len < blockSize ? Arrays.copyOf(block, len) : block);
+                        }
+                        if (len < blockSize) {
+                            break;
+                        }
+                    }
+                    queue.put(EOF);
+                } catch (IOException e) {
+                    error = e;
+                    queue.offer(EOF);
+                } catch (InterruptedException e) {
+                    //closed by consumer
+                } finally {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        //nothing to do
+                    }
+                }
+            }
+        }, "input-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private boolean nextBlock() throws IOException {
+        if (finished) {
+            return false;
+        }
+        try {
+            current = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while reading input", e);
+        }
+        pos = 0;
+        if (current == EOF) {
+            finished = true;
+            if (error != null) {
+                throw error;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if ((current == null || pos >= current.length) && !nextBlock()) {
+            return -1;
+        }
+        return current[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if ((current == null || pos >= current.length) && !nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current != null ? current.length - pos : 0;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        reader.interrupt();
+        queue.clear();
+    }
+
+}
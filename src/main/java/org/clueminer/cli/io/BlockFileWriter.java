@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2011-2016 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes rows supplied in numbered blocks, typically from multiple threads.
+ * Each thread formats its own block, formatted blocks are appended to the file
+ * in order of their index, therefore only blocks being formatted are kept in
+ * memory.
+ *
+ * Binary output uses {@link DatasetSnapshot} format, values are written at
+ * their final position without waiting for preceding blocks.
+ *
+ * @author deric
+ */
+public class BlockFileWriter implements Closeable {
+
+    public enum Format {
+        CSV, ARFF, BIN;
+
+        /**
+         * Format given by file extension
+         *
+         * @param file
+         * @return
+         */
+        public static Format of(File file) {
+            String name = file.getName().toLowerCase();
+            String ext = name.substring(name.lastIndexOf('.') + 1);
+            switch (ext) {
+                case "csv":
+                    return CSV;
+                case "arff":
+                    return ARFF;
+                case "bin":
+                    return BIN;
+                default:
+                    throw new IllegalArgumentException("unsupported output " + file.getName() + ", use .csv, .arff or .bin");
+            }
+        }
+    }
+
+    private final FileChannel ch;
+    private final Format format;
+    private final int rows;
+    private final int cols;
+    private final String[] classes;
+    private final Object lock = new Object();
+    private int next = 0;
+    private int written = 0;
+    //end of ordered output, accessed only by the thread holding the turn
+    private long position;
+
+    /**
+     *
+     * @param file
+     * @param format
+     * @param name dataset name
+     * @param attributes
+     * @param classes class labels, rows refer to them by index
+     * @param rows total number of rows
+     * @throws IOException
+     */
+    public BlockFileWriter(File file, Format format, String name, List<String> attributes, String[] classes, int rows) throws IOException {
+        this.format = format;
+        this.rows = rows;
+        this.cols = attributes.size();
+        this.classes = classes;
+        ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        switch (format) {
+            case CSV:
+                StringBuilder sb = new StringBuilder();
+                for (String attr : attributes) {
+                    sb.append(attr).append(',');
+                }
+                sb.append("class\n");
+                header.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                position = 0;
+                break;
+            case ARFF:
+                sb = new StringBuilder();
+                sb.append("@relation ").append(name).append("\n\n");
+                for (String attr : attributes) {
+                    sb.append("@attribute ").append(attr).append(" numeric\n");
+                }
+                sb.append("@attribute class {");
+                for (int i = 0; i < classes.length; i++) {
+                    sb.append(i > 0 ? "," : "").append(classes[i]);
+                }
+                sb.append("}\n\n@data\n");
+                header.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                position = 0;
+                break;
+            case BIN:
+                //meta data follows values, size of values is known in advance
+                position = DatasetSnapshot.HEADER_SIZE + 8L * rows * cols;
+                DatasetSnapshot.writeHeader(ch, rows, cols, position);
+                DataOutputStream out = new DataOutputStream(header);
+                DatasetSnapshot.writeString(out, name);
+                for (String attr : attributes) {
+                    DatasetSnapshot.writeString(out, attr);
+                }
+                break;
+        }
+        position += write(ByteBuffer.wrap(header.toByteArray()), position);
+    }
+
+    /**
+     * Write a block of rows, blocks must be numbered consecutively from 0 and
+     * submitted in order (though they might be finished in any order).
+     *
+     * @param block index of the block
+     * @param from index of the first row
+     * @param n number of rows
+     * @param values row-major values
+     * @param labels index of class of each row
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void write(int block, int from, int n, double[] values, int[] labels) throws IOException, InterruptedException {
+        ByteBuffer ordered;
+        if (format == Format.BIN) {
+            ByteBuffer buf = ByteBuffer.allocate(8 * n * cols).order(ByteOrder.LITTLE_ENDIAN);
+            buf.asDoubleBuffer().put(values, 0, n * cols);
+            write(buf, DatasetSnapshot.HEADER_SIZE + 8L * from * cols);
+            ByteArrayOutputStream meta = new ByteArrayOutputStream(n * 8);
+            DataOutputStream out = new DataOutputStream(meta);
+            for (int i = 0; i < n; i++) {
+                DatasetSnapshot.writeString(out, null);
+                DatasetSnapshot.writeString(out, classes[labels[i]]);
+            }
+            ordered = ByteBuffer.wrap(meta.toByteArray());
+        } else {
+            ordered = ByteBuffer.wrap(format(n, values, labels).getBytes(StandardCharsets.UTF_8));
+        }
+        synchronized (lock) {
+            while (block != next) {
+                lock.wait();
+            }
+        }
+        try {
+            position += write(ordered, position);
+        } finally {
+            synchronized (lock) {
+                next++;
+                written += n;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private String format(int n, double[] values, int[] labels) {
+        StringBuilder sb = new StringBuilder(n * (cols + 1) * 12);
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < cols; j++) {
+                sb.append(values[pos++]).append(',');
+            }
+            sb.append(classes[labels[i]]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private int write(ByteBuffer buf, long pos) throws IOException {
+        int size = buf.remaining();
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+        return size;
+    }
+
+    /**
+     * Number of written rows
+     *
+     * @return
+     */
+    public int getWritten() {
+        synchronized (lock) {
+            return written;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+        if (getWritten() != rows) {
+            throw new IOException("expected " + rows + " rows, written " + getWritten());
+        }
+    }
+
+}
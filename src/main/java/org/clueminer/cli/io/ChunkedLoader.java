@@ -0,0 +1,533 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.dataset.impl.ArrayDataset;
+import org.clueminer.exception.ParserError;
+
+/**
+ * Common base for multi-threaded parsers of line oriented text files.
+ *
+ * The data section of a file is memory-mapped in newline-aligned chunks which
+ * are processed independently. Chunks are counted first, so that the output
+ * could be allocated with exact size. Streams (e.g. decompressed input) are
+ * parsed by {@link StreamingLoader} using the same line parser.
+ *
+ * @author deric
+ */
+public abstract class ChunkedLoader {
+
+    /**
+     * smaller files are loaded faster by a sequential parser
+     */
+    public static final long MIN_SIZE = 4L << 20;
+    /**
+     * smaller chunks are not worth splitting
+     */
+    private static final long MIN_CHUNK = 1L << 20;
+    /**
+     * a single mapping can't exceed 2GB
+     */
+    private static final long MAX_CHUNK = 1L << 30;
+    private static final int SCAN_BLOCK = 1 << 16;
+
+    protected final int threads;
+    /**
+     * requested size of chunks in bytes, 0 for automatic
+     */
+    protected long chunkSize;
+    protected Fingerprint fingerprint;
+    /**
+     * names of attributes (available after parsing header)
+     */
+    protected List<String> attributes;
+
+    public ChunkedLoader(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Hash input file while it's being parsed, so that the file is read just
+     * once.
+     *
+     * @param fingerprint null to disable hashing
+     */
+    public void setFingerprint(Fingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Size of chunks parsed by a single thread
+     *
+     * @param chunkSize bytes, 0 for roughly four chunks per thread
+     */
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = Math.max(0, chunkSize);
+    }
+
+    /**
+     * Whether the byte separates two columns
+     *
+     * @param b
+     * @return
+     */
+    protected abstract boolean isSeparator(byte b);
+
+    /**
+     * Quote character (values are quoted by the same character)
+     *
+     * @param b
+     * @return
+     */
+    protected boolean isQuote(byte b) {
+        return b == '"';
+    }
+
+    /**
+     * When true any run of separators is treated as a single one
+     *
+     * @return
+     */
+    protected boolean collapseSeparators() {
+        return false;
+    }
+
+    /**
+     * Lines starting with this character are ignored
+     *
+     * @return comment character, 0 when comments are not supported
+     */
+    protected byte commentChar() {
+        return 0;
+    }
+
+    /**
+     * Parse header from the beginning of the input, initializes
+     * {@link #attributes}
+     *
+     * @param buf input data starting at position 0
+     * @param complete whether the buffer contains whole input
+     * @return offset of the first data line, -1 when more data are needed
+     * @throws ParserError
+     */
+    protected abstract int parseHeader(ByteBuffer buf, boolean complete) throws ParserError;
+
+    /**
+     * Parse all data lines in the buffer
+     *
+     * @param buf
+     * @param pos position of the buffer in the input (for error reporting)
+     * @param out
+     * @throws ParserError
+     */
+    protected abstract void parseRows(ByteBuffer buf, long pos, RowBlock out) throws ParserError;
+
+    /**
+     * Dataset name, by default derived from file name
+     *
+     * @param fallback
+     * @return
+     */
+    protected String datasetName(String fallback) {
+        return fallback;
+    }
+
+    /**
+     * Parse header of a file
+     *
+     * @param ch
+     * @return offset of the data section
+     * @throws IOException
+     * @throws ParserError
+     */
+    protected long readHeader(FileChannel ch) throws IOException, ParserError {
+        long size = ch.size();
+        ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+        int dataStart = parseHeader(buf, size <= Integer.MAX_VALUE);
+        if (dataStart < 0) {
+            throw new ParserError("header is too long");
+        }
+        return dataStart;
+    }
+
+    /**
+     * Map data section of the file
+     *
+     * @param ch
+     * @param bounds chunk boundaries
+     * @return
+     * @throws IOException
+     */
+    protected MappedByteBuffer[] map(FileChannel ch, long[] bounds) throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[bounds.length - 1];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ch.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+        }
+        return chunks;
+    }
+
+    /**
+     * Number of worker threads needed for given number of chunks (including a
+     * thread for hashing)
+     *
+     * @param numChunks
+     * @return
+     */
+    protected int poolSize(int numChunks) {
+        return Math.max(1, Math.min(threads, numChunks)) + (fingerprint != null ? 1 : 0);
+    }
+
+    /**
+     * Start hashing whole file. Hashing runs along the counting pass, so that
+     * both read the same pages.
+     *
+     * @param pool
+     * @param ch
+     * @param dataStart end of the header
+     * @param chunks data section
+     * @return null when no fingerprint is requested
+     * @throws IOException
+     */
+    protected Future<?> startHashing(ExecutorService pool, FileChannel ch, long dataStart,
+            final MappedByteBuffer[] chunks) throws IOException {
+        if (fingerprint == null) {
+            return null;
+        }
+        final ByteBuffer head = dataStart > 0 ? ch.map(FileChannel.MapMode.READ_ONLY, 0, dataStart) : null;
+        final Fingerprint fp = fingerprint;
+        return pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                if (head != null) {
+                    fp.update(head);
+                }
+                for (MappedByteBuffer chunk : chunks) {
+                    fp.update(chunk);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Count data rows in all chunks
+     *
+     * @param pool
+     * @param chunks
+     * @return index of first row in each chunk, last item is total number of
+     * rows
+     * @throws IOException
+     * @throws ParserError
+     */
+    protected int[] rowOffsets(ExecutorService pool, MappedByteBuffer[] chunks) throws IOException, ParserError {
+        List<Future<Integer>> counts = new ArrayList<>(chunks.length);
+        for (final MappedByteBuffer chunk : chunks) {
+            counts.add(pool.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return countRows(chunk);
+                }
+            }));
+        }
+        int[] offsets = new int[chunks.length + 1];
+        for (int i = 0; i < chunks.length; i++) {
+            offsets[i + 1] = offsets[i] + get(counts.get(i));
+        }
+        return offsets;
+    }
+
+    /**
+     * Allocate dataset with exact size. Instances has to be created
+     * sequentially, values might be filled in parallel.
+     *
+     * @param <E>
+     * @param name
+     * @param rows
+     * @param attributes
+     * @return
+     */
+    protected <E extends Instance> Dataset<E> createDataset(String name, int rows, List<String> attributes) {
+        Dataset<E> dataset = emptyDataset(name, rows, attributes);
+        for (int i = 0; i < rows; i++) {
+            dataset.instance(i);
+        }
+        return dataset;
+    }
+
+    /**
+     * Dataset with attributes but no instances
+     *
+     * @param <E>
+     * @param name
+     * @param capacity expected number of rows
+     * @param attributes
+     * @return
+     */
+    protected <E extends Instance> Dataset<E> emptyDataset(String name, int capacity, List<String> attributes) {
+        Dataset<E> dataset = new ArrayDataset<>(capacity, attributes.size());
+        dataset.setName(name);
+        for (String attr : attributes) {
+            dataset.attributeBuilder().create(attr, "NUMERIC");
+        }
+        return dataset;
+    }
+
+    /**
+     * Number of data lines in the chunk
+     *
+     * @param buf
+     * @return
+     */
+    protected int countRows(ByteBuffer buf) {
+        int rows = 0;
+        int end = buf.limit();
+        byte comment = commentChar();
+        int i = 0;
+        while (i < end) {
+            //first non-blank character on the line
+            byte b = 0;
+            while (i < end && isBlank(b = buf.get(i))) {
+                i++;
+            }
+            if (i < end && b != '\n' && (comment == 0 || b != comment)) {
+                rows++;
+            }
+            while (i < end && buf.get(i) != '\n') {
+                i++;
+            }
+            i++;
+        }
+        return rows;
+    }
+
+    /**
+     * Whether line contains data (is not empty nor a comment)
+     *
+     * @param buf
+     * @param start
+     * @param end
+     * @return
+     */
+    protected boolean isDataLine(ByteBuffer buf, int start, int end) {
+        byte comment = commentChar();
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (!isBlank(b)) {
+                return comment == 0 || b != comment;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * End of line starting at <code>start</code>
+     *
+     * @param buf
+     * @param start
+     * @param end end of buffer
+     * @return position of newline character or end of the buffer
+     */
+    protected static int lineEnd(ByteBuffer buf, int start, int end) {
+        int i = start;
+        while (i < end && buf.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Find boundaries of a field starting at position <code>i</code>. Quotes
+     * and surrounding whitespace are stripped.
+     *
+     * @param buf
+     * @param i start of the field
+     * @param end end of the line
+     * @param range output: field start (inclusive) and end (exclusive)
+     * @return start of the next field, a value greater than <code>end</code>
+     * when this was the last field or -1 when there's no more field
+     */
+    protected int nextField(ByteBuffer buf, int i, int end, int[] range) {
+        if (collapseSeparators()) {
+            while (i < end && (isBlank(buf.get(i)) || isSeparator(buf.get(i)))) {
+                i++;
+            }
+            if (i >= end) {
+                return -1;
+            }
+        } else {
+            while (i < end && isBlank(buf.get(i)) && !isSeparator(buf.get(i))) {
+                i++;
+            }
+        }
+        int from = i;
+        int quoteEnd = -1;
+        byte b;
+        if (i < end && isQuote(b = buf.get(i))) {
+            from = ++i;
+            while (i < end && buf.get(i) != b) {
+                i++;
+            }
+            quoteEnd = i;
+        }
+        while (i < end && !isSeparator(buf.get(i))) {
+            i++;
+        }
+        int to = quoteEnd >= 0 ? quoteEnd : i;
+        if (quoteEnd < 0) {
+            while (to > from && isBlank(buf.get(to - 1))) {
+                to--;
+            }
+        }
+        range[0] = from;
+        range[1] = to;
+        return i + 1;
+    }
+
+    /**
+     * Split line into trimmed strings
+     *
+     * @param buf
+     * @param start
+     * @param end
+     * @return
+     */
+    protected List<String> tokenize(ByteBuffer buf, int start, int end) {
+        end = trimEol(buf, start, end);
+        List<String> res = new ArrayList<>();
+        int[] range = new int[2];
+        int i = start;
+        while (i <= end) {
+            i = nextField(buf, i, end, range);
+            if (i < 0) {
+                break;
+            }
+            res.add(FastDoubleParser.text(buf, range[0], range[1]));
+        }
+        return res;
+    }
+
+    /**
+     * Split file into chunks (roughly four per thread) that end with a newline
+     *
+     * @param ch
+     * @param start
+     * @param size
+     * @return chunk boundaries
+     * @throws IOException
+     */
+    protected long[] chunkBounds(FileChannel ch, long start, long size) throws IOException {
+        long len = size - start;
+        long chunk = chunkSize > 0 ? chunkSize : Math.max(MIN_CHUNK, len / (threads * 4L) + 1);
+        chunk = Math.min(chunk, MAX_CHUNK);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(start);
+        long pos = start;
+        while (pos < size) {
+            long next = pos + chunk;
+            if (next >= size) {
+                next = size;
+            } else {
+                next = nextLineStart(ch, next, size);
+            }
+            if (next - pos > Integer.MAX_VALUE) {
+                throw new IOException("line at position " + pos + " is too long");
+            }
+            bounds.add(next);
+            pos = next;
+        }
+        long[] res = new long[bounds.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = bounds.get(i);
+        }
+        return res;
+    }
+
+    /**
+     * Find position right after the first newline following <code>pos</code>
+     *
+     * @param ch
+     * @param pos
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    protected static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SCAN_BLOCK);
+        while (pos < size) {
+            buf.clear();
+            int read = ch.read(buf, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    protected static int trimEol(ByteBuffer buf, int start, int end) {
+        while (end > start && (buf.get(end - 1) == '\n' || buf.get(end - 1) == '\r')) {
+            end--;
+        }
+        return end;
+    }
+
+    protected static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    protected static String baseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    protected static <T> T get(Future<T> future) throws IOException, ParserError {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while loading data", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ParserError) {
+                throw (ParserError) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+}
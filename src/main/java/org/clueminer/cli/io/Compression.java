@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.tukaani.xz.XZInputStream;
+
+/**
+ * Compressed input formats, detected by magic bytes.
+ *
+ * @author deric
+ */
+public enum Compression {
+
+    NONE("", new byte[0]),
+    GZIP(".gz", new byte[]{(byte) 0x1f, (byte) 0x8b}),
+    BZIP2(".bz2", new byte[]{'B', 'Z', 'h'}),
+    XZ(".xz", new byte[]{(byte) 0xfd, '7', 'z', 'X', 'Z', 0});
+
+    private static final int BUFFER = 1 << 16;
+    /**
+     * size of a decompressed block passed to the parser
+     */
+    private static final int BLOCK = 1 << 20;
+    /**
+     * number of decompressed blocks buffered ahead of the parser
+     */
+    private static final int QUEUE = 16;
+
+    private final String suffix;
+    private final byte[] magic;
+
+    private Compression(String suffix, byte[] magic) {
+        this.suffix = suffix;
+        this.magic = magic;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * Detect compression from the first bytes of the file
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static Compression detect(File file) throws IOException {
+        byte[] head = new byte[6];
+        int len = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while (len < head.length && (read = in.read(head, len, head.length - len)) > 0) {
+                len += read;
+            }
+        }
+        for (Compression c : values()) {
+            if (c != NONE && c.matches(head, len)) {
+                return c;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean matches(byte[] head, int len) {
+        if (len < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * File name without compression suffix (e.g. <code>iris.csv</code> for
+     * <code>iris.csv.gz</code>)
+     *
+     * @param name
+     * @return
+     */
+    public String stripSuffix(String name) {
+        if (this != NONE && name.toLowerCase().endsWith(suffix)) {
+            return name.substring(0, name.length() - suffix.length());
+        }
+        return name;
+    }
+
+    /**
+     * Decompressing stream
+     *
+     * @param in compressed data
+     * @return
+     * @throws IOException
+     */
+    public InputStream decompress(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER);
+            case BZIP2:
+                //decompress concatenated streams produced e.g. by pbzip2
+                return new BZip2CompressorInputStream(in, true);
+            case XZ:
+                return new XZInputStream(in);
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * Open file for reading. Data are decompressed (and hashed) by a
+     * background thread, so that decompression overlaps with parsing.
+     *
+     * @param file
+     * @param fingerprint when not null, compressed bytes are hashed
+     * @return
+     * @throws IOException
+     */
+    public InputStream open(File file, Fingerprint fingerprint) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            if (fingerprint != null) {
+                in = new HashingInputStream(in, fingerprint);
+            }
+            in = decompress(new BufferedInputStream(in, BUFFER));
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new AsyncInputStream(in, BLOCK, QUEUE);
+    }
+
+}
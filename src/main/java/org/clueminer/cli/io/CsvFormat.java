@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.util.Arrays;
+import org.clueminer.cli.CliParams;
+import org.clueminer.cli.InvalidArgumentException;
+
+/**
+ * Column layout of a delimited text file (separator, skipped columns, ID and
+ * class column).
+ *
+ * @author deric
+ */
+public class CsvFormat {
+
+    private final char separator;
+    /**
+     * columns are separated by any run of whitespace
+     */
+    private final boolean whitespace;
+    private final int classIndex;
+    private final int idIndex;
+    private final int[] skip;
+    private final boolean header;
+
+    public CsvFormat(String separator, int classIndex, int idIndex, int[] skip, boolean header) {
+        if (separator == null || separator.isEmpty()) {
+            throw new InvalidArgumentException("missing column separator");
+        }
+        this.whitespace = " ".equals(separator) || "\\s".equals(separator) || "\\s+".equals(separator);
+        this.separator = separator.charAt(0);
+        this.classIndex = classIndex;
+        this.idIndex = idIndex;
+        this.skip = skip != null ? skip.clone() : new int[0];
+        Arrays.sort(this.skip);
+        this.header = header;
+    }
+
+    /**
+     * Format for given command line options. TXT files are never expected to
+     * contain a header.
+     *
+     * @param p
+     * @return
+     */
+    public static CsvFormat from(CliParams p) {
+        int[] skip;
+        if (p.skip != null && !p.skip.trim().isEmpty()) {
+            String[] idx = p.skip.split(",");
+            skip = new int[idx.length];
+            for (int i = 0; i < idx.length; i++) {
+                skip[i] = Integer.parseInt(idx[i].trim());
+            }
+        } else {
+            skip = new int[0];
+        }
+        boolean hasHeader = p.header && !"txt".equals(p.type);
+        return new CsvFormat(p.separator, p.clsIndex, p.idIndex, skip, hasHeader);
+    }
+
+    public boolean isSeparator(byte b) {
+        if (whitespace) {
+            return b == ' ' || b == '\t';
+        }
+        return b == separator;
+    }
+
+    public boolean isWhitespace() {
+        return whitespace;
+    }
+
+    public char getSeparator() {
+        return separator;
+    }
+
+    public int getClassIndex() {
+        return classIndex;
+    }
+
+    public int getIdIndex() {
+        return idIndex;
+    }
+
+    public boolean hasHeader() {
+        return header;
+    }
+
+    /**
+     * Whether column contains numeric attribute data
+     *
+     * @param col index of column in the file
+     * @return
+     */
+    public boolean isAttribute(int col) {
+        return col != classIndex && col != idIndex && Arrays.binarySearch(skip, col) < 0;
+    }
+
+    /**
+     * Maps file columns to attribute indexes
+     *
+     * @param numColumns number of columns in the file
+     * @return attribute index for each column, -1 for non-attribute columns
+     */
+    public int[] attributeMapping(int numColumns) {
+        int[] map = new int[numColumns];
+        int attr = 0;
+        for (int i = 0; i < numColumns; i++) {
+            map[i] = isAttribute(i) ? attr++ : -1;
+        }
+        return map;
+    }
+
+    /**
+     * A string uniquely identifying parser options
+     *
+     * @return
+     */
+    public String key() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(whitespace ? "ws" : String.valueOf((int) separator))
+                .append(";c").append(classIndex)
+                .append(";i").append(idIndex)
+                .append(";s").append(Arrays.toString(skip))
+                .append(";h").append(header ? 1 : 0);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "CsvFormat{" + key() + "}";
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.clueminer.io.csv.CSVWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Open buffered writers of CSV files. A file stays open between writes, its
+ * buffer is written out once it's full, at least every
+ * <code>flushInterval</code> milliseconds and when the JVM exits. When more
+ * than <code>maxOpen</code> files are open, the least recently used one is
+ * closed.
+ *
+ * @author deric
+ */
+public class CsvWriterPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CsvWriterPool.class);
+    public static final int BUFFER_SIZE = 1 << 16;
+    private static CsvWriterPool instance;
+
+    private final LinkedHashMap<String, Writer> writers;
+    private ScheduledExecutorService flusher;
+    private final long flushInterval;
+
+    /**
+     *
+     * @param maxOpen max. number of simultaneously open files
+     * @param flushInterval max. delay of writes in milliseconds (0 disables
+     * periodic flushes)
+     */
+    public CsvWriterPool(final int maxOpen, long flushInterval) {
+        this.flushInterval = flushInterval;
+        this.writers = new LinkedHashMap<String, Writer>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Writer> eldest) {
+                if (size() > maxOpen) {
+                    close(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Pool shared by all exporters, closed on JVM shutdown
+     *
+     * @return
+     */
+    public static synchronized CsvWriterPool getDefault() {
+        if (instance == null) {
+            instance = new CsvWriterPool(64, 1000);
+            Runtime.getRuntime().addShutdownHook(new Thread("csv-writers") {
+                @Override
+                public void run() {
+                    instance.closeAll();
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * Append a row
+     *
+     * @param file
+     * @param columns
+     * @param separator
+     * @param append when false the file is truncated first
+     * @throws IOException
+     */
+    public synchronized void writeNext(File file, String[] columns, char separator, boolean append) throws IOException {
+        new CSVWriter(writer(file, append), separator).writeNext(columns, false);
+    }
+
+    /**
+     * Append a preformatted line
+     *
+     * @param file
+     * @param line
+     * @param separator
+     * @param append when false the file is truncated first
+     * @throws IOException
+     */
+    public synchronized void writeLine(File file, StringBuilder line, char separator, boolean append) throws IOException {
+        new CSVWriter(writer(file, append), separator).writeLine(line);
+    }
+
+    private Writer writer(File file, boolean append) throws IOException {
+        String key = file.getAbsolutePath();
+        Writer w = writers.get(key);
+        if (w != null && !append) {
+            writers.remove(key);
+            close(key, w);
+            w = null;
+        }
+        if (w == null) {
+            w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append)), BUFFER_SIZE);
+            writers.put(key, w);
+            startFlusher();
+        }
+        return w;
+    }
+
+    private void startFlusher() {
+        if (flusher == null && flushInterval > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "csv-flush");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            flusher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write out buffers of all open files
+     */
+    public synchronized void flush() {
+        for (Map.Entry<String, Writer> e : writers.entrySet()) {
+            try {
+                e.getValue().flush();
+            } catch (IOException ex) {
+                LOG.warn("failed to write {}: {}", e.getKey(), ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Flush and close the file (if open), e.g. before it's deleted
+     *
+     * @param file
+     */
+    public synchronized void close(File file) {
+        String key = file.getAbsolutePath();
+        Writer w = writers.remove(key);
+        if (w != null) {
+            close(key, w);
+        }
+    }
+
+    /**
+     * Flush and close all files, the pool might be used afterwards
+     */
+    public synchronized void closeAll() {
+        Iterator<Map.Entry<String, Writer>> it = new ArrayList<>(writers.entrySet()).iterator();
+        writers.clear();
+        while (it.hasNext()) {
+            Map.Entry<String, Writer> e = it.next();
+            close(e.getKey(), e.getValue());
+        }
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+    }
+
+    public synchronized int openFiles() {
+        return writers.size();
+    }
+
+    private void close(String path, Writer w) {
+        try {
+            w.close();
+        } catch (IOException ex) {
+            LOG.warn("failed to close {}: {}", path, ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import org.clueminer.cli.data.MappedRowStore;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.dataset.impl.ArrayDataset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary snapshot of a parsed dataset.
+ *
+ * Layout (little endian):
+ * <pre>
+ * header  magic, version, rows, attributes, values offset, meta offset
+ * values  rows x attributes doubles (row-major)
+ * meta    dataset name, attribute names, instance names and class labels
+ * </pre> Values are stored right after the fixed-size header, so that they
+ * can be memory-mapped without any further parsing.
+ *
+ * @author deric
+ * @param <E>
+ */
+public class DatasetSnapshot<E extends Instance> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DatasetSnapshot.class);
+    private static final int MAGIC = 0x434c4d53; //CLMS
+    private static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    /**
+     * number of bytes mapped at once
+     */
+    private static final long SEGMENT = 1L << 30;
+
+    private final File file;
+    private int rows;
+    private int cols;
+    private long metaOffset;
+
+    public DatasetSnapshot(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Snapshot location for given input file hash and parser options
+     *
+     * @param dir cache directory
+     * @param hash fingerprint of the input file, see {@link Fingerprint#id(String, String)}
+     * @param options parser options
+     * @return
+     */
+    public static File location(File dir, String hash, String options) {
+        return new File(dir, hash.replace(':', '-') + "-" + digest(options) + ".bin");
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean exists() {
+        return file.exists() && file.length() >= HEADER_SIZE;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int attributeCount() {
+        return cols;
+    }
+
+    /**
+     * Write dataset into the snapshot file. Data are written into a temporary
+     * file first, so that a concurrent reader never sees a partial snapshot.
+     *
+     * @param dataset
+     * @throws IOException
+     */
+    public void write(Dataset<E> dataset) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("failed to create " + dir.getAbsolutePath());
+        }
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        rows = dataset.size();
+        cols = dataset.attributeCount();
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.position(HEADER_SIZE);
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < rows; i++) {
+                E inst = dataset.get(i);
+                for (int j = 0; j < cols; j++) {
+                    if (buf.remaining() < 8) {
+                        flush(ch, buf);
+                    }
+                    buf.putDouble(inst.get(j));
+                }
+            }
+            flush(ch, buf);
+            metaOffset = ch.position();
+
+            OutputStream os = Channels.newOutputStream(ch);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 1 << 16));
+            writeString(out, dataset.getName());
+            for (int j = 0; j < cols; j++) {
+                writeString(out, dataset.getAttribute(j).getName());
+            }
+            for (int i = 0; i < rows; i++) {
+                E inst = dataset.get(i);
+                writeString(out, inst.getName());
+                writeString(out, inst.classValue() != null ? inst.classValue().toString() : null);
+            }
+            out.flush();
+            writeHeader(ch, rows, cols, metaOffset);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("dataset snapshot written to {}", file.getAbsolutePath());
+    }
+
+    /**
+     * Whether the file starts with snapshot header
+     *
+     * @param file
+     * @return
+     */
+    public static boolean isSnapshot(File file) {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && ch.read(buf) > 0) {
+                //read magic
+            }
+            return !buf.hasRemaining() && buf.getInt(0) == MAGIC;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Read header of the snapshot
+     *
+     * @throws IOException when file is not a valid snapshot
+     */
+    public void open() throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && ch.read(buf) > 0) {
+                //read whole header
+            }
+            buf.flip();
+            if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) {
+                throw new IOException("not a dataset snapshot: " + file.getAbsolutePath());
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            rows = buf.getInt();
+            cols = buf.getInt();
+            buf.getLong(); //values offset
+            metaOffset = buf.getLong();
+        }
+    }
+
+    /**
+     * Memory-map values of given rows
+     *
+     * @param ch
+     * @param from first row
+     * @param to last row (exclusive)
+     * @return
+     * @throws IOException
+     */
+    public DoubleBuffer mapRows(FileChannel ch, int from, int to) throws IOException {
+        long rowBytes = 8L * cols;
+        ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + from * rowBytes, (to - from) * rowBytes);
+        return buf.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+
+    /**
+     * Number of rows which fit into a single mapping
+     *
+     * @return
+     */
+    public int rowsPerSegment() {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, SEGMENT / Math.max(8L * cols, 1)));
+    }
+
+    /**
+     * Load whole snapshot into memory
+     *
+     * @return
+     * @throws IOException
+     */
+    public Dataset<E> read() throws IOException {
+        open();
+        Dataset<E> dataset = new ArrayDataset<>(rows, cols);
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ch.position(metaOffset);
+            InputStream is = Channels.newInputStream(ch);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(is, 1 << 16));
+            dataset.setName(readString(in));
+            for (int j = 0; j < cols; j++) {
+                dataset.attributeBuilder().create(readString(in), "NUMERIC");
+            }
+            String name, cls;
+            for (int i = 0; i < rows; i++) {
+                E inst = dataset.instance(i);
+                name = readString(in);
+                if (name != null) {
+                    inst.setName(name);
+                }
+                cls = readString(in);
+                if (cls != null) {
+                    inst.setClassValue(cls);
+                }
+            }
+
+            int step = rowsPerSegment();
+            for (int from = 0; from < rows; from += step) {
+                int to = (int) Math.min(rows, (long) from + step);
+                DoubleBuffer values = mapRows(ch, from, to);
+                for (int i = from; i < to; i++) {
+                    E inst = dataset.get(i);
+                    for (int j = 0; j < cols; j++) {
+                        inst.set(j, values.get());
+                    }
+                }
+            }
+        }
+        LOG.info("loaded dataset snapshot {}", file.getAbsolutePath());
+        return dataset;
+    }
+
+    /**
+     * Load only selected rows, e.g. a sample of a dataset which doesn't fit
+     * into memory
+     *
+     * @param select indexes of rows in ascending order
+     * @return
+     * @throws IOException
+     */
+    public Dataset<E> read(int[] select) throws IOException {
+        open();
+        Dataset<E> dataset = new ArrayDataset<>(select.length, cols);
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ch.position(metaOffset);
+            InputStream is = Channels.newInputStream(ch);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(is, 1 << 16));
+            dataset.setName(readString(in));
+            for (int j = 0; j < cols; j++) {
+                dataset.attributeBuilder().create(readString(in), "NUMERIC");
+            }
+            MappedRowStore values = rowStore();
+            double[] row = new double[cols];
+            String name, cls;
+            int k = 0;
+            for (int i = 0; i < rows && k < select.length; i++) {
+                name = readString(in);
+                cls = readString(in);
+                if (select[k] != i) {
+                    continue;
+                }
+                E inst = dataset.instance(k++);
+                if (name != null) {
+                    inst.setName(name);
+                }
+                if (cls != null) {
+                    inst.setClassValue(cls);
+                }
+                values.row(i, row);
+                for (int j = 0; j < cols; j++) {
+                    inst.set(j, row[j]);
+                }
+            }
+        }
+        return dataset;
+    }
+
+    /**
+     * Memory-map values of all rows. Mapped data are not loaded on heap.
+     *
+     * @return
+     * @throws IOException
+     */
+    public MappedRowStore rowStore() throws IOException {
+        open();
+        int step = rowsPerSegment();
+        DoubleBuffer[] segments = new DoubleBuffer[(int) ((rows + (long) step - 1) / step)];
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            for (int i = 0; i < segments.length; i++) {
+                int from = i * step;
+                segments[i] = mapRows(ch, from, (int) Math.min(rows, (long) from + step));
+            }
+        }
+        return new MappedRowStore(segments, step, rows, cols);
+    }
+
+    private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Write header at the beginning of the file
+     *
+     * @param ch
+     * @param rows
+     * @param cols
+     * @param metaOffset
+     * @throws IOException
+     */
+    static void writeHeader(FileChannel ch, int rows, int cols, long metaOffset) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols)
+                .putLong(HEADER_SIZE).putLong(metaOffset);
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf, buf.position());
+        }
+    }
+
+    static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static String digest(String str) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] hash = md.digest(str.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 4; i++) {
+                sb.append(String.format("%02x", hash[i]));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Writes snapshot of a stream of rows, whole dataset is never kept in
+     * memory. Values are written directly into the snapshot, meta data into a
+     * temporary file which is appended at the end.
+     */
+    public static class Writer implements StreamingLoader.Sink, Closeable {
+
+        private final File values;
+        private final File meta;
+        private final FileChannel ch;
+        private final ByteBuffer buf;
+        private DataOutputStream out;
+        private int rows;
+        private int cols;
+
+        /**
+         *
+         * @param dir directory for temporary files
+         * @throws IOException
+         */
+        public Writer(File dir) throws IOException {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("failed to create " + dir.getAbsolutePath());
+            }
+            values = File.createTempFile("snapshot", ".tmp", dir);
+            meta = File.createTempFile("snapshot", ".meta", dir);
+            ch = FileChannel.open(values.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ch.position(HEADER_SIZE);
+            buf = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        @Override
+        public void begin(String name, List<String> attributes) throws IOException {
+            cols = attributes.size();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(meta), 1 << 16));
+            writeString(out, name);
+            for (String attr : attributes) {
+                writeString(out, attr);
+            }
+        }
+
+        @Override
+        public void append(RowBlock block) throws IOException {
+            for (int i = 0; i < block.size(); i++) {
+                for (int j = 0; j < cols; j++) {
+                    if (buf.remaining() < 8) {
+                        flush(ch, buf);
+                    }
+                    buf.putDouble(block.get(i, j));
+                }
+                writeString(out, block.name(i));
+                writeString(out, block.classValue(i));
+            }
+            rows += block.size();
+        }
+
+        /**
+         * Finish the snapshot and move it to its final location
+         *
+         * @param target
+         * @return
+         * @throws IOException
+         */
+        public File commit(File target) throws IOException {
+            flush(ch, buf);
+            long metaOffset = ch.position();
+            out.close();
+            try (FileChannel in = FileChannel.open(meta.toPath(), StandardOpenOption.READ)) {
+                long size = in.size();
+                long pos = 0;
+                while (pos < size) {
+                    pos += in.transferTo(pos, size - pos, ch);
+                }
+            }
+            writeHeader(ch, rows, cols, metaOffset);
+            ch.close();
+            Files.move(values.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            meta.delete();
+            LOG.info("dataset snapshot written to {}", target.getAbsolutePath());
+            return target;
+        }
+
+        /**
+         * Discard temporary files (no-op after commit)
+         */
+        @Override
+        public void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+            ch.close();
+            values.delete();
+            meta.delete();
+        }
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses decimal numbers directly from bytes without creating intermediate
+ * strings.
+ *
+ * Numbers with at most 15 significant digits and a small exponent are computed
+ * as a single correctly rounded IEEE operation, which gives exactly the same
+ * result as {@link Double#parseDouble(java.lang.String)}. Anything else falls
+ * back to the JDK parser.
+ *
+ * @author deric
+ */
+public final class FastDoubleParser {
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT = 1L << 53;
+
+    private FastDoubleParser() {
+    }
+
+    /**
+     * Parse a number from bytes <code>[from, to)</code>. Leading and trailing
+     * whitespace must be already trimmed.
+     *
+     * @param buf
+     * @param from first byte (inclusive)
+     * @param to last byte (exclusive)
+     * @return parsed value, NaN for empty string or '?' (missing value)
+     * @throws NumberFormatException when the value is not a number
+     */
+    public static double parse(ByteBuffer buf, int from, int to) {
+        if (from >= to || (to - from == 1 && buf.get(from) == '?')) {
+            return Double.NaN;
+        }
+        int i = from;
+        boolean negative = false;
+        byte b = buf.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exp10 = 0;
+        boolean any = false;
+        while (i < to && (b = buf.get(i)) >= '0' && b <= '9') {
+            if (mantissa > 0 || b != '0') {
+                digits++;
+            }
+            mantissa = mantissa * 10 + (b - '0');
+            any = true;
+            i++;
+            if (digits > 15) {
+                return slow(buf, from, to);
+            }
+        }
+        if (i < to && buf.get(i) == '.') {
+            i++;
+            while (i < to && (b = buf.get(i)) >= '0' && b <= '9') {
+                if (mantissa > 0 || b != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                exp10--;
+                any = true;
+                i++;
+                if (digits > 15) {
+                    return slow(buf, from, to);
+                }
+            }
+        }
+        if (!any) {
+            return slow(buf, from, to);
+        }
+        if (i < to && ((b = buf.get(i)) == 'e' || b == 'E')) {
+            i++;
+            boolean negExp = false;
+            if (i < to && ((b = buf.get(i)) == '-' || b == '+')) {
+                negExp = b == '-';
+                i++;
+            }
+            int exp = 0;
+            int expDigits = 0;
+            while (i < to && (b = buf.get(i)) >= '0' && b <= '9') {
+                exp = exp * 10 + (b - '0');
+                expDigits++;
+                i++;
+                if (expDigits > 4) {
+                    return slow(buf, from, to);
+                }
+            }
+            if (expDigits == 0) {
+                return slow(buf, from, to);
+            }
+            exp10 += negExp ? -exp : exp;
+        }
+        if (i != to) {
+            //trailing garbage, e.g. 'f' suffix - let the JDK decide
+            return slow(buf, from, to);
+        }
+        if (mantissa >= MAX_EXACT || exp10 < -22 || exp10 > 22) {
+            return slow(buf, from, to);
+        }
+        double value = mantissa;
+        if (exp10 < 0) {
+            value /= POW10[-exp10];
+        } else if (exp10 > 0) {
+            value *= POW10[exp10];
+        }
+        return negative ? -value : value;
+    }
+
+    private static double slow(ByteBuffer buf, int from, int to) {
+        return Double.parseDouble(text(buf, from, to));
+    }
+
+    /**
+     * Decode bytes into a string (values are expected to be ASCII or UTF-8)
+     *
+     * @param buf
+     * @param from
+     * @param to
+     * @return
+     */
+    public static String text(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import org.clueminer.cli.InvalidArgumentException;
+
+/**
+ * Incremental hash of an input file. Data are expected to be passed in the
+ * same order as they are stored in the file.
+ *
+ * @author deric
+ */
+public abstract class Fingerprint {
+
+    public static final String SHA1 = "sha1";
+    public static final String XXH64 = "xxh64";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Create hash function
+     *
+     * @param algorithm "sha1" or "xxh64"
+     * @return
+     */
+    public static Fingerprint create(String algorithm) {
+        switch (algorithm.toLowerCase()) {
+            case SHA1:
+            case "sha-1":
+                return new Sha1Fingerprint();
+            case XXH64:
+            case "xxhash64":
+                return new XxHash64();
+            default:
+                throw new InvalidArgumentException("unknown hash function '" + algorithm + "', use sha1 or xxh64");
+        }
+    }
+
+    /**
+     * Digest prefixed by name of the hash function, e.g.
+     * <code>xxh64:0123456789abcdef</code>
+     *
+     * @param algorithm
+     * @param digest hex representation of the hash
+     * @return null when digest is null
+     */
+    public static String id(String algorithm, String digest) {
+        if (digest == null) {
+            return null;
+        }
+        return create(algorithm).getName() + ":" + digest;
+    }
+
+    /**
+     * Name of hash function
+     *
+     * @return
+     */
+    public abstract String getName();
+
+    /**
+     * Process remaining bytes of the buffer. Position of the buffer is not
+     * modified.
+     *
+     * @param buf
+     */
+    public abstract void update(ByteBuffer buf);
+
+    /**
+     * Finish computation
+     *
+     * @return hex representation of the hash
+     */
+    public abstract String digest();
+
+    /**
+     * Hash whole file
+     *
+     * @param file
+     * @return hex representation of the hash
+     * @throws IOException
+     */
+    public String hash(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (ch.read(buf) > 0 || buf.position() > 0) {
+                buf.flip();
+                update(buf);
+                buf.clear();
+            }
+        }
+        return digest();
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers hashes of input files. A hash is reused as long as size and
+ * modification time of the file are unchanged.
+ *
+ * @author deric
+ */
+public class FingerprintCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FingerprintCache.class);
+    private static final String FILE_NAME = "fingerprints.properties";
+    private final File file;
+    private final Properties props = new Properties();
+
+    public FingerprintCache(File dir) {
+        this.file = new File(dir, FILE_NAME);
+        load();
+    }
+
+    /**
+     * Cached hash of the file
+     *
+     * @param f
+     * @param algorithm
+     * @return null when file is not known or it was modified
+     */
+    public synchronized String get(File f, String algorithm) {
+        String val = props.getProperty(key(f, algorithm));
+        if (val == null) {
+            return null;
+        }
+        String[] parts = val.split(":");
+        if (parts.length != 3 || !parts[0].equals(String.valueOf(f.length()))
+                || !parts[1].equals(String.valueOf(f.lastModified()))) {
+            return null;
+        }
+        return parts[2];
+    }
+
+    public synchronized void put(File f, String algorithm, String hash) {
+        //other processes might have updated the cache meanwhile
+        load();
+        props.setProperty(key(f, algorithm), f.length() + ":" + f.lastModified() + ":" + hash);
+        try {
+            File tmp = File.createTempFile(FILE_NAME, ".tmp", file.getParentFile());
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                props.store(out, "size:mtime:hash");
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOG.warn("failed to update {}: {}", file.getAbsolutePath(), ex.getMessage());
+        }
+    }
+
+    private void load() {
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                props.load(in);
+            } catch (IOException ex) {
+                LOG.warn("failed to read {}: {}", file.getAbsolutePath(), ex.getMessage());
+            }
+        }
+    }
+
+    private String key(File f, String algorithm) {
+        return algorithm + "|" + f.getAbsolutePath();
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.util.Arrays;
+import java.util.List;
+import org.clueminer.cli.data.FloatRowStore;
+
+/**
+ * Collects streamed rows in single precision.
+ *
+ * @author deric
+ */
+public class FloatStoreSink extends RowStoreSink<FloatRowStore> {
+
+    private float[] values = new float[0];
+
+    @Override
+    public void begin(String name, List<String> attributes) {
+        super.begin(name, attributes);
+        this.values = new float[FloatRowStore.capacity(1024, d)];
+    }
+
+    @Override
+    protected void ensureCapacity(long capacity) {
+        int required = FloatRowStore.capacity(capacity, d);
+        if (required > values.length) {
+            long cap = Math.max(required, Math.min(Integer.MAX_VALUE - 8, 2L * values.length));
+            values = Arrays.copyOf(values, (int) cap);
+        }
+    }
+
+    @Override
+    protected void put(int row, int col, double value) {
+        values[row * d + col] = (float) value;
+    }
+
+    @Override
+    protected FloatRowStore createStore() {
+        return new FloatRowStore(name, attributes, values, rows);
+    }
+
+}
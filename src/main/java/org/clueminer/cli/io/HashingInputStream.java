@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Updates fingerprint with every byte read from the underlying stream.
+ *
+ * @author deric
+ */
+public class HashingInputStream extends FilterInputStream {
+
+    private final Fingerprint fingerprint;
+
+    public HashingInputStream(InputStream in, Fingerprint fingerprint) {
+        super(in);
+        this.fingerprint = fingerprint;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            fingerprint.update(ByteBuffer.wrap(new byte[]{(byte) b}));
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            fingerprint.update(ByteBuffer.wrap(b, off, read));
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        //skipped bytes must be hashed as well
+        byte[] buf = new byte[(int) Math.min(n, 8192)];
+        long total = 0;
+        while (total < n) {
+            int read = read(buf, 0, (int) Math.min(buf.length, n - total));
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+}
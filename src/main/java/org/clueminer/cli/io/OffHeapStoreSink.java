@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.clueminer.cli.data.OffHeapRowStore;
+
+/**
+ * Collects streamed rows in direct buffers, new segments are allocated as
+ * rows arrive.
+ *
+ * @author deric
+ */
+public class OffHeapStoreSink extends RowStoreSink<OffHeapRowStore> {
+
+    private final OffHeapRowStore.Layout layout;
+    private final List<DoubleBuffer> segments = new ArrayList<>();
+    private int rowsPerSegment;
+    private int lastRows = 0;
+
+    public OffHeapStoreSink(OffHeapRowStore.Layout layout) {
+        this.layout = layout;
+    }
+
+    @Override
+    public void begin(String name, List<String> attributes) {
+        super.begin(name, attributes);
+        this.rowsPerSegment = OffHeapRowStore.rowsPerSegment(d);
+    }
+
+    @Override
+    protected void ensureCapacity(long capacity) {
+        while ((long) (segments.size() - 1) * rowsPerSegment + lastRows < capacity) {
+            int last = segments.size() - 1;
+            if (last >= 0 && lastRows < rowsPerSegment) {
+                //small inputs shouldn't allocate whole segment
+                int grown = (int) Math.min(rowsPerSegment, 2L * lastRows);
+                segments.set(last, copy(segments.get(last), lastRows, grown));
+                lastRows = grown;
+            } else {
+                lastRows = Math.min(rowsPerSegment, 1024);
+                segments.add(OffHeapRowStore.allocateSegment(lastRows, d));
+            }
+        }
+    }
+
+    private DoubleBuffer copy(DoubleBuffer seg, int rows, int capacity) {
+        DoubleBuffer target = OffHeapRowStore.allocateSegment(capacity, d);
+        DoubleBuffer src = seg.duplicate();
+        if (layout == OffHeapRowStore.Layout.ROW) {
+            src.limit(rows * d);
+            target.put(src);
+        } else {
+            for (int j = 0; j < d; j++) {
+                src.limit(j * rows + rows);
+                src.position(j * rows);
+                target.position(j * capacity);
+                target.put(src);
+            }
+        }
+        target.clear();
+        return target;
+    }
+
+    @Override
+    protected void put(int row, int col, double value) {
+        int s = row / rowsPerSegment;
+        int local = row - s * rowsPerSegment;
+        DoubleBuffer seg = segments.get(s);
+        int pos = layout == OffHeapRowStore.Layout.ROW ? local * d + col : col * (seg.capacity() / d) + local;
+        seg.put(pos, value);
+    }
+
+    @Override
+    protected OffHeapRowStore createStore() {
+        return new OffHeapRowStore(name, attributes, segments.toArray(new DoubleBuffer[segments.size()]),
+                rowsPerSegment, rows, layout);
+    }
+
+}
@@ -0,0 +1,710 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.cli.data.SparseDataset;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.exception.ParserError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Multi-threaded ARFF parser. The header is parsed sequentially, the data
+ * section is split into chunks which are parsed in parallel.
+ *
+ * Both dense and sparse (<code>{index value, ...}</code>) rows are supported.
+ * Sparse files can be loaded into {@link SparseDataset} which stores only
+ * non-zero values.
+ *
+ * Nominal attributes (except the class) are encoded as index of the value,
+ * string and date attributes are ignored.
+ *
+ * @author deric
+ * @param <E>
+ */
+public class ParallelArffLoader<E extends Instance> extends ChunkedLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelArffLoader.class);
+    private static final byte NUMERIC = 0;
+    private static final byte NOMINAL = 1;
+    private static final byte OTHER = 2;
+
+    private final int classIndex;
+    private String relation;
+    private final List<String> columns = new ArrayList<>();
+    private final List<Byte> types = new ArrayList<>();
+    private final Map<Integer, Map<String, Integer>> nominal = new HashMap<>();
+    private final Map<Integer, String> firstValue = new HashMap<>();
+    private int clsCol = -1;
+    private int[] mapping;
+    private byte[] colTypes;
+
+    /**
+     *
+     * @param classIndex index of class attribute, when negative attribute
+     * called 'class' or last nominal attribute is used
+     * @param threads
+     */
+    public ParallelArffLoader(int classIndex, int threads) {
+        super(threads);
+        this.classIndex = classIndex;
+    }
+
+    @Override
+    protected boolean isSeparator(byte b) {
+        return b == ',';
+    }
+
+    @Override
+    protected boolean isQuote(byte b) {
+        return b == '"' || b == '\'';
+    }
+
+    @Override
+    protected byte commentChar() {
+        return '%';
+    }
+
+    /**
+     * Check whether data section contains sparse rows (only first data row is
+     * inspected)
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    public boolean isSparse(File file) throws IOException, ParserError {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long dataStart = readHeader(ch);
+            long size = ch.size();
+            long pos = dataStart;
+            while (pos < size) {
+                long next = nextLineStart(ch, pos, size);
+                ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(next - pos, 1 << 16));
+                if (isDataLine(buf, 0, buf.limit())) {
+                    return firstChar(buf, 0, buf.limit()) == '{';
+                }
+                pos = next;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Load file into a dense dataset
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    public Dataset<E> load(File file) throws IOException, ParserError {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long dataStart = readHeader(ch);
+            final long[] bounds = chunkBounds(ch, dataStart, ch.size());
+            final MappedByteBuffer[] chunks = map(ch, bounds);
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize(chunks.length));
+            try {
+                Future<?> hashing = startHashing(pool, ch, dataStart, chunks);
+                int[] offsets = rowOffsets(pool, chunks);
+                int rows = offsets[chunks.length];
+                LOG.info("found {} rows with {} attributes", rows, attributes.size());
+                final Dataset<E> dataset = createDataset(datasetName(baseName(file)), rows, attributes);
+
+                List<Future<Integer>> parsed = new ArrayList<>(chunks.length);
+                for (int i = 0; i < chunks.length; i++) {
+                    final MappedByteBuffer chunk = chunks[i];
+                    final int offset = offsets[i];
+                    final long pos = bounds[i];
+                    parsed.add(pool.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws ParserError {
+                            return parseDense(chunk, pos, dataset, offset);
+                        }
+                    }));
+                }
+                for (Future<Integer> f : parsed) {
+                    get(f);
+                }
+                if (hashing != null) {
+                    get(hashing);
+                }
+                return dataset;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Load file into compressed sparse rows. Each chunk is parsed into its own
+     * arrays which are concatenated at the end.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    public SparseDataset loadSparse(File file) throws IOException, ParserError {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long dataStart = readHeader(ch);
+            final long[] bounds = chunkBounds(ch, dataStart, ch.size());
+            final MappedByteBuffer[] chunks = map(ch, bounds);
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize(chunks.length));
+            try {
+                Future<?> hashing = startHashing(pool, ch, dataStart, chunks);
+                int[] offsets = rowOffsets(pool, chunks);
+                int rows = offsets[chunks.length];
+                final String[] classes = new String[rows];
+
+                List<Future<SparseChunk>> parsed = new ArrayList<>(chunks.length);
+                for (int i = 0; i < chunks.length; i++) {
+                    final MappedByteBuffer chunk = chunks[i];
+                    final int offset = offsets[i];
+                    final int count = offsets[i + 1] - offsets[i];
+                    final long pos = bounds[i];
+                    parsed.add(pool.submit(new Callable<SparseChunk>() {
+                        @Override
+                        public SparseChunk call() throws ParserError {
+                            return parseSparse(chunk, pos, count, classes, offset);
+                        }
+                    }));
+                }
+                //concatenate chunks
+                int[] rowPtr = new int[rows + 1];
+                long nnz = 0;
+                SparseChunk[] parts = new SparseChunk[chunks.length];
+                int[] start = new int[chunks.length];
+                for (int i = 0; i < chunks.length; i++) {
+                    parts[i] = get(parsed.get(i));
+                    start[i] = (int) nnz;
+                    int row = offsets[i];
+                    for (int r = 0; r < parts[i].rows; r++) {
+                        nnz += parts[i].rowNnz[r];
+                        if (nnz > Integer.MAX_VALUE) {
+                            throw new ParserError("too many non-zero values");
+                        }
+                        rowPtr[row + r + 1] = (int) nnz;
+                    }
+                }
+                final int[] cols = new int[(int) nnz];
+                final double[] vals = new double[(int) nnz];
+                List<Future<Integer>> copies = new ArrayList<>(chunks.length);
+                for (int i = 0; i < chunks.length; i++) {
+                    final SparseChunk part = parts[i];
+                    final int dest = start[i];
+                    copies.add(pool.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() {
+                            System.arraycopy(part.cols, 0, cols, dest, part.size);
+                            System.arraycopy(part.vals, 0, vals, dest, part.size);
+                            return part.size;
+                        }
+                    }));
+                }
+                for (Future<Integer> f : copies) {
+                    get(f);
+                }
+                if (hashing != null) {
+                    get(hashing);
+                }
+                SparseDataset dataset = new SparseDataset(datasetName(baseName(file)), attributes, rowPtr, cols, vals);
+                for (int i = 0; i < rows; i++) {
+                    dataset.setClassValue(i, classes[i]);
+                }
+                LOG.info("found {} rows with {} attributes, density {}", rows, attributes.size(),
+                        String.format("%.4f", dataset.density()));
+                return dataset;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    protected String datasetName(String fallback) {
+        return relation != null ? relation : fallback;
+    }
+
+    /**
+     * Parse header section (everything before <code>@data</code>)
+     *
+     * @param buf
+     * @param complete
+     * @return
+     * @throws ParserError
+     */
+    @Override
+    protected int parseHeader(ByteBuffer buf, boolean complete) throws ParserError {
+        relation = null;
+        columns.clear();
+        types.clear();
+        nominal.clear();
+        firstValue.clear();
+        clsCol = -1;
+        int end = buf.limit();
+        int start = 0;
+        while (start < end) {
+            int lineEnd = lineEnd(buf, start, end);
+            if (lineEnd >= end && !complete) {
+                return -1;
+            }
+            if (isDataLine(buf, start, lineEnd)) {
+                String line = FastDoubleParser.text(buf, start, trimEol(buf, start, lineEnd)).trim();
+                String lower = line.toLowerCase();
+                if (lower.startsWith("@relation")) {
+                    relation = unquote(line.substring(9).trim());
+                } else if (lower.startsWith("@attribute")) {
+                    parseAttribute(line.substring(10).trim());
+                } else if (lower.startsWith("@data")) {
+                    resolveAttributes();
+                    return Math.min(lineEnd + 1, end);
+                } else {
+                    throw new ParserError("unexpected line in ARFF header: " + line);
+                }
+            }
+            start = lineEnd + 1;
+        }
+        if (complete) {
+            throw new ParserError("missing @data section");
+        }
+        return -1;
+    }
+
+    @Override
+    protected void parseRows(ByteBuffer buf, long pos, RowBlock out) throws ParserError {
+        int end = buf.limit();
+        int lineStart = 0;
+        int numAttr = attributes.size();
+        int[] idx = new int[numAttr];
+        double[] val = new double[numAttr];
+        double[] values = new double[numAttr];
+        String[] cls = new String[1];
+        int[] range = new int[2];
+        while (lineStart < end) {
+            int lineEnd = lineEnd(buf, lineStart, end);
+            if (isDataLine(buf, lineStart, lineEnd)) {
+                int nnz = parseRow(buf, pos, lineStart, lineEnd, idx, val, cls, range);
+                Arrays.fill(values, 0.0);
+                for (int k = 0; k < nnz; k++) {
+                    values[idx[k]] = val[k];
+                }
+                out.add(values, null, cls[0]);
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private void parseAttribute(String def) throws ParserError {
+        String name;
+        String type;
+        char first = def.isEmpty() ? ' ' : def.charAt(0);
+        if (first == '\'' || first == '"') {
+            int close = def.indexOf(first, 1);
+            if (close < 0) {
+                throw new ParserError("unterminated attribute name: " + def);
+            }
+            name = def.substring(1, close);
+            type = def.substring(close + 1).trim();
+        } else {
+            int i = 0;
+            while (i < def.length() && !Character.isWhitespace(def.charAt(i)) && def.charAt(i) != '{') {
+                i++;
+            }
+            name = def.substring(0, i);
+            type = def.substring(i).trim();
+        }
+        int col = columns.size();
+        columns.add(name);
+        if (type.startsWith("{")) {
+            int close = type.lastIndexOf('}');
+            if (close < 0) {
+                throw new ParserError("unterminated nominal attribute: " + def);
+            }
+            Map<String, Integer> values = new HashMap<>();
+            for (String value : splitValues(type.substring(1, close))) {
+                if (values.isEmpty()) {
+                    firstValue.put(col, value);
+                }
+                values.put(value, values.size());
+            }
+            nominal.put(col, values);
+            types.add(NOMINAL);
+        } else {
+            String t = type.toLowerCase();
+            if (t.startsWith("numeric") || t.startsWith("real") || t.startsWith("integer")) {
+                types.add(NUMERIC);
+            } else if (t.startsWith("string") || t.startsWith("date")) {
+                types.add(OTHER);
+            } else {
+                throw new ParserError("unsupported attribute type: " + def);
+            }
+        }
+    }
+
+    private void resolveAttributes() {
+        int n = columns.size();
+        if (classIndex >= 0 && classIndex < n) {
+            clsCol = classIndex;
+        } else {
+            for (int i = 0; i < n; i++) {
+                if ("class".equalsIgnoreCase(columns.get(i))) {
+                    clsCol = i;
+                }
+            }
+            if (clsCol < 0) {
+                for (int i = n - 1; i >= 0; i--) {
+                    if (types.get(i) == NOMINAL) {
+                        clsCol = i;
+                        break;
+                    }
+                }
+            }
+        }
+        colTypes = new byte[n];
+        mapping = new int[n];
+        attributes = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            colTypes[i] = types.get(i);
+            if (i != clsCol && colTypes[i] != OTHER) {
+                mapping[i] = attributes.size();
+                attributes.add(columns.get(i));
+            } else {
+                mapping[i] = -1;
+            }
+        }
+    }
+
+    private static List<String> splitValues(String str) {
+        List<String> res = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    sb.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ',') {
+                res.add(sb.toString().trim());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        if (sb.length() > 0 || !res.isEmpty()) {
+            res.add(sb.toString().trim());
+        }
+        return res;
+    }
+
+    private static String unquote(String str) {
+        if (str.length() > 1) {
+            char c = str.charAt(0);
+            if ((c == '\'' || c == '"') && str.charAt(str.length() - 1) == c) {
+                return str.substring(1, str.length() - 1);
+            }
+        }
+        return str;
+    }
+
+    /**
+     * Parse chunk into preallocated dense instances
+     *
+     * @param buf
+     * @param pos
+     * @param dataset
+     * @param offset
+     * @return
+     * @throws ParserError
+     */
+    protected int parseDense(ByteBuffer buf, long pos, Dataset<E> dataset, int offset) throws ParserError {
+        int end = buf.limit();
+        int lineStart = 0;
+        int row = offset;
+        int numAttr = attributes.size();
+        int[] idx = new int[numAttr];
+        double[] val = new double[numAttr];
+        String[] cls = new String[1];
+        int[] range = new int[2];
+        while (lineStart < end) {
+            int lineEnd = lineEnd(buf, lineStart, end);
+            if (isDataLine(buf, lineStart, lineEnd)) {
+                int nnz = parseRow(buf, pos, lineStart, lineEnd, idx, val, cls, range);
+                E inst = dataset.get(row);
+                for (int k = 0; k < nnz; k++) {
+                    inst.set(idx[k], val[k]);
+                }
+                if (cls[0] != null) {
+                    inst.setClassValue(cls[0]);
+                }
+                row++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return row - offset;
+    }
+
+    /**
+     * Parse chunk into local sparse arrays
+     *
+     * @param buf
+     * @param pos
+     * @param rows number of rows in the chunk
+     * @param classes output class labels
+     * @param offset index of first row
+     * @return
+     * @throws ParserError
+     */
+    protected SparseChunk parseSparse(ByteBuffer buf, long pos, int rows, String[] classes, int offset) throws ParserError {
+        int end = buf.limit();
+        int lineStart = 0;
+        int numAttr = attributes.size();
+        int[] idx = new int[numAttr];
+        double[] val = new double[numAttr];
+        String[] cls = new String[1];
+        int[] range = new int[2];
+        SparseChunk res = new SparseChunk(rows);
+        while (lineStart < end) {
+            int lineEnd = lineEnd(buf, lineStart, end);
+            if (isDataLine(buf, lineStart, lineEnd)) {
+                int nnz = parseRow(buf, pos, lineStart, lineEnd, idx, val, cls, range);
+                classes[offset + res.rows] = cls[0];
+                res.add(idx, val, nnz);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return res;
+    }
+
+    /**
+     * Parse a single row (either dense or sparse) into list of (attribute,
+     * value) pairs sorted by attribute index
+     *
+     * @return number of pairs
+     */
+    private int parseRow(ByteBuffer buf, long pos, int start, int end, int[] idx, double[] val, String[] cls, int[] range) throws ParserError {
+        end = trimEol(buf, start, end);
+        cls[0] = null;
+        try {
+            if (firstChar(buf, start, end) == '{') {
+                return parseSparseRow(buf, start, end, idx, val, cls, range);
+            }
+            return parseDenseRow(buf, start, end, idx, val, cls, range);
+        } catch (NumberFormatException e) {
+            throw new ParserError("invalid value at byte " + (pos + start) + ": " + e.getMessage());
+        }
+    }
+
+    private int parseDenseRow(ByteBuffer buf, int start, int end, int[] idx, double[] val, String[] cls, int[] range) {
+        int col = 0;
+        int n = 0;
+        int i = start;
+        while (i <= end && col < mapping.length) {
+            i = nextField(buf, i, end, range);
+            if (i < 0) {
+                break;
+            }
+            if (mapping[col] >= 0) {
+                idx[n] = mapping[col];
+                val[n++] = value(buf, col, range[0], range[1]);
+            } else if (col == clsCol) {
+                cls[0] = label(buf, range[0], range[1]);
+            }
+            col++;
+        }
+        //missing trailing columns
+        for (; col < mapping.length; col++) {
+            if (mapping[col] >= 0) {
+                idx[n] = mapping[col];
+                val[n++] = Double.NaN;
+            }
+        }
+        return n;
+    }
+
+    private int parseSparseRow(ByteBuffer buf, int start, int end, int[] idx, double[] val, String[] cls, int[] range) {
+        int i = start;
+        while (buf.get(i) != '{') {
+            i++;
+        }
+        i++;
+        int close = end;
+        while (close > i && buf.get(close - 1) != '}') {
+            close--;
+        }
+        if (close > i) {
+            close--;
+        }
+        int n = 0;
+        boolean sorted = true;
+        boolean hasClass = false;
+        while (i <= close) {
+            i = nextField(buf, i, close, range);
+            if (i < 0 || range[0] >= range[1]) {
+                break;
+            }
+            //index and value are separated by whitespace
+            int k = range[0];
+            int col = 0;
+            byte b;
+            while (k < range[1] && (b = buf.get(k)) >= '0' && b <= '9') {
+                col = col * 10 + (b - '0');
+                k++;
+            }
+            if (k == range[0] || col >= mapping.length) {
+                throw new NumberFormatException("invalid sparse index '"
+                        + FastDoubleParser.text(buf, range[0], range[1]) + "'");
+            }
+            while (k < range[1] && isBlank(buf.get(k))) {
+                k++;
+            }
+            int from = k;
+            int to = range[1];
+            if (to - from >= 2 && isQuote(buf.get(from)) && buf.get(to - 1) == buf.get(from)) {
+                from++;
+                to--;
+            }
+            if (mapping[col] >= 0) {
+                double v = value(buf, col, from, to);
+                if (v != 0.0) {
+                    if (n > 0 && idx[n - 1] >= mapping[col]) {
+                        sorted = false;
+                    }
+                    idx[n] = mapping[col];
+                    val[n++] = v;
+                }
+            } else if (col == clsCol) {
+                cls[0] = label(buf, from, to);
+                hasClass = true;
+            }
+        }
+        if (!hasClass && clsCol >= 0) {
+            //omitted value is the first nominal value (or zero)
+            cls[0] = firstValue.containsKey(clsCol) ? firstValue.get(clsCol) : "0";
+        }
+        if (!sorted) {
+            sort(idx, val, n);
+        }
+        return n;
+    }
+
+    private double value(ByteBuffer buf, int col, int from, int to) {
+        if (colTypes[col] == NOMINAL) {
+            if (from >= to || (to - from == 1 && buf.get(from) == '?')) {
+                return Double.NaN;
+            }
+            String str = FastDoubleParser.text(buf, from, to);
+            Integer id = nominal.get(col).get(str);
+            if (id == null) {
+                throw new NumberFormatException("unknown value '" + str + "' of attribute " + columns.get(col));
+            }
+            return id;
+        }
+        return FastDoubleParser.parse(buf, from, to);
+    }
+
+    private String label(ByteBuffer buf, int from, int to) {
+        if (from >= to || (to - from == 1 && buf.get(from) == '?')) {
+            return null;
+        }
+        return FastDoubleParser.text(buf, from, to);
+    }
+
+    private static byte firstChar(ByteBuffer buf, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (!isBlank(b)) {
+                return b;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Insertion sort of pairs by index, sparse rows are usually sorted
+     */
+    private static void sort(int[] idx, double[] val, int n) {
+        for (int i = 1; i < n; i++) {
+            int ki = idx[i];
+            double kv = val[i];
+            int j = i - 1;
+            while (j >= 0 && idx[j] > ki) {
+                idx[j + 1] = idx[j];
+                val[j + 1] = val[j];
+                j--;
+            }
+            idx[j + 1] = ki;
+            val[j + 1] = kv;
+        }
+    }
+
+    /**
+     * Sparse rows parsed from a single chunk
+     */
+    protected static class SparseChunk {
+
+        private final int[] rowNnz;
+        private int rows;
+        private int[] cols = new int[1024];
+        private double[] vals = new double[1024];
+        private int size;
+
+        SparseChunk(int rows) {
+            this.rowNnz = new int[rows];
+        }
+
+        void add(int[] idx, double[] val, int n) {
+            if (size + n > cols.length) {
+                int cap = Math.max(size + n, cols.length * 2);
+                cols = Arrays.copyOf(cols, cap);
+                vals = Arrays.copyOf(vals, cap);
+            }
+            int start = size;
+            for (int k = 0; k < n; k++) {
+                //dense rows might contain zeros
+                if (val[k] != 0.0) {
+                    cols[size] = idx[k];
+                    vals[size++] = val[k];
+                }
+            }
+            rowNnz[rows++] = size - start;
+        }
+    }
+
+}
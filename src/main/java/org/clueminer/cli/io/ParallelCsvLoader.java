@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.exception.ParserError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads delimited numeric files (CSV, TXT) using all available cores.
+ *
+ * The file is memory-mapped and split into newline-aligned chunks. The first
+ * pass counts rows in each chunk, so that the dataset can be allocated with
+ * exact size, the second pass parses chunks in parallel directly into
+ * preallocated instances. Lines starting with <code>#</code> are comments.
+ *
+ * @author deric
+ * @param <E>
+ */
+public class ParallelCsvLoader<E extends Instance> extends ChunkedLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelCsvLoader.class);
+
+    private final CsvFormat format;
+    private int[] mapping;
+
+    public ParallelCsvLoader(CsvFormat format, int threads) {
+        super(threads);
+        this.format = format;
+    }
+
+    @Override
+    protected boolean isSeparator(byte b) {
+        return format.isSeparator(b);
+    }
+
+    @Override
+    protected boolean collapseSeparators() {
+        return format.isWhitespace();
+    }
+
+    @Override
+    protected byte commentChar() {
+        return '#';
+    }
+
+    public Dataset<E> load(File file) throws IOException, ParserError {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            long dataStart = readHeader(ch);
+            final long[] bounds = chunkBounds(ch, dataStart, size);
+            final MappedByteBuffer[] chunks = map(ch, bounds);
+            LOG.debug("parsing {} bytes in {} chunks using {} threads", size, chunks.length, threads);
+            final int numAttr = attributes.size();
+
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize(chunks.length));
+            try {
+                Future<?> hashing = startHashing(pool, ch, dataStart, chunks);
+                //first pass: count rows
+                int[] offsets = rowOffsets(pool, chunks);
+                int rows = offsets[chunks.length];
+                LOG.info("found {} rows with {} attributes", rows, numAttr);
+                final Dataset<E> dataset = createDataset(baseName(file), rows, attributes);
+
+                //second pass: parse values
+                List<Future<Integer>> parsed = new ArrayList<>(chunks.length);
+                for (int i = 0; i < chunks.length; i++) {
+                    final MappedByteBuffer chunk = chunks[i];
+                    final int offset = offsets[i];
+                    final long pos = bounds[i];
+                    parsed.add(pool.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws ParserError {
+                            return parseChunk(chunk, pos, dataset, offset, mapping, numAttr);
+                        }
+                    }));
+                }
+                for (Future<Integer> f : parsed) {
+                    get(f);
+                }
+                if (hashing != null) {
+                    get(hashing);
+                }
+                return dataset;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    protected int parseHeader(ByteBuffer buf, boolean complete) throws ParserError {
+        int end = buf.limit();
+        int dataStart = 0;
+        List<String> header = null;
+        int numColumns = 0;
+        if (format.hasHeader()) {
+            int lineEnd = lineEnd(buf, 0, end);
+            if (lineEnd >= end && !complete) {
+                return -1;
+            }
+            header = tokenize(buf, 0, lineEnd);
+            numColumns = header.size();
+            dataStart = Math.min(lineEnd + 1, end);
+        } else {
+            //number of columns is given by the first data line
+            int lineStart = 0;
+            while (lineStart < end) {
+                int lineEnd = lineEnd(buf, lineStart, end);
+                if (lineEnd >= end && !complete) {
+                    return -1;
+                }
+                if (isDataLine(buf, lineStart, lineEnd)) {
+                    numColumns = tokenize(buf, lineStart, lineEnd).size();
+                    break;
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+        mapping = format.attributeMapping(numColumns);
+        attributes = new ArrayList<>();
+        for (int i = 0; i < numColumns; i++) {
+            if (mapping[i] >= 0) {
+                attributes.add(header != null ? header.get(i) : "attr-" + mapping[i]);
+            }
+        }
+        return dataStart;
+    }
+
+    /**
+     * Only numeric attributes are supported, other columns have to be
+     * excluded by options
+     */
+    private ParserError invalidValue(long pos, NumberFormatException e) {
+        return new ParserError("invalid value at byte " + pos + ": " + e.getMessage()
+                + " (multi-threaded parser reads only numeric attributes, mark other columns by --class, --id"
+                + " or --skip, or use --load-threads 1)");
+    }
+
+    @Override
+    protected void parseRows(ByteBuffer buf, long pos, RowBlock out) throws ParserError {
+        int end = buf.limit();
+        int lineStart = 0;
+        String[] meta = new String[2];
+        double[] values = new double[attributes.size()];
+        int[] range = new int[2];
+        while (lineStart < end) {
+            int lineEnd = lineEnd(buf, lineStart, end);
+            if (isDataLine(buf, lineStart, lineEnd)) {
+                meta[0] = null;
+                meta[1] = null;
+                try {
+                    parseLine(buf, lineStart, lineEnd, mapping, values, meta, range);
+                } catch (NumberFormatException e) {
+                    throw invalidValue(pos + lineStart, e);
+                }
+                out.add(values, meta[0], meta[1]);
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Parse all lines in the chunk into dataset rows starting at
+     * <code>offset</code>
+     *
+     * @param buf
+     * @param pos position of the chunk in the file (for error reporting)
+     * @param dataset
+     * @param offset index of first row
+     * @param mapping column to attribute mapping
+     * @param numAttr number of attributes
+     * @return number of parsed rows
+     * @throws ParserError
+     */
+    protected int parseChunk(ByteBuffer buf, long pos, Dataset<E> dataset, int offset, int[] mapping, int numAttr) throws ParserError {
+        int end = buf.limit();
+        int lineStart = 0;
+        int row = offset;
+        String[] meta = new String[2];
+        double[] values = new double[numAttr];
+        int[] range = new int[2];
+        while (lineStart < end) {
+            int lineEnd = lineEnd(buf, lineStart, end);
+            if (isDataLine(buf, lineStart, lineEnd)) {
+                meta[0] = null;
+                meta[1] = null;
+                try {
+                    parseLine(buf, lineStart, lineEnd, mapping, values, meta, range);
+                } catch (NumberFormatException e) {
+                    throw invalidValue(pos + lineStart, e);
+                }
+                E inst = dataset.get(row);
+                for (int j = 0; j < values.length; j++) {
+                    inst.set(j, values[j]);
+                }
+                if (meta[0] != null) {
+                    inst.setName(meta[0]);
+                }
+                if (meta[1] != null) {
+                    inst.setClassValue(meta[1]);
+                }
+                row++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return row - offset;
+    }
+
+    /**
+     * Split a single line into numeric values, instance name and class
+     *
+     * @param buf
+     * @param start
+     * @param end
+     * @param mapping
+     * @param values output attribute values
+     * @param meta output: name (meta[0]) and class (meta[1])
+     * @param range temporary array for field boundaries
+     */
+    protected void parseLine(ByteBuffer buf, int start, int end, int[] mapping, double[] values, String[] meta, int[] range) {
+        int col = 0;
+        int filled = 0;
+        int i = start;
+        while (i <= end && col < mapping.length) {
+            i = nextField(buf, i, end, range);
+            if (i < 0) {
+                break;
+            }
+            int attr = mapping[col];
+            if (attr >= 0) {
+                values[attr] = FastDoubleParser.parse(buf, range[0], range[1]);
+                filled++;
+            } else if (col == format.getIdIndex()) {
+                meta[0] = FastDoubleParser.text(buf, range[0], range[1]);
+            } else if (col == format.getClassIndex()) {
+                meta[1] = FastDoubleParser.text(buf, range[0], range[1]);
+            }
+            col++;
+        }
+        //missing trailing columns
+        for (int j = filled; j < values.length; j++) {
+            values[j] = Double.NaN;
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.cli.data.CondensedMatrix;
+import org.clueminer.cli.data.RowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache of condensed distance matrices. A matrix is identified by
+ * fingerprint of the input file and options which affect distances (distance
+ * measure, preprocessing, precision). Cached matrices are memory-mapped, the
+ * least recently used ones are deleted once total size exceeds given limit.
+ * Matrices are consumed by engines of this module (DBSCAN neighbor index),
+ * algorithms from the clustering library compute their own.
+ *
+ * Layout (little endian):
+ * <pre>
+ * header  magic, version, rows, value width (4 or 8 bytes)
+ * values  upper triangle, row-major
+ * </pre>
+ *
+ * @author deric
+ */
+public class ProximityStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProximityStore.class);
+    private static final int MAGIC = 0x434c5058; //CLPX
+    private static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    private static final String SUFFIX = ".prox";
+
+    private final File dir;
+    private final long maxBytes;
+
+    /**
+     *
+     * @param dir cache directory
+     * @param maxBytes limit of total size of cached matrices
+     */
+    public ProximityStore(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    public File location(String hash, String options, boolean single) {
+        return new File(dir, hash.replace(':', '-') + "-" + DatasetSnapshot.digest(options + (single ? ";float" : ";double")) + SUFFIX);
+    }
+
+    /**
+     * Cached matrix or a newly computed Euclidean one
+     *
+     * @param hash fingerprint of the input
+     * @param options distance measure and preprocessing
+     * @param store rows
+     * @param single whether to store floats
+     * @param threads
+     * @return
+     * @throws IOException
+     */
+    public CondensedMatrix get(String hash, String options, RowStore store, boolean single, int threads) throws IOException {
+        CondensedMatrix matrix = open(hash, options, store.size(), single);
+        if (matrix == null) {
+            matrix = compute(location(hash, options, single), store, single, threads);
+        }
+        return matrix;
+    }
+
+    /**
+     * Map cached matrix
+     *
+     * @param hash
+     * @param options
+     * @param n expected number of rows
+     * @param single expected precision
+     * @return null when there's no such (valid) matrix
+     * @throws IOException
+     */
+    public CondensedMatrix open(String hash, String options, int n, boolean single) throws IOException {
+        File file = location(hash, options, single);
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && ch.read(buf) > 0) {
+                //read whole header
+            }
+            buf.flip();
+            if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION
+                    || buf.getInt() != n || buf.getInt() != (single ? 4 : 8)
+                    || ch.size() < HEADER_SIZE + CondensedMatrix.bytes(n, single)) {
+                LOG.warn("invalid proximity matrix {}, discarding", file.getAbsolutePath());
+                ch.close();
+                Files.deleteIfExists(file.toPath());
+                return null;
+            }
+            //recently used
+            file.setLastModified(System.currentTimeMillis());
+            LOG.info("using cached proximity matrix {}", file.getAbsolutePath());
+            return new CondensedMatrix(map(ch, FileChannel.MapMode.READ_ONLY, CondensedMatrix.bytes(n, single)), n, single);
+        }
+    }
+
+    private ByteBuffer[] map(FileChannel ch, FileChannel.MapMode mode, long bytes) throws IOException {
+        int cnt = (int) ((bytes + CondensedMatrix.SEGMENT_BYTES - 1) / CondensedMatrix.SEGMENT_BYTES);
+        ByteBuffer[] segments = new ByteBuffer[cnt];
+        for (int s = 0; s < cnt; s++) {
+            long from = (long) s * CondensedMatrix.SEGMENT_BYTES;
+            long len = Math.min(CondensedMatrix.SEGMENT_BYTES, bytes - from);
+            segments[s] = ch.map(mode, HEADER_SIZE + from, len).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return segments;
+    }
+
+    /**
+     * Compute Euclidean distances into a temporary file which is moved to
+     * <code>target</code> once complete. Rows are interleaved between threads
+     * (row i has n - i - 1 values).
+     */
+    private CondensedMatrix compute(File target, final RowStore store, boolean single, int threads) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("failed to create " + dir.getAbsolutePath());
+        }
+        final int n = store.size();
+        long bytes = CondensedMatrix.bytes(n, single);
+        LOG.info("computing proximity matrix of {} rows ({} bytes)", n, bytes);
+        File tmp = File.createTempFile(target.getName(), ".tmp", dir);
+        CondensedMatrix matrix;
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(n);
+            header.putInt(single ? 4 : 8);
+            header.flip();
+            while (header.hasRemaining()) {
+                ch.write(header, header.position());
+            }
+            final CondensedMatrix m = new CondensedMatrix(map(ch, FileChannel.MapMode.READ_WRITE, bytes), n, single);
+            final int parts = Math.max(1, Math.min(threads, n));
+            ExecutorService pool = Executors.newFixedThreadPool(parts);
+            try {
+                List<Future<Void>> futures = new ArrayList<>(parts);
+                for (int t = 0; t < parts; t++) {
+                    final int first = t;
+                    futures.add(pool.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            int d = store.attributeCount();
+                            double[] x = new double[d];
+                            double[] y = new double[d];
+                            for (int i = first; i < n; i += parts) {
+                                store.row(i, x);
+                                for (int j = i + 1; j < n; j++) {
+                                    store.row(j, y);
+                                    double sum = 0.0, diff;
+                                    for (int k = 0; k < d; k++) {
+                                        diff = x[k] - y[k];
+                                        sum += diff * diff;
+                                    }
+                                    m.set(i, j, Math.sqrt(sum));
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> f : futures) {
+                    f.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", ex);
+            } catch (ExecutionException ex) {
+                throw new IOException(ex.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            ch.force(false);
+            matrix = m;
+        } catch (IOException | RuntimeException ex) {
+            tmp.delete();
+            throw ex;
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        LOG.info("proximity matrix written to {}", target.getAbsolutePath());
+        evict(target);
+        return matrix;
+    }
+
+    /**
+     * Delete least recently used matrices until total size fits the limit
+     *
+     * @param keep file which is never deleted
+     */
+    public void evict(File keep) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> cached = new ArrayList<>();
+        long total = 0;
+        for (File f : files) {
+            if (f.getName().endsWith(SUFFIX)) {
+                cached.add(f);
+                total += f.length();
+            }
+        }
+        File[] sorted = cached.toArray(new File[cached.size()]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File f : sorted) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (f.equals(keep)) {
+                continue;
+            }
+            long len = f.length();
+            if (f.delete()) {
+                total -= len;
+                LOG.info("evicted proximity matrix {}", f.getName());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.util.Arrays;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+
+/**
+ * Rows parsed from a block of input whose size is not known in advance.
+ * Values are stored row-major in a single growing array.
+ *
+ * @author deric
+ */
+public class RowBlock {
+
+    private final int d;
+    private int size;
+    private double[] values;
+    private String[] names;
+    private String[] classes;
+
+    public RowBlock(int attributes, int capacity) {
+        this.d = attributes;
+        capacity = Math.max(capacity, 16);
+        this.values = new double[capacity * d];
+        this.names = new String[capacity];
+        this.classes = new String[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int attributeCount() {
+        return d;
+    }
+
+    public double get(int row, int col) {
+        return values[row * d + col];
+    }
+
+    public String name(int row) {
+        return names[row];
+    }
+
+    public String classValue(int row) {
+        return classes[row];
+    }
+
+    /**
+     * Append a row
+     *
+     * @param row values (copied)
+     * @param name instance name, might be null
+     * @param cls class label, might be null
+     */
+    public void add(double[] row, String name, String cls) {
+        if (size == names.length) {
+            int cap = size * 2;
+            values = Arrays.copyOf(values, cap * d);
+            names = Arrays.copyOf(names, cap);
+            classes = Arrays.copyOf(classes, cap);
+        }
+        System.arraycopy(row, 0, values, size * d, d);
+        names[size] = name;
+        classes[size] = cls;
+        size++;
+    }
+
+    /**
+     * Append all rows to the dataset
+     *
+     * @param <E>
+     * @param dataset
+     */
+    public <E extends Instance> void appendTo(Dataset<E> dataset) {
+        int offset = dataset.size();
+        for (int i = 0; i < size; i++) {
+            E inst = dataset.instance(offset + i);
+            int base = i * d;
+            for (int j = 0; j < d; j++) {
+                inst.set(j, values[base + j]);
+            }
+            if (names[i] != null) {
+                inst.setName(names[i]);
+            }
+            if (classes[i] != null) {
+                inst.setClassValue(classes[i]);
+            }
+        }
+    }
+
+}
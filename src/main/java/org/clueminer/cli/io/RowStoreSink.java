@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.clueminer.cli.data.AbstractRowStore;
+
+/**
+ * Collects streamed rows into a row store whose size is not known in advance.
+ *
+ * @author deric
+ * @param <S> type of the store
+ */
+public abstract class RowStoreSink<S extends AbstractRowStore> implements StreamingLoader.Sink {
+
+    protected String name;
+    protected List<String> attributes;
+    protected int d;
+    protected int rows;
+    private final List<String> names = new ArrayList<>();
+    private final List<String> classes = new ArrayList<>();
+    private boolean hasNames = false;
+
+    @Override
+    public void begin(String name, List<String> attributes) {
+        this.name = name;
+        this.attributes = new ArrayList<>(attributes);
+        this.d = attributes.size();
+    }
+
+    @Override
+    public void append(RowBlock block) {
+        ensureCapacity((long) rows + block.size());
+        for (int i = 0; i < block.size(); i++) {
+            for (int j = 0; j < d; j++) {
+                put(rows + i, j, block.get(i, j));
+            }
+            names.add(block.name(i));
+            hasNames |= block.name(i) != null;
+            classes.add(block.classValue(i));
+        }
+        rows += block.size();
+    }
+
+    /**
+     * Make room for given number of rows
+     *
+     * @param capacity
+     */
+    protected abstract void ensureCapacity(long capacity);
+
+    protected abstract void put(int row, int col, double value);
+
+    /**
+     * Store backed by collected values
+     *
+     * @return
+     */
+    protected abstract S createStore();
+
+    /**
+     * Store with all appended rows
+     *
+     * @return
+     */
+    public S getStore() {
+        S store = createStore();
+        for (int i = 0; i < rows; i++) {
+            store.setClassValue(i, classes.get(i));
+            if (hasNames) {
+                store.setInstanceName(i, names.get(i));
+            }
+        }
+        return store;
+    }
+
+}
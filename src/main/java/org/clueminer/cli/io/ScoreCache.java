@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.clueminer.clustering.api.Cluster;
+import org.clueminer.clustering.api.Clustering;
+import org.clueminer.dataset.api.Instance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of computed scores, keyed by dataset hash, clustering and
+ * metric. Scores are appended to a log which is loaded on start; when the
+ * cache holds more than <code>maxEntries</code> scores, the least recently
+ * used ones are dropped and the log is rewritten.
+ *
+ * @author deric
+ */
+public class ScoreCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScoreCache.class);
+    private static final String FILE_NAME = "scores.tsv";
+    private static final Map<File, ScoreCache> OPEN = new HashMap<>();
+
+    private final File file;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Double> scores;
+    private Writer log;
+    //number of lines in the log
+    private int logged;
+    private boolean evicted;
+
+    public ScoreCache(File dir, int maxEntries) {
+        this.file = new File(dir, FILE_NAME);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.scores = new LinkedHashMap<>(16, 0.75f, true);
+        load();
+    }
+
+    /**
+     * Cache shared by all runs within the JVM, closed on shutdown
+     *
+     * @param dir
+     * @param maxEntries
+     * @return
+     */
+    public static synchronized ScoreCache open(File dir, int maxEntries) {
+        File key = dir.getAbsoluteFile();
+        ScoreCache cache = OPEN.get(key);
+        if (cache == null) {
+            if (OPEN.isEmpty()) {
+                Runtime.getRuntime().addShutdownHook(new Thread("score-cache") {
+                    @Override
+                    public void run() {
+                        synchronized (ScoreCache.class) {
+                            for (ScoreCache c : OPEN.values()) {
+                                c.close();
+                            }
+                        }
+                    }
+                });
+            }
+            cache = new ScoreCache(key, maxEntries);
+            OPEN.put(key, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Identity of a clustering: its fingerprint and a digest of assignments
+     * of instances (independent of order and numbering of clusters)
+     *
+     * @param <E>
+     * @param <C>
+     * @param clustering
+     * @return
+     */
+    public static <E extends Instance, C extends Cluster<E>> String key(Clustering<E, C> clustering) {
+        int n = 0;
+        int[] first = new int[clustering.size()];
+        for (int j = 0; j < clustering.size(); j++) {
+            C c = clustering.get(j);
+            first[j] = Integer.MAX_VALUE;
+            for (int k = 0; k < c.size(); k++) {
+                int idx = c.get(k).getIndex();
+                n = Math.max(n, idx + 1);
+                first[j] = Math.min(first[j], idx);
+            }
+        }
+        //number clusters by their first instance
+        Integer[] order = new Integer[first.length];
+        for (int j = 0; j < order.length; j++) {
+            order[j] = j;
+        }
+        final int[] f = first;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(f[a], f[b]);
+            }
+        });
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        for (int j = 0; j < order.length; j++) {
+            C c = clustering.get(order[j]);
+            for (int k = 0; k < c.size(); k++) {
+                labels[c.get(k).getIndex()] = j;
+            }
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buf = new byte[4];
+            for (int label : labels) {
+                buf[0] = (byte) (label >>> 24);
+                buf[1] = (byte) (label >>> 16);
+                buf[2] = (byte) (label >>> 8);
+                buf[3] = (byte) label;
+                md.update(buf);
+            }
+            StringBuilder sb = new StringBuilder(clustering.fingerprint()).append('/');
+            for (byte b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     *
+     * @param dataset identity of evaluated instances (hash of the data, parser
+     * options, sample)
+     * @param clustering see {@link #key(Clustering)}
+     * @param metric
+     * @return null when the score is not known
+     */
+    public synchronized Double get(String dataset, String clustering, String metric) {
+        return scores.get(entry(dataset, clustering, metric));
+    }
+
+    /**
+     * Remember a score (failures, i.e. NaN, are not stored)
+     *
+     * @param dataset
+     * @param clustering
+     * @param metric
+     * @param score
+     */
+    public synchronized void put(String dataset, String clustering, String metric, double score) {
+        if (Double.isNaN(score)) {
+            return;
+        }
+        String key = entry(dataset, clustering, metric);
+        scores.put(key, score);
+        evict();
+        try {
+            if (log == null) {
+                log = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            log.write(key);
+            log.write('\t');
+            log.write(Double.toString(score));
+            log.write('\n');
+            logged++;
+        } catch (IOException ex) {
+            LOG.warn("failed to write {}: {}", file.getAbsolutePath(), ex.getMessage());
+        }
+        if (logged > 2 * maxEntries) {
+            compact();
+        }
+    }
+
+    public synchronized int size() {
+        return scores.size();
+    }
+
+    /**
+     * Write pending scores, rewrite the log when some scores were evicted
+     */
+    public synchronized void close() {
+        closeLog();
+        if (evicted) {
+            compact();
+            closeLog();
+        }
+    }
+
+    private String entry(String dataset, String clustering, String metric) {
+        return dataset + '\t' + clustering + '\t' + metric;
+    }
+
+    private void evict() {
+        Iterator<String> it = scores.keySet().iterator();
+        while (scores.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evicted = true;
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader br = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int pos = line.lastIndexOf('\t');
+                if (pos > 0) {
+                    try {
+                        scores.put(line.substring(0, pos), Double.parseDouble(line.substring(pos + 1)));
+                        logged++;
+                    } catch (NumberFormatException ex) {
+                        //incomplete line written by an interrupted process
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOG.warn("failed to read {}: {}", file.getAbsolutePath(), ex.getMessage());
+        }
+        evict();
+        LOG.debug("loaded {} cached scores", scores.size());
+    }
+
+    /**
+     * Rewrite the log with current entries, least recently used first
+     */
+    private void compact() {
+        closeLog();
+        try {
+            File tmp = File.createTempFile(FILE_NAME, ".tmp", file.getParentFile());
+            try (Writer out = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Double> e : scores.entrySet()) {
+                    out.write(e.getKey());
+                    out.write('\t');
+                    out.write(Double.toString(e.getValue()));
+                    out.write('\n');
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            logged = scores.size();
+            evicted = false;
+        } catch (IOException ex) {
+            LOG.warn("failed to rewrite {}: {}", file.getAbsolutePath(), ex.getMessage());
+        }
+    }
+
+    private void closeLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException ex) {
+                LOG.warn("failed to write {}: {}", file.getAbsolutePath(), ex.getMessage());
+            }
+            log = null;
+        }
+    }
+
+}
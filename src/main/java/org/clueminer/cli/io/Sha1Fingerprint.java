@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 checksum (uppercase hex, same as the format stored in meta-db)
+ *
+ * @author deric
+ */
+public class Sha1Fingerprint extends Fingerprint {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private final MessageDigest md;
+
+    public Sha1Fingerprint() {
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            //every JVM has to support SHA-1
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return SHA1;
+    }
+
+    @Override
+    public void update(ByteBuffer buf) {
+        md.update(buf.duplicate());
+    }
+
+    @Override
+    public String digest() {
+        byte[] hash = md.digest();
+        char[] res = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            res[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            res[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(res);
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.exception.ParserError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses a stream (typically decompressed on another thread) whose size is
+ * not known in advance. Input is read in newline-aligned blocks which are
+ * parsed in parallel, parsed rows are appended to the dataset in the original
+ * order.
+ *
+ * @author deric
+ * @param <E>
+ */
+public class StreamingLoader<E extends Instance> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingLoader.class);
+    private static final int BLOCK = 4 << 20;
+
+    private final ChunkedLoader parser;
+    private final int threads;
+
+    public StreamingLoader(ChunkedLoader parser, int threads) {
+        this.parser = parser;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Parse whole stream
+     *
+     * @param in
+     * @param name dataset name (unless given by the file)
+     * @return
+     * @throws IOException
+     * @throws ParserError
+     */
+    public Dataset<E> load(InputStream in, String name) throws IOException, ParserError {
+        final Dataset<E>[] res = new Dataset[1];
+        parse(in, name, new Sink() {
+            @Override
+            public void begin(String name, List<String> attributes) {
+                res[0] = parser.emptyDataset(name, 1024, attributes);
+            }
+
+            @Override
+            public void append(RowBlock rows) {
+                rows.appendTo(res[0]);
+            }
+        });
+        return res[0];
+    }
+
+    /**
+     * Parse whole stream, parsed rows are passed to the sink in the original
+     * order
+     *
+     * @param in
+     * @param name dataset name (unless given by the file)
+     * @param sink
+     * @return number of parsed rows
+     * @throws IOException
+     * @throws ParserError
+     */
+    public long parse(InputStream in, String name, Sink sink) throws IOException, ParserError {
+        byte[] buf = new byte[BLOCK];
+        int len = fill(in, buf, 0);
+        boolean eof = len < buf.length;
+        int dataStart;
+        while ((dataStart = parser.parseHeader(ByteBuffer.wrap(buf, 0, len), eof)) < 0) {
+            if (eof) {
+                throw new ParserError("unexpected end of input");
+            }
+            buf = Arrays.copyOf(buf, buf.length * 2);
+            int read = fill(in, buf, len);
+            len += read;
+            eof = len < buf.length;
+        }
+        final int numAttr = parser.attributes.size();
+        sink.begin(parser.datasetName(name), parser.attributes);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Future<RowBlock>> pending = new ArrayDeque<>();
+        long pos = dataStart;
+        long rows = 0;
+        RowBlock block;
+        try {
+            //remaining part of the first buffer
+            int carry = len - dataStart;
+            System.arraycopy(buf, dataStart, buf, 0, carry);
+            len = carry;
+            while (len > 0 || !eof) {
+                if (!eof) {
+                    if (len == buf.length) {
+                        //line longer than the buffer
+                        buf = Arrays.copyOf(buf, buf.length * 2);
+                    }
+                    int read = fill(in, buf, len);
+                    len += read;
+                    eof = len < buf.length;
+                }
+                int end = eof ? len : lastLineEnd(buf, len);
+                if (end <= 0) {
+                    continue;
+                }
+                final ByteBuffer bytes = ByteBuffer.wrap(Arrays.copyOf(buf, end));
+                final long blockPos = pos;
+                pending.add(pool.submit(new Callable<RowBlock>() {
+                    @Override
+                    public RowBlock call() throws ParserError {
+                        RowBlock rows = new RowBlock(numAttr, 256);
+                        parser.parseRows(bytes, blockPos, rows);
+                        return rows;
+                    }
+                }));
+                pos += end;
+                System.arraycopy(buf, end, buf, 0, len - end);
+                len -= end;
+                //limit number of blocks kept in memory
+                while (pending.size() > threads * 2) {
+                    block = ChunkedLoader.get(pending.poll());
+                    sink.append(block);
+                    rows += block.size();
+                }
+            }
+            while (!pending.isEmpty()) {
+                block = ChunkedLoader.get(pending.poll());
+                sink.append(block);
+                rows += block.size();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        LOG.info("parsed {} rows with {} attributes from {} bytes", rows, numAttr, pos);
+        return rows;
+    }
+
+    /**
+     * Read as many bytes as possible
+     *
+     * @return number of bytes read, less than available space only at the end
+     * of the stream
+     */
+    private static int fill(InputStream in, byte[] buf, int off) throws IOException {
+        int len = 0;
+        int read;
+        while (off + len < buf.length && (read = in.read(buf, off + len, buf.length - off - len)) > 0) {
+            len += read;
+        }
+        return len;
+    }
+
+    /**
+     * Position after the last newline
+     */
+    private static int lastLineEnd(byte[] buf, int len) {
+        for (int i = len - 1; i >= 0; i--) {
+            if (buf[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Receives parsed rows
+     */
+    public interface Sink {
+
+        void begin(String name, List<String> attributes) throws IOException;
+
+        void append(RowBlock rows) throws IOException;
+    }
+
+}
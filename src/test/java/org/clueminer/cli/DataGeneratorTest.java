@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2011-2016 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli;
+
+import org.clueminer.cli.data.FloatRowStore;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ */
+public class DataGeneratorTest<E extends Instance> {
+
+    @Test
+    public void testSeedIndependentOfThreads() {
+        DataGenerator<E> single = new DataGenerator<>(42);
+        single.setThreads(1);
+        single.setNoise(0.1);
+        DataGenerator<E> multi = new DataGenerator<>(42);
+        multi.setThreads(4);
+        multi.setNoise(0.1);
+        FloatRowStore expected = single.generateFloat(10000, 3);
+        FloatRowStore data = multi.generateFloat(10000, 3);
+        for (int i = 0; i < data.size(); i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(expected.get(i, j), data.get(i, j), 0.0);
+            }
+            assertEquals(expected.classValue(i), data.classValue(i));
+        }
+    }
+
+    @Test
+    public void testGenerateData() {
+        DataGenerator<E> gen = new DataGenerator<>(1);
+        gen.setClusters(3);
+        Dataset<E> dataset = gen.generateData(1000, 4);
+        assertEquals(1000, dataset.size());
+        assertEquals(4, dataset.attributeCount());
+        assertEquals(3, dataset.getClasses().size());
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2011-2016 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.clueminer.cli.data.FloatRowStore;
+import org.clueminer.cli.engine.LloydKMeans;
+import org.clueminer.cli.io.CsvFormat;
+import org.clueminer.cli.io.CsvWriterPool;
+import org.clueminer.cli.io.ParallelCsvLoader;
+import org.clueminer.clustering.api.Cluster;
+import org.clueminer.clustering.api.ClusterEvaluation;
+import org.clueminer.clustering.api.Clustering;
+import org.clueminer.clustering.api.Rank;
+import org.clueminer.clustering.api.factory.InternalEvaluatorFactory;
+import org.clueminer.clustering.api.factory.RankFactory;
+import org.clueminer.clustering.struct.ClusterList;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.eval.external.AdjustedRand;
+import org.clueminer.eval.external.NMIsqrt;
+import org.clueminer.eval.sort.MORank;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ * @param <C>
+ */
+public class ResultsExporterTest<E extends Instance, C extends Cluster<E>> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private List<Clustering<E, C>> irisClusterings() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        List<Clustering<E, C>> res = new ArrayList<>();
+        for (int k = 2; k <= 6; k++) {
+            int[] labels = new LloydKMeans(k, 100, k, 1).cluster(FloatRowStore.from(dataset));
+            Clustering<E, C> clustering = new ClusterList(k);
+            List<C> clusters = new ArrayList<>(k);
+            for (int i = 0; i < k; i++) {
+                clusters.add(clustering.createCluster());
+            }
+            for (int i = 0; i < labels.length; i++) {
+                clusters.get(labels[i]).add(dataset.get(i));
+            }
+            clustering.lookupAdd(dataset);
+            res.add(clustering);
+        }
+        return res;
+    }
+
+    private List<String> rankings(int threads, ClusterEvaluation[] evals, Rank[] ranks) throws Exception {
+        CliParams p = new CliParams();
+        p.data = cf.irisData().getAbsolutePath();
+        p.threads = threads;
+        ResultsExporter<E, C> subject = new ResultsExporter<>(new Runner(p));
+        File results = new File(tmp.getRoot(), "rankings-" + threads + ".csv");
+        try {
+            subject.evaluateRankings(irisClusterings(), results, evals,
+                    new ClusterEvaluation[]{new NMIsqrt(), new AdjustedRand()}, ranks);
+        } finally {
+            subject.shutdown();
+        }
+        CsvWriterPool.getDefault().flush();
+        return Files.readAllLines(results.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEvaluateRankings() throws Exception {
+        ClusterEvaluation[] all = InternalEvaluatorFactory.getInstance().getAllArray();
+        ClusterEvaluation[] evals = new ClusterEvaluation[4];
+        System.arraycopy(all, 0, evals, 0, evals.length);
+        Rank[] ranks = RankFactory.getInstance().getAllArray();
+        int rows = 0;
+        Set<String> randomized = new HashSet<>();
+        for (Rank rank : ranks) {
+            //combinations of 4 objectives
+            rows += new int[]{1, 4, 6, 4}[rank.getMinObjectives()];
+            if (rank instanceof MORank) {
+                randomized.add(rank.getName());
+            }
+        }
+        List<String> sequential = rankings(1, evals, ranks);
+        List<String> parallel = rankings(4, evals, ranks);
+        //header
+        assertEquals(rows + 1, sequential.size());
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            String line = sequential.get(i);
+            //multi-objective rankings shuffle clusterings before sorting
+            boolean shuffled = false;
+            for (String name : randomized) {
+                shuffled |= line.contains(name);
+            }
+            if (!shuffled) {
+                assertEquals(line, parallel.get(i));
+            }
+        }
+    }
+
+}
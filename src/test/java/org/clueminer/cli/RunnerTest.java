@@ -16,13 +16,21 @@
  */
 package org.clueminer.cli;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.clueminer.cli.io.CsvWriterPool;
 import org.clueminer.dataset.api.Dataset;
 import org.clueminer.dataset.api.Instance;
 import org.clueminer.fixtures.CommonFixture;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  *
@@ -35,6 +43,9 @@ public class RunnerTest<E extends Instance> {
     private Runner subject;
     private final CliParams p = new CliParams();
 
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
     public RunnerTest() {
     }
 
@@ -79,4 +90,56 @@ public class RunnerTest<E extends Instance> {
         assertEquals(3, dataset.getClasses().size());
     }
 
+    /**
+     * Results of repeated k-means runs
+     *
+     * @param parallel number of concurrent runs
+     * @return lines of the results CSV without measured times and params
+     */
+    private List<String> repeatedRuns(int parallel) throws IOException {
+        CliParams params = new CliParams();
+        params.data = cf.irisData().getAbsolutePath();
+        params.clsIndex = 4;
+        params.type = "csv";
+        params.header = false;
+        params.algorithm = "k-means";
+        params.precision = "float";
+        params.eval = "NMI-sqrt,ARI";
+        params.repeat = 8;
+        params.parallel = parallel;
+        //each run is single-threaded, so that runs are deterministic
+        params.threads = 1;
+        params.home = tmp.getRoot().getAbsolutePath();
+        params.experiment = "repeat-" + parallel;
+        new Runner(params).run();
+        CsvWriterPool.getDefault().flush();
+
+        File dir = new File(params.home, params.experiment);
+        File results = null;
+        for (File f : dir.listFiles()) {
+            if (f.getName().endsWith(".csv") && !f.getName().equals("criteria.csv")) {
+                results = f;
+            }
+        }
+        assertTrue("missing results in " + dir, results != null);
+        List<String> lines = Files.readAllLines(results.toPath(), StandardCharsets.UTF_8);
+        String sep = String.valueOf(params.separator.charAt(0));
+        //dataset, clusters, time, scores, params, alg time
+        for (int i = 1; i < lines.size(); i++) {
+            String[] cols = lines.get(i).split(sep, -1);
+            lines.set(i, cols[0] + sep + cols[1] + sep + cols[3] + sep + cols[4]);
+        }
+        return lines;
+    }
+
+    @Test
+    public void testParallelRepeat() throws IOException {
+        List<String> expected = repeatedRuns(1);
+        List<String> parallel = repeatedRuns(4);
+        //header and a line per run
+        assertEquals(9, expected.size());
+        //lines of concurrent runs are written in order of runs
+        assertEquals(expected, parallel);
+    }
+
 }
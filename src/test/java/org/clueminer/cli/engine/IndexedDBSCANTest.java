@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.clueminer.cli.data.DatasetRowStore;
+import org.clueminer.cli.io.CsvFormat;
+import org.clueminer.cli.io.ParallelCsvLoader;
+import org.clueminer.clustering.algorithm.DBSCAN;
+import org.clueminer.clustering.api.Cluster;
+import org.clueminer.clustering.api.Clustering;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.fixtures.CommonFixture;
+import org.clueminer.utils.Props;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ * @param <C>
+ */
+public class IndexedDBSCANTest<E extends Instance, C extends Cluster<E>> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    /**
+     * Group of each row, rows missing in the clustering get -1
+     */
+    private int[] groups(Clustering<E, C> clustering, int n) {
+        int[] res = new int[n];
+        Arrays.fill(res, -1);
+        for (int j = 0; j < clustering.size(); j++) {
+            C c = clustering.get(j);
+            for (int k = 0; k < c.size(); k++) {
+                res[c.get(k).getIndex()] = j;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Whether both assignments define the same partition of rows
+     */
+    private void assertSamePartition(String msg, int[] expected, int[] actual) {
+        Map<Integer, Integer> map = new HashMap<>();
+        Map<Integer, Integer> inverse = new HashMap<>();
+        for (int i = 0; i < expected.length; i++) {
+            Integer a = map.get(expected[i]);
+            Integer b = inverse.get(actual[i]);
+            if (a == null && b == null) {
+                map.put(expected[i], actual[i]);
+                inverse.put(actual[i], expected[i]);
+            } else {
+                assertEquals(msg + ", row " + i, a, Integer.valueOf(actual[i]));
+                assertEquals(msg + ", row " + i, b, Integer.valueOf(expected[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsDBSCAN() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        int n = dataset.size();
+        //squared distances in iris are multiples of 0.01, no distance equals eps
+        double[] epsilons = new double[]{0.23, 0.33, 0.47, 0.61};
+        IndexedDBSCAN subject = new IndexedDBSCAN(NeighborIndex.build(new DatasetRowStore(dataset), 0.7, 2));
+        for (double eps : epsilons) {
+            for (int minPts = 3; minPts <= 8; minPts++) {
+                Props prop = new Props();
+                prop.putDouble(DBSCAN.EPS, eps);
+                prop.putInt(DBSCAN.MIN_PTS, minPts);
+                Clustering<E, C> expected = new DBSCAN().cluster(dataset, prop);
+                int[] labels = subject.cluster(eps, minPts);
+                int k = IndexedDBSCAN.clusters(labels);
+                //noise is a separate group (either a cluster or missing rows)
+                for (int i = 0; i < n; i++) {
+                    if (labels[i] == IndexedDBSCAN.NOISE) {
+                        labels[i] = k;
+                    }
+                }
+                assertSamePartition("eps = " + eps + ", minPts = " + minPts, groups(expected, n), labels);
+            }
+        }
+    }
+
+}
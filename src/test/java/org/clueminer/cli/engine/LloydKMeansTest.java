@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Random;
+import org.clueminer.cli.data.FloatRowStore;
+import org.clueminer.cli.data.MappedRowStore;
+import org.clueminer.cli.data.OffHeapRowStore;
+import org.clueminer.cli.data.RowStore;
+import org.clueminer.cli.data.SparseDataset;
+import org.clueminer.cli.io.CsvFormat;
+import org.clueminer.cli.io.DatasetSnapshot;
+import org.clueminer.cli.io.ParallelArffLoader;
+import org.clueminer.cli.io.ParallelCsvLoader;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ */
+public class LloydKMeansTest<E extends Instance> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testMappedIris() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        DatasetSnapshot<E> snapshot = new DatasetSnapshot<>(new File(tmp.getRoot(), "iris.bin"));
+        snapshot.write(dataset);
+        MappedRowStore store = snapshot.rowStore();
+        assertEquals(150, store.size());
+        assertEquals(dataset.get(10, 2), store.get(10, 2), 0.0);
+
+        LloydKMeans single = new LloydKMeans(3, 100, 42, 1);
+        int[] expected = single.cluster(store);
+        LloydKMeans subject = new LloydKMeans(3, 100, 42, 4);
+        int[] labels = subject.cluster(store);
+        assertEquals(expected.length, labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            assertEquals(expected[i], labels[i]);
+        }
+        assertEquals(single.getSse(), subject.getSse(), 1e-6);
+        //iris with k=3 has SSE about 78.9
+        assertTrue(subject.getSse() < 150);
+    }
+
+    @Test
+    public void testFloatIris() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        FloatRowStore store = FloatRowStore.from(dataset);
+        assertEquals(150, store.size());
+        assertEquals(dataset.get(10, 2), store.get(10, 2), 1e-6);
+        assertEquals(dataset.get(10).classValue(), store.classValue(10));
+
+        LloydKMeans kmeans = new LloydKMeans(3, 100, 42, 4);
+        int[] labels = kmeans.cluster(store);
+        assertEquals(150, labels.length);
+        assertTrue(kmeans.getSse() < 150);
+    }
+
+    @Test
+    public void testOffHeapIris() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        FloatRowStore expected = FloatRowStore.from(dataset);
+        for (OffHeapRowStore.Layout layout : OffHeapRowStore.Layout.values()) {
+            OffHeapRowStore store = OffHeapRowStore.allocate("iris", expected.getAttributes(), dataset.size(), layout);
+            for (int i = 0; i < dataset.size(); i++) {
+                for (int j = 0; j < dataset.attributeCount(); j++) {
+                    store.set(i, j, dataset.get(i, j));
+                }
+            }
+            assertEquals(dataset.get(42, 3), store.get(42, 3), 0.0);
+            LloydKMeans kmeans = new LloydKMeans(3, 100, 42, 2);
+            kmeans.cluster(store);
+            assertTrue(kmeans.getSse() < 150);
+        }
+    }
+
+    @Test
+    public void testHamerlyIris() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        FloatRowStore store = FloatRowStore.from(dataset);
+
+        final HamerlyKMeans hamerly = new HamerlyKMeans(3, 100, 7, 4);
+        int[] labels = hamerly.cluster(store);
+        //Lloyd's iterations from the same seeding
+        LloydKMeans lloyd = new LloydKMeans(3, 100, 7, 1) {
+            @Override
+            protected double[][] initialCentroids(RowStore rows) {
+                return new HamerlyKMeans(3, 100, 7, 1).initialCentroids(rows);
+            }
+        };
+        assertArrayEquals(lloyd.cluster(store), labels);
+        assertEquals(lloyd.getSse(), hamerly.getSse(), 1e-6);
+        assertTrue(hamerly.getDistances() < (long) hamerly.getIterations() * 3 * 150);
+    }
+
+    @Test
+    public void testRestartSelection() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        FloatRowStore store = FloatRowStore.from(dataset);
+        double[] sse = new double[8];
+        double[] x = new double[store.attributeCount()];
+        for (int run = 0; run < sse.length; run++) {
+            LloydKMeans kmeans = new LloydKMeans(6, 100, 42 + run, 2);
+            int[] labels = kmeans.cluster(store);
+            sse[run] = kmeans.getSse();
+            //SSE of final centroids
+            double[][] centroids = kmeans.getCentroids();
+            double expected = 0.0;
+            for (int i = 0; i < store.size(); i++) {
+                store.row(i, x);
+                expected += LloydKMeans.squaredDistance(x, centroids[labels[i]], Double.POSITIVE_INFINITY);
+            }
+            assertEquals(expected, sse[run], 1e-6);
+        }
+        int best = LloydKMeans.best(sse);
+        int distinct = 0;
+        for (int run = 0; run < sse.length; run++) {
+            assertTrue(sse[best] <= sse[run]);
+            if (Math.abs(sse[run] - sse[0]) > 1e-6) {
+                distinct++;
+            }
+        }
+        //restarts use different seeds
+        assertTrue(distinct > 0);
+        assertEquals(2, LloydKMeans.best(new double[]{3.0, 2.0, 1.0, 1.0}));
+    }
+
+    @Test
+    public void testSparseArff() throws Exception {
+        File f = tmp.newFile("sparse.arff");
+        Random rand = new Random(11);
+        try (PrintWriter out = new PrintWriter(f, "UTF-8")) {
+            out.println("@relation sparse");
+            for (int j = 0; j < 30; j++) {
+                out.println("@attribute w" + j + " numeric");
+            }
+            out.println("@data");
+            //three groups with non-zero values in different attributes
+            for (int i = 0; i < 90; i++) {
+                int g = i % 3;
+                out.println("{" + (10 * g) + " " + (1 + rand.nextDouble()) + ", "
+                        + (10 * g + 1 + rand.nextInt(9)) + " " + rand.nextDouble() + "}");
+            }
+        }
+        SparseDataset store = new ParallelArffLoader<E>(-1, 2).loadSparse(f);
+        assertTrue(store.isSparse());
+        assertEquals(90, store.size());
+        assertEquals(180, store.nnz());
+
+        LloydKMeans sparse = new LloydKMeans(3, 100, 5, 2);
+        int[] labels = sparse.cluster(store);
+        //same rows stored densely
+        OffHeapRowStore dense = OffHeapRowStore.allocate("dense", store.getAttributes(), store.size(), OffHeapRowStore.Layout.ROW);
+        for (int i = 0; i < store.size(); i++) {
+            for (int j = 0; j < store.attributeCount(); j++) {
+                dense.set(i, j, store.get(i, j));
+            }
+        }
+        LloydKMeans expected = new LloydKMeans(3, 100, 5, 2);
+        assertArrayEquals(expected.cluster(dense), labels);
+        assertEquals(expected.getSse(), sparse.getSse(), 1e-6);
+    }
+
+}
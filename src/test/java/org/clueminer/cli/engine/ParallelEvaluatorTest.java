@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.clueminer.cli.data.FloatRowStore;
+import org.clueminer.cli.io.CsvFormat;
+import org.clueminer.cli.io.ParallelCsvLoader;
+import org.clueminer.clustering.api.Cluster;
+import org.clueminer.clustering.api.ClusterEvaluation;
+import org.clueminer.clustering.api.Clustering;
+import org.clueminer.clustering.api.factory.InternalEvaluatorFactory;
+import org.clueminer.clustering.struct.ClusterList;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.eval.external.AdjustedRand;
+import org.clueminer.eval.external.NMIsqrt;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ * @param <C>
+ */
+public class ParallelEvaluatorTest<E extends Instance, C extends Cluster<E>> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    private Clustering<E, C> irisClustering() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        int[] labels = new LloydKMeans(3, 100, 42, 1).cluster(FloatRowStore.from(dataset));
+        Clustering<E, C> clustering = new ClusterList(3);
+        List<C> clusters = new ArrayList<>(3);
+        for (int i = 0; i < 3; i++) {
+            clusters.add(clustering.createCluster());
+        }
+        for (int i = 0; i < labels.length; i++) {
+            clusters.get(labels[i]).add(dataset.get(i));
+        }
+        clustering.lookupAdd(dataset);
+        return clustering;
+    }
+
+    @Test
+    public void testSameAsSequential() throws Exception {
+        ClusterEvaluation[] internal = InternalEvaluatorFactory.getInstance().getAllArray();
+        ClusterEvaluation[] evals = new ClusterEvaluation[internal.length + 2];
+        System.arraycopy(internal, 0, evals, 0, internal.length);
+        evals[internal.length] = new NMIsqrt();
+        evals[internal.length + 1] = new AdjustedRand();
+
+        ParallelEvaluator sequential = new ParallelEvaluator(1);
+        ParallelEvaluator parallel = new ParallelEvaluator(4);
+        try {
+            ParallelEvaluator.Result expected = sequential.evaluate(irisClustering(), evals);
+            ParallelEvaluator.Result res = parallel.evaluate(irisClustering(), evals);
+            for (int i = 0; i < evals.length; i++) {
+                assertEquals(evals[i].getName(), expected.score(i), res.score(i), 1e-9);
+            }
+        } finally {
+            sequential.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    public void testCopy() throws Exception {
+        Clustering<E, C> clustering = irisClustering();
+        Clustering<E, C> copy = ParallelEvaluator.copy(clustering);
+        assertEquals(clustering.size(), copy.size());
+        for (int j = 0; j < clustering.size(); j++) {
+            assertEquals(clustering.get(j).size(), copy.get(j).size());
+            assertEquals(clustering.get(j).get(0), copy.get(j).get(0));
+        }
+        assertEquals(clustering.getLookup().lookup(Dataset.class), copy.getLookup().lookup(Dataset.class));
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ */
+public class ParetoRankingTest {
+
+    @Test
+    public void testFronts() {
+        double[] a = new double[]{1, 3, 2, 0, 3, Double.NaN};
+        double[] b = new double[]{3, 1, 2, 0, 0, 5};
+        ParetoRanking pareto = new ParetoRanking(a, b);
+        int[][] fronts = pareto.getFronts();
+        assertEquals(3, fronts.length);
+        assertArrayEquals(new int[]{1, 2, 0, 5}, fronts[0]);
+        assertArrayEquals(new int[]{4}, fronts[1]);
+        assertArrayEquals(new int[]{3}, fronts[2]);
+    }
+
+    @Test
+    public void testOrder() {
+        double[] a = new double[]{1, 3, 2, 0, 3, Double.NaN};
+        double[] b = new double[]{3, 1, 2, 0, 0, 5};
+        ParetoRanking pareto = new ParetoRanking(a, b);
+        //first front sorted by the first objective
+        assertArrayEquals(new int[]{1, 2, 0, 5, 4, 3}, pareto.order(a, 20));
+        //only the first front is kept
+        assertArrayEquals(new int[]{5, 0, 2, 1}, pareto.order(b, 1));
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.clueminer.cli.data.FloatRowStore;
+import org.clueminer.cli.io.CsvFormat;
+import org.clueminer.cli.io.ParallelCsvLoader;
+import org.clueminer.clustering.api.Cluster;
+import org.clueminer.clustering.api.ClusterEvaluation;
+import org.clueminer.clustering.api.Clustering;
+import org.clueminer.clustering.api.InternalEvaluator;
+import org.clueminer.clustering.api.factory.InternalEvaluatorFactory;
+import org.clueminer.clustering.struct.ClusterList;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.eval.external.AdjustedRand;
+import org.clueminer.eval.utils.ClusteringComparator;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ * @param <C>
+ */
+public class ScoreMatrixTest<E extends Instance, C extends Cluster<E>> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    private Clustering<E, C>[] irisClusterings(int... ks) throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        Clustering<E, C>[] res = new Clustering[ks.length];
+        for (int j = 0; j < ks.length; j++) {
+            int k = ks[j];
+            int[] labels = new LloydKMeans(k, 100, 42, 1).cluster(FloatRowStore.from(dataset));
+            Clustering<E, C> clustering = new ClusterList(k);
+            List<C> clusters = new ArrayList<>(k);
+            for (int i = 0; i < k; i++) {
+                clusters.add(clustering.createCluster());
+            }
+            for (int i = 0; i < labels.length; i++) {
+                clusters.get(labels[i]).add(dataset.get(i));
+            }
+            clustering.lookupAdd(dataset);
+            res[j] = clustering;
+        }
+        return res;
+    }
+
+    @Test
+    public void testView() throws Exception {
+        Clustering<E, C>[] clusts = irisClusterings(2, 3, 4);
+        ClusterEvaluation internal = InternalEvaluatorFactory.getInstance().getAllArray()[0];
+        ClusterEvaluation[] metrics = new ClusterEvaluation[]{internal, new AdjustedRand()};
+        ScoreMatrix subject = new ScoreMatrix(new Clustering[]{clusts[0], clusts[1]}, metrics);
+        subject.set(0, 0, 1.5);
+        subject.set(1, 0, -2.0);
+        subject.set(0, 1, 0.25);
+        subject.set(1, 1, 0.75);
+
+        ClusterEvaluation view = subject.view(0);
+        assertEquals(1.5, view.score(clusts[0]), 1e-9);
+        assertEquals(-2.0, view.score(clusts[1]), 1e-9);
+        assertEquals(internal.getName(), view.getName());
+        assertTrue(view instanceof InternalEvaluator);
+        assertFalse(subject.view(1) instanceof InternalEvaluator);
+        assertEquals(0.75, subject.view(1).score(clusts[1]), 1e-9);
+        //clustering which is not in the matrix is evaluated
+        assertEquals(metrics[1].score(clusts[2]), subject.view(1).score(clusts[2]), 1e-9);
+        assertEquals(-1, subject.row(clusts[2]));
+    }
+
+    @Test
+    public void testSortByView() throws Exception {
+        Clustering<E, C>[] clusts = irisClusterings(2, 3, 4, 5);
+        ClusterEvaluation[] metrics = new ClusterEvaluation[]{new AdjustedRand()};
+        ScoreMatrix subject = new ScoreMatrix(clusts, metrics);
+        for (int i = 0; i < clusts.length; i++) {
+            subject.set(i, 0, metrics[0].score(clusts[i]));
+        }
+        Clustering[] expected = clusts.clone();
+        Arrays.sort(expected, new ClusteringComparator(metrics[0]));
+        Clustering[] sorted = clusts.clone();
+        Arrays.sort(sorted, new ClusteringComparator(subject.view(0)));
+        for (int i = 0; i < clusts.length; i++) {
+            assertSame(expected[i], sorted[i]);
+        }
+        double[] max = subject.maximized(0);
+        assertEquals(subject.get(3, 0), max[3], 1e-9);
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ */
+public class SuccessiveHalvingTest {
+
+    @Test
+    public void testRungs() {
+        assertArrayEquals(new long[]{10, 30, 90, 270, 810, 1000}, SuccessiveHalving.rungs(1000, 10, 3));
+        //smallest sample isn't smaller than the dataset
+        assertArrayEquals(new long[]{100}, SuccessiveHalving.rungs(100, 500, 3));
+    }
+
+    @Test
+    public void testPromoted() {
+        assertEquals(4, SuccessiveHalving.promoted(10, 3));
+        assertEquals(3, SuccessiveHalving.promoted(9, 3));
+        assertEquals(1, SuccessiveHalving.promoted(2, 3));
+        assertEquals(1, SuccessiveHalving.promoted(1, 3));
+    }
+
+    private Object[] classes() {
+        //60 x A, 30 x B, 10 x C (interleaved)
+        Object[] classes = new Object[100];
+        for (int i = 0; i < classes.length; i++) {
+            if (i % 10 == 0) {
+                classes[i] = "C";
+            } else if (i % 10 < 4) {
+                classes[i] = "B";
+            } else {
+                classes[i] = "A";
+            }
+        }
+        return classes;
+    }
+
+    @Test
+    public void testStratifiedProportions() {
+        Object[] classes = classes();
+        int[] rows = SuccessiveHalving.stratified(classes, 20, new Random(42));
+        assertEquals(20, rows.length);
+        int a = 0, b = 0, c = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (i > 0) {
+                //sorted and distinct
+                assertTrue(rows[i] > rows[i - 1]);
+            }
+            switch ((String) classes[rows[i]]) {
+                case "A":
+                    a++;
+                    break;
+                case "B":
+                    b++;
+                    break;
+                default:
+                    c++;
+            }
+        }
+        assertEquals(12, a);
+        assertEquals(6, b);
+        assertEquals(2, c);
+    }
+
+    @Test
+    public void testStratifiedRemainder() {
+        //7 x A, 3 x B: 4 rows are split 2.8 : 1.2, the row left goes to the larger remainder
+        Object[] classes = new Object[]{"A", "A", "A", "A", "A", "A", "A", "B", "B", "B"};
+        int[] rows = SuccessiveHalving.stratified(classes, 4, new Random(1));
+        int a = 0;
+        for (int r : rows) {
+            if (classes[r].equals("A")) {
+                a++;
+            }
+        }
+        assertEquals(3, a);
+    }
+
+    @Test
+    public void testStratifiedSeed() {
+        Object[] classes = classes();
+        int[] first = SuccessiveHalving.stratified(classes, 30, new Random(7));
+        assertArrayEquals(first, SuccessiveHalving.stratified(classes, 30, new Random(7)));
+        int[] other = SuccessiveHalving.stratified(classes, 30, new Random(8));
+        assertFalse(Arrays.equals(first, other));
+    }
+
+}
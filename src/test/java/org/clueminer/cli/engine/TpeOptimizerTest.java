@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ */
+public class TpeOptimizerTest {
+
+    @Test
+    public void testQuadratic() {
+        SearchSpace space = new SearchSpace().real("x", 0.0, 1.0).categorical("c", "a", "b", "c");
+        TpeOptimizer opt = new TpeOptimizer(space, 5, 42);
+        double best = Double.POSITIVE_INFINITY;
+        double[] bestX = null;
+        for (int i = 0; i < 40; i++) {
+            double[] x = opt.suggest();
+            double loss = Math.pow(x[0] - 0.3, 2) + (x[1] == 2 ? 0 : 1);
+            opt.observe(x, loss);
+            if (loss < best) {
+                best = loss;
+                bestX = x;
+            }
+        }
+        assertEquals(40, opt.observations());
+        assertEquals(2.0, bestX[1], 0.0);
+        assertTrue(best < 1e-3);
+    }
+
+    @Test
+    public void testIntegerRange() {
+        SearchSpace space = new SearchSpace().integer("k", 4, 10).logReal("eps", 0.01, 10);
+        TpeOptimizer opt = new TpeOptimizer(space, 3, 1);
+        for (int i = 0; i < 20; i++) {
+            double[] x = opt.suggest();
+            assertEquals(Math.rint(x[0]), x[0], 0.0);
+            assertTrue(x[0] >= 4 && x[0] <= 10);
+            assertTrue(x[1] >= 0.01 && x[1] <= 10);
+            opt.observe(x, x[1]);
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.engine;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.clueminer.cli.data.FloatRowStore;
+import org.clueminer.cli.io.CsvFormat;
+import org.clueminer.cli.io.ParallelCsvLoader;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ */
+public class WarmAffinityPropagationTest<E extends Instance> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    private FloatRowStore iris() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        return FloatRowStore.from(dataset);
+    }
+
+    private static int clusters(int[] labels) {
+        Set<Integer> set = new HashSet<>();
+        for (int l : labels) {
+            set.add(l);
+        }
+        return set.size();
+    }
+
+    @Test
+    public void testDampingSweep() throws Exception {
+        FloatRowStore store = iris();
+        WarmAffinityPropagation single = new WarmAffinityPropagation(store, 1000, 15, 150, 1);
+        WarmAffinityPropagation subject = new WarmAffinityPropagation(store, 1000, 15, 150, 4);
+        for (double damping : new double[]{0.5, 0.7, 0.9}) {
+            int[] labels = subject.cluster(damping);
+            assertEquals(150, labels.length);
+            //threads don't change the result
+            assertArrayEquals(single.cluster(damping), labels);
+            assertTrue(subject.getIterations() <= 1000);
+            assertTrue(clusters(labels) > 1);
+            //clusters are numbered in order of rows
+            assertEquals(0, labels[0]);
+        }
+        //warm start from converged messages
+        subject.cluster(0.9);
+        assertTrue(subject.getIterations() < 100);
+    }
+
+    @Test
+    public void testPreference() throws Exception {
+        FloatRowStore store = iris();
+        int median = clusters(new WarmAffinityPropagation(store, 1000, 15, 150, 2).cluster(0.7));
+        //low self-similarity yields fewer exemplars
+        int low = clusters(new WarmAffinityPropagation(store, 1000, 15, -100.0, 150, 2).cluster(0.7));
+        assertTrue(low < median);
+    }
+
+}
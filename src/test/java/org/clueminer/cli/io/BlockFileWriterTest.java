@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2011-2016 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ */
+public class BlockFileWriterTest<E extends Instance> {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<String> attrs = Arrays.asList("x", "y");
+    private final String[] classes = new String[]{"a", "b"};
+
+    /**
+     * Two blocks of two rows, the second block is written first
+     */
+    private void write(File f) throws Exception {
+        try (BlockFileWriter writer = new BlockFileWriter(f, BlockFileWriter.Format.of(f), "test", attrs, classes, 4)) {
+            writer.write(0, 0, 2, new double[]{1.0, 2.0, 3.0, 4.0}, new int[]{0, 1});
+            Thread later = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        writer.write(1, 2, 2, new double[]{5.0, 6.0, 7.0, 8.0}, new int[]{1, 0});
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+                }
+            };
+            later.start();
+            later.join();
+        }
+    }
+
+    @Test
+    public void testBinary() throws Exception {
+        File f = tmp.newFile("test.bin");
+        write(f);
+        assertTrue(DatasetSnapshot.isSnapshot(f));
+        Dataset<E> dataset = new DatasetSnapshot<E>(f).read();
+        assertEquals(4, dataset.size());
+        assertEquals(2, dataset.attributeCount());
+        assertEquals(7.0, dataset.get(3, 0), 0.0);
+        assertEquals("b", dataset.get(2).classValue());
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        File f = tmp.newFile("test.csv");
+        write(f);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(new CsvFormat(",", 2, -1, null, true), 2).load(f);
+        assertEquals(4, dataset.size());
+        assertEquals(6.0, dataset.get(2, 1), 0.0);
+        assertEquals("a", dataset.get(3).classValue());
+    }
+
+}
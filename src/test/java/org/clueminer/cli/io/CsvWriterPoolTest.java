@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ */
+public class CsvWriterPoolTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private List<String> read(File f) throws Exception {
+        return Files.readAllLines(f.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testMoreFilesThanOpenWriters() throws Exception {
+        File dir = tmp.newFolder();
+        final CsvWriterPool pool = new CsvWriterPool(64, 0);
+        final File[] files = new File[100];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(dir, i + ".csv");
+            pool.writeNext(files[i], new String[]{"run", "file"}, ',', false);
+        }
+        assertEquals(64, pool.openFiles());
+        //closed files are reopened in append mode
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(exec.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int run = 0; run < 5; run++) {
+                            for (int i = thread; i < files.length; i += 4) {
+                                pool.writeNext(files[i], new String[]{String.valueOf(run), String.valueOf(i)}, ',', true);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } finally {
+            exec.shutdownNow();
+        }
+        assertTrue(pool.openFiles() <= 64);
+        pool.closeAll();
+        assertEquals(0, pool.openFiles());
+        for (int i = 0; i < files.length; i++) {
+            List<String> lines = read(files[i]);
+            assertEquals(6, lines.size());
+            assertEquals("run,file", lines.get(0));
+            for (int run = 0; run < 5; run++) {
+                assertEquals(run + "," + i, lines.get(run + 1));
+            }
+        }
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        File f = tmp.newFile("flush.csv");
+        CsvWriterPool pool = new CsvWriterPool(4, 0);
+        pool.writeNext(f, new String[]{"a", "b"}, ',', false);
+        //buffered
+        assertEquals(0, f.length());
+        pool.flush();
+        assertEquals(1, read(f).size());
+        assertEquals(1, pool.openFiles());
+        pool.writeNext(f, new String[]{"1", "2"}, ',', true);
+        pool.closeAll();
+        assertEquals(2, read(f).size());
+    }
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        File f = tmp.newFile("periodic.csv");
+        CsvWriterPool pool = new CsvWriterPool(4, 20);
+        try {
+            pool.writeNext(f, new String[]{"a", "b"}, ',', false);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (f.length() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, read(f).size());
+        } finally {
+            pool.closeAll();
+        }
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        File f = tmp.newFile("truncate.csv");
+        CsvWriterPool pool = new CsvWriterPool(4, 0);
+        pool.writeNext(f, new String[]{"a"}, ',', false);
+        pool.writeNext(f, new String[]{"1"}, ',', true);
+        pool.close(f);
+        assertEquals(2, read(f).size());
+        //header of a new file replaces old content, also of an open file
+        pool.writeNext(f, new String[]{"b"}, ',', true);
+        pool.writeNext(f, new String[]{"c"}, ',', false);
+        pool.writeNext(f, new String[]{"2"}, ',', true);
+        pool.closeAll();
+        List<String> lines = read(f);
+        assertEquals(2, lines.size());
+        assertEquals("c", lines.get(0));
+        assertEquals("2", lines.get(1));
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ */
+public class DatasetSnapshotTest<E extends Instance> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testWriteRead() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Dataset<E> dataset = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        File f = DatasetSnapshot.location(tmp.getRoot(), "iris", "csv;" + format.key());
+        DatasetSnapshot<E> subject = new DatasetSnapshot<>(f);
+        subject.write(dataset);
+        assertTrue(subject.exists());
+
+        Dataset<E> res = new DatasetSnapshot<E>(f).read();
+        assertEquals(dataset.getName(), res.getName());
+        assertEquals(dataset.size(), res.size());
+        assertEquals(dataset.attributeCount(), res.attributeCount());
+        assertEquals(3, res.getClasses().size());
+        for (int i = 0; i < dataset.size(); i++) {
+            assertEquals(dataset.get(i).classValue(), res.get(i).classValue());
+            for (int j = 0; j < dataset.attributeCount(); j++) {
+                assertEquals(dataset.get(i, j), res.get(i, j), 0.0);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ *
+ * @author deric
+ */
+public class FingerprintTest {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    @Test
+    public void testXxHash64() {
+        assertEquals(0xef46db3751d8e999L, XxHash64.hash(new byte[0]));
+        assertEquals(0x44bc2cf5ad770999L, XxHash64.hash("abc".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(0xfbcea83c8a378bf1L, XxHash64.hash(
+                "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testId() {
+        assertEquals("xxh64:abc", Fingerprint.id("xxHash64", "abc"));
+        assertEquals("sha1:abc", Fingerprint.id("SHA-1", "abc"));
+        assertEquals(null, Fingerprint.id(Fingerprint.SHA1, null));
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+        byte[] data = new byte[10000];
+        Random rand = new Random(42);
+        rand.nextBytes(data);
+        XxHash64 h = new XxHash64();
+        int pos = 0;
+        while (pos < data.length) {
+            int len = Math.min(data.length - pos, rand.nextInt(70));
+            h.update(ByteBuffer.wrap(data, pos, len));
+            pos += len;
+        }
+        assertEquals(XxHash64.hash(data), h.value());
+    }
+
+    @Test
+    public void testHashWhileParsing() throws Exception {
+        String expected = Fingerprint.create(Fingerprint.SHA1).hash(cf.irisData());
+        ParallelCsvLoader<Instance> loader = new ParallelCsvLoader<>(new CsvFormat(",", 4, -1, null, false), 2);
+        Fingerprint fp = Fingerprint.create(Fingerprint.SHA1);
+        loader.setFingerprint(fp);
+        loader.load(cf.irisData());
+        assertEquals(expected, fp.digest());
+    }
+
+}
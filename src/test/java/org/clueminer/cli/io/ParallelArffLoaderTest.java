@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import org.clueminer.cli.data.SparseDataset;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ */
+public class ParallelArffLoaderTest<E extends Instance> {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File write(String... lines) throws IOException {
+        File f = tmp.newFile("test.arff");
+        try (PrintWriter out = new PrintWriter(f, "UTF-8")) {
+            for (String line : lines) {
+                out.println(line);
+            }
+        }
+        return f;
+    }
+
+    @Test
+    public void testDense() throws Exception {
+        File f = write("% comment", "@relation 'test'", "@attribute a numeric",
+                "@attribute 'b b' real", "@attribute color {red,green,'dark blue'}",
+                "@attribute class {x,y}", "@data",
+                "1.5,2,green,x", "% skipped", "?,0.5,'dark blue',y");
+        ParallelArffLoader<E> subject = new ParallelArffLoader<>(-1, 2);
+        assertFalse(subject.isSparse(f));
+        Dataset<E> dataset = subject.load(f);
+        assertEquals("test", dataset.getName());
+        assertEquals(2, dataset.size());
+        assertEquals(3, dataset.attributeCount());
+        assertEquals(1.5, dataset.get(0, 0), 0.0);
+        assertEquals(1.0, dataset.get(0, 2), 0.0);
+        assertTrue(Double.isNaN(dataset.get(1, 0)));
+        assertEquals(2.0, dataset.get(1, 2), 0.0);
+        assertEquals("y", dataset.get(1).classValue());
+    }
+
+    @Test
+    public void testSparse() throws Exception {
+        File f = write("@relation sparse", "@attribute w0 numeric", "@attribute w1 numeric",
+                "@attribute w2 numeric", "@attribute class {neg,pos}", "@data",
+                "{0 1.5, 2 3, 3 pos}", "{1 2}", "{2 4, 0 1}");
+        ParallelArffLoader<E> subject = new ParallelArffLoader<>(-1, 2);
+        assertTrue(subject.isSparse(f));
+        SparseDataset dataset = subject.loadSparse(f);
+        assertEquals(3, dataset.size());
+        assertEquals(3, dataset.attributeCount());
+        assertEquals(5, dataset.nnz());
+        assertEquals(1.5, dataset.get(0, 0), 0.0);
+        assertEquals(0.0, dataset.get(0, 1), 0.0);
+        assertEquals(4.0, dataset.get(2, 2), 0.0);
+        assertEquals(17.0, dataset.squaredNorm(2), 1e-9);
+        assertEquals("pos", dataset.classValue(0));
+        //omitted nominal value is the first one
+        assertEquals("neg", dataset.classValue(1));
+
+        Dataset<E> dense = dataset.toDataset();
+        assertEquals(3, dense.size());
+        assertEquals(2.0, dense.get(1, 1), 0.0);
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.exception.ParserError;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ */
+public class ParallelCsvLoaderTest<E extends Instance> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testLoadIris() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        ParallelCsvLoader<E> subject = new ParallelCsvLoader<>(format, 4);
+        Dataset<E> dataset = subject.load(cf.irisData());
+        assertEquals(150, dataset.size());
+        assertEquals(4, dataset.attributeCount());
+        assertEquals(3, dataset.getClasses().size());
+        assertEquals(5.1, dataset.get(0, 0), 1e-9);
+        assertEquals(0.2, dataset.get(0, 3), 1e-9);
+    }
+
+    @Test
+    public void testSkipColumns() throws Exception {
+        CsvFormat format = new CsvFormat(",", 4, -1, new int[]{0, 1}, false);
+        ParallelCsvLoader<E> subject = new ParallelCsvLoader<>(format, 2);
+        Dataset<E> dataset = subject.load(cf.irisData());
+        assertEquals(150, dataset.size());
+        assertEquals(2, dataset.attributeCount());
+        assertEquals(1.4, dataset.get(0, 0), 1e-9);
+    }
+
+    @Test
+    public void testManyChunks() throws Exception {
+        File f = tmp.newFile("chunks.csv");
+        Random rand = new Random(42);
+        int rows = 80000;
+        double[][] expected = new double[rows][3];
+        try (PrintWriter out = new PrintWriter(f, "UTF-8")) {
+            out.println("id,x,y,z,class");
+            for (int i = 0; i < rows; i++) {
+                if (i % 97 == 0) {
+                    out.println("# comment, with separators " + i);
+                }
+                if (i % 101 == 0) {
+                    out.println();
+                }
+                for (int j = 0; j < 3; j++) {
+                    expected[i][j] = rand.nextGaussian() * 1000;
+                }
+                //quoted ID and class contain separators
+                out.println("\"row," + i + "\"," + expected[i][0] + "," + expected[i][1] + ", " + expected[i][2]
+                        + ",\"c," + (i % 3) + "\"");
+            }
+        }
+        assertTrue(f.length() > ChunkedLoader.MIN_SIZE);
+        CsvFormat format = new CsvFormat(",", 4, 0, null, true);
+
+        ParallelCsvLoader<E> sequential = new ParallelCsvLoader<>(format, 1);
+        sequential.setChunkSize(Long.MAX_VALUE);
+        Dataset<E> exp = sequential.load(f);
+        //chunk boundaries fall in the middle of lines
+        ParallelCsvLoader<E> subject = new ParallelCsvLoader<>(format, 4);
+        subject.setChunkSize(64 << 10);
+        Dataset<E> dataset = subject.load(f);
+
+        assertEquals(rows, exp.size());
+        assertEquals(rows, dataset.size());
+        assertEquals(3, dataset.attributeCount());
+        assertEquals(3, dataset.getClasses().size());
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(expected[i][j], dataset.get(i, j), 0.0);
+                assertEquals(exp.get(i, j), dataset.get(i, j), 0.0);
+            }
+            assertEquals("row," + i, dataset.get(i).getName());
+            assertEquals(exp.get(i).getName(), dataset.get(i).getName());
+            assertEquals("c," + (i % 3), dataset.get(i).classValue());
+            assertEquals(exp.get(i).classValue(), dataset.get(i).classValue());
+        }
+    }
+
+    @Test
+    public void testNonNumericColumn() throws Exception {
+        File f = tmp.newFile("labels.csv");
+        try (PrintWriter out = new PrintWriter(f, "UTF-8")) {
+            out.println("1.0,red,2.0");
+            out.println("3.0,blue,4.0");
+        }
+        try {
+            new ParallelCsvLoader<E>(new CsvFormat(",", -1, -1, null, false), 2).load(f);
+            fail("non-numeric column should be rejected");
+        } catch (ParserError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("--skip"));
+        }
+        //excluded column is fine
+        Dataset<E> dataset = new ParallelCsvLoader<E>(new CsvFormat(",", -1, -1, new int[]{1}, false), 2).load(f);
+        assertEquals(2, dataset.size());
+        assertEquals(2, dataset.attributeCount());
+    }
+
+    @Test
+    public void testFastParser() {
+        String[] values = new String[]{"0", "-0", "1.5", "3.14159", "-2.5e-3", "1E10", "123456789012345678", "0.1", "7.0E-10"};
+        for (String v : values) {
+            ByteBuffer buf = ByteBuffer.wrap(v.getBytes());
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(v)),
+                    Double.doubleToLongBits(FastDoubleParser.parse(buf, 0, buf.limit())));
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.util.Arrays;
+import org.clueminer.cli.data.CondensedMatrix;
+import org.clueminer.cli.data.OffHeapRowStore;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ */
+public class ProximityStoreTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private OffHeapRowStore rows() {
+        OffHeapRowStore store = OffHeapRowStore.allocate("test", Arrays.asList("x", "y"), 4, OffHeapRowStore.Layout.ROW);
+        double[][] values = new double[][]{{0, 0}, {3, 4}, {6, 8}, {0, 1}};
+        for (int i = 0; i < values.length; i++) {
+            store.set(i, 0, values[i][0]);
+            store.set(i, 1, values[i][1]);
+        }
+        return store;
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        File dir = tmp.newFolder();
+        ProximityStore proximity = new ProximityStore(dir, 1 << 20);
+        assertNull(proximity.open("abc", "euclidean", 4, false));
+        CondensedMatrix m = proximity.get("abc", "euclidean", rows(), false, 2);
+        assertEquals(5.0, m.get(0, 1), 1e-12);
+        assertEquals(10.0, m.get(2, 0), 1e-12);
+        assertEquals(0.0, m.get(3, 3), 0.0);
+
+        CondensedMatrix cached = proximity.open("abc", "euclidean", 4, false);
+        assertNotNull(cached);
+        assertEquals(Math.sqrt(18), cached.get(1, 3), 1e-12);
+        //different precision is a different matrix
+        assertNull(proximity.open("abc", "euclidean", 4, true));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File dir = tmp.newFolder();
+        //room for a single matrix
+        ProximityStore proximity = new ProximityStore(dir, ProximityStore.HEADER_SIZE + CondensedMatrix.bytes(4, false));
+        proximity.get("abc", "euclidean", rows(), false, 1);
+        File first = proximity.location("abc", "euclidean", false);
+        assertTrue(first.setLastModified(System.currentTimeMillis() - 10000));
+        proximity.get("def", "euclidean", rows(), false, 1);
+        assertFalse(first.exists());
+        assertTrue(proximity.location("def", "euclidean", false).exists());
+    }
+
+}
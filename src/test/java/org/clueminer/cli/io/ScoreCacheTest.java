@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ */
+public class ScoreCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testPersistence() throws Exception {
+        File dir = tmp.newFolder();
+        ScoreCache cache = new ScoreCache(dir, 10);
+        cache.put("abc", "[2,3]/01", "NMI-sqrt", 0.75);
+        cache.put("abc", "[2,3]/01", "AIC", Double.NaN);
+        cache.close();
+
+        cache = new ScoreCache(dir, 10);
+        assertEquals(0.75, cache.get("abc", "[2,3]/01", "NMI-sqrt"), 0.0);
+        //failures are not cached
+        assertNull(cache.get("abc", "[2,3]/01", "AIC"));
+        assertNull(cache.get("def", "[2,3]/01", "NMI-sqrt"));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File dir = tmp.newFolder();
+        ScoreCache cache = new ScoreCache(dir, 2);
+        cache.put("abc", "a", "NMI-sqrt", 1.0);
+        cache.put("abc", "b", "NMI-sqrt", 2.0);
+        //recently used
+        cache.get("abc", "a", "NMI-sqrt");
+        cache.put("abc", "c", "NMI-sqrt", 3.0);
+        cache.close();
+
+        cache = new ScoreCache(dir, 2);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("abc", "b", "NMI-sqrt"));
+        assertEquals(1.0, cache.get("abc", "a", "NMI-sqrt"), 0.0);
+        assertEquals(3.0, cache.get("abc", "c", "NMI-sqrt"), 0.0);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2011-2019 clueminer.org
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.clueminer.cli.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+import org.clueminer.dataset.api.Dataset;
+import org.clueminer.dataset.api.Instance;
+import org.clueminer.fixtures.CommonFixture;
+import static org.junit.Assert.assertEquals;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author deric
+ * @param <E>
+ */
+public class StreamingLoaderTest<E extends Instance> {
+
+    private final CommonFixture cf = new CommonFixture();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testGzip() throws Exception {
+        File f = tmp.newFile("iris.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(f))) {
+            Files.copy(cf.irisData().toPath(), out);
+        }
+        Compression compression = Compression.detect(f);
+        assertEquals(Compression.GZIP, compression);
+        assertEquals("iris.csv", compression.stripSuffix(f.getName()));
+        assertEquals(Compression.NONE, Compression.detect(cf.irisData()));
+
+        CsvFormat format = new CsvFormat(",", 4, -1, null, false);
+        Fingerprint hasher = Fingerprint.create(Fingerprint.SHA1);
+        Dataset<E> dataset;
+        try (InputStream in = compression.open(f, hasher)) {
+            dataset = new StreamingLoader<E>(new ParallelCsvLoader<E>(format, 2), 2).load(in, "iris");
+        }
+        assertEquals(hasher.digest(), Fingerprint.create(Fingerprint.SHA1).hash(f));
+
+        Dataset<E> expected = new ParallelCsvLoader<E>(format, 2).load(cf.irisData());
+        assertEquals(expected.size(), dataset.size());
+        assertEquals(expected.attributeCount(), dataset.attributeCount());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).classValue(), dataset.get(i).classValue());
+            for (int j = 0; j < expected.attributeCount(); j++) {
+                assertEquals(expected.get(i, j), dataset.get(i, j), 0.0);
+            }
+        }
+    }
+
+}